@@ -0,0 +1,42 @@
+package edu.colorado.csdms.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so allocation rates are
+ * reported alongside timings, and writes the results as JSON.
+ * <p>
+ * Any standard JMH command line options may be given, for example a
+ * benchmark name pattern or <code>-p grid=4096x4096</code>.
+ */
+public class BenchmarkMain {
+
+  /** The default file for results. */
+  public static final String RESULTS_FILE = "results.json";
+
+  /**
+   * Main program.
+   *
+   * @param args JMH command line options
+   * @throws RunnerException if a benchmark fails
+   * @throws CommandLineOptionException if the options can't be parsed
+   */
+  public static void main(String[] args)
+      throws RunnerException, CommandLineOptionException {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    Options options = new OptionsBuilder()
+        .parent(commandLine)
+        .addProfiler(GCProfiler.class)
+        .resultFormat(ResultFormatType.JSON)
+        .result(commandLine.getResult().orElse(RESULTS_FILE))
+        .build();
+    new Runner(options).run();
+  }
+}
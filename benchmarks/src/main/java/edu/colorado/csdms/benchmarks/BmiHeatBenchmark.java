@@ -0,0 +1,64 @@
+package edu.colorado.csdms.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.colorado.csdms.bmiheat.BmiHeat;
+
+/**
+ * Benchmarks for moving the temperature field in and out of BmiHeat.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+@State(Scope.Benchmark)
+public class BmiHeatBenchmark {
+
+  private static final String VAR_NAME = "plate_surface__temperature";
+
+  @Param({"8x6", "256x256", "1024x1024", "4096x4096", "8192x8192"})
+  private String grid;
+
+  private BmiHeat bmi;
+  private double[] buffer;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    bmi = GridSize.bmi(GridSize.rows(grid), GridSize.cols(grid));
+    buffer = new double[bmi.getGridSize(bmi.getVarGrid(VAR_NAME))];
+    bmi.getValue(VAR_NAME, buffer);
+  }
+
+  @Benchmark
+  public double[] getValue() {
+    bmi.getValue(VAR_NAME, buffer);
+    return buffer;
+  }
+
+  @Benchmark
+  public BmiHeat setValue() {
+    bmi.setValue(VAR_NAME, buffer);
+    return bmi;
+  }
+
+  @Benchmark
+  public double[] roundTrip() {
+    bmi.getValue(VAR_NAME, buffer);
+    bmi.setValue(VAR_NAME, buffer);
+    return buffer;
+  }
+}
@@ -0,0 +1,62 @@
+package edu.colorado.csdms.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import edu.colorado.csdms.bmiheat.BmiHeat;
+
+/**
+ * Helpers for setting up benchmark grids from a "rows x cols" parameter.
+ */
+final class GridSize {
+
+  private GridSize() {
+  }
+
+  static int rows(String grid) {
+    return Integer.parseInt(grid.split("x")[0]);
+  }
+
+  static int cols(String grid) {
+    return Integer.parseInt(grid.split("x")[1]);
+  }
+
+  /**
+   * Makes a temperature field with an impulse near its center.
+   */
+  static double[] impulse(int nRows, int nCols) {
+    double[] temperature = new double[nRows * nCols];
+    temperature[(nRows / 2) * nCols + nCols / 2] = 100.0;
+    return temperature;
+  }
+
+  /**
+   * Makes a BmiHeat model on a grid of the given size, through a
+   * temporary configuration file.
+   */
+  static BmiHeat bmi(int nRows, int nCols) {
+    try {
+      File config = File.createTempFile("heat", ".xml");
+      config.deleteOnExit();
+      try (PrintWriter out = new PrintWriter(config, "UTF-8")) {
+        out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        out.println("<model>");
+        out.println("   <parameter name=\"nRows\" value=\"" + nRows + "\" />");
+        out.println("   <parameter name=\"nCols\" value=\"" + nCols + "\" />");
+        out.println("   <parameter name=\"dx\" value=\"1.0\" />");
+        out.println("   <parameter name=\"dy\" value=\"1.0\" />");
+        out.println("   <parameter name=\"xStart\" value=\"0.0\" />");
+        out.println("   <parameter name=\"yStart\" value=\"0.0\" />");
+        out.println("   <parameter name=\"alpha\" value=\"1.0\" />");
+        out.println("</model>");
+      }
+      BmiHeat bmi = new BmiHeat();
+      bmi.initialize(config.getPath());
+      bmi.setValue("plate_surface__temperature", impulse(nRows, nCols));
+      return bmi;
+    } catch (IOException e) {
+      throw new IllegalStateException("Can't write a configuration file", e);
+    }
+  }
+}
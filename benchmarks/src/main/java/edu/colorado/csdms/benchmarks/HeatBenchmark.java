@@ -0,0 +1,71 @@
+package edu.colorado.csdms.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.colorado.csdms.bmiheat.BmiHeat;
+import edu.colorado.csdms.heat.Heat;
+
+/**
+ * Benchmarks for advancing the Heat model in time, directly and through
+ * its BMI.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+@State(Scope.Benchmark)
+public class HeatBenchmark {
+
+  /** The number of time steps taken by each call to updateUntil. */
+  public static final int UPDATE_UNTIL_STEPS = 10;
+
+  @Param({"8x6", "256x256", "1024x1024", "4096x4096", "8192x8192"})
+  private String grid;
+
+  private Heat heat;
+  private BmiHeat bmi;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    int nRows = GridSize.rows(grid);
+    int nCols = GridSize.cols(grid);
+    heat = new Heat(nRows, nCols, 1.0, 1.0, 0.0, 0.0, 1.0);
+    heat.setTemperatureField(GridSize.impulse(nRows, nCols));
+
+    bmi = GridSize.bmi(nRows, nCols);
+  }
+
+  @Benchmark
+  public Heat advanceInTime() {
+    heat.advanceInTime();
+    return heat;
+  }
+
+  @Benchmark
+  public BmiHeat update() {
+    bmi.update();
+    return bmi;
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public BmiHeat updateUntil() {
+    bmi.updateUntil(
+        bmi.getCurrentTime() + UPDATE_UNTIL_STEPS * bmi.getTimeStep());
+    return bmi;
+  }
+}
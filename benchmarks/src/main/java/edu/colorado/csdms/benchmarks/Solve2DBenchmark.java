@@ -0,0 +1,74 @@
+package edu.colorado.csdms.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.colorado.csdms.heat.ParallelSolve2D;
+import edu.colorado.csdms.heat.Solve2D;
+
+/**
+ * Benchmarks for a single sweep of the stencil solvers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+@State(Scope.Benchmark)
+public class Solve2DBenchmark {
+
+  @Param({"8x6", "256x256", "1024x1024", "4096x4096", "8192x8192"})
+  private String grid;
+
+  private int nRows;
+  private int nCols;
+  private double[] temperature;
+  private double[] newTemperature;
+  private ParallelSolve2D parallelSolver;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    nRows = GridSize.rows(grid);
+    nCols = GridSize.cols(grid);
+    temperature = GridSize.impulse(nRows, nCols);
+    newTemperature = new double[nRows * nCols];
+    parallelSolver = new ParallelSolve2D();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    parallelSolver.shutdown();
+  }
+
+  @Benchmark
+  public double[] solveSerial() {
+    Solve2D.solve(temperature, newTemperature, nRows, nCols, 1.0, 1.0, 1.0,
+        0.25);
+    return newTemperature;
+  }
+
+  @Benchmark
+  public double[] solveParallel() {
+    parallelSolver.solve(temperature, newTemperature, nRows, nCols, 1.0,
+        1.0, 1.0, 0.25);
+    return newTemperature;
+  }
+
+  @Benchmark
+  public double[] solveAllocating() {
+    return Solve2D.solve(temperature, nRows, nCols, 1.0, 1.0, 1.0, 0.25);
+  }
+}
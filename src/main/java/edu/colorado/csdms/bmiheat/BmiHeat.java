@@ -4,11 +4,15 @@
 package edu.colorado.csdms.bmiheat;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
 import edu.colorado.csdms.bmi.BMI;
+import edu.colorado.csdms.heat.AdaptiveStepper;
 import edu.colorado.csdms.heat.Heat;
+import edu.colorado.csdms.heat.SteadyState2D;
+import edu.colorado.csdms.heat.TileTuner;
 
 /**
  * BMI methods that wrap the {@link edu.colorado.csdms.heat.Heat} class.
@@ -19,12 +23,24 @@ public class BmiHeat implements BMI {
   public static final String[] INPUT_VAR_NAMES = 
     {"plate_surface__temperature"};
   public static final String[] OUTPUT_VAR_NAMES = 
-    {"plate_surface__temperature"};
+    {"plate_surface__temperature",
+     "plate_surface__x_derivative_of_temperature",
+     "plate_surface__y_derivative_of_temperature",
+     "plate_surface__magnitude_of_heat_diffusion_flux",
+     "plate_surface__area_integral_of_temperature"};
   
   private Heat model;
+  private boolean ownsModel;
   private HashMap<String, String> varUnits;
-  private HashMap<Integer, String> grids;
+  private HashMap<String, Integer> varGrids;
   private HashMap<Integer, String> gridType;
+  private DerivedFields derivedFields;
+  private SnapshotWriter snapshotWriter;
+  private volatile CouplingChannel couplingChannel;
+  private AdaptiveStepper adaptiveStepper;
+  private volatile FieldSnapshots snapshots;
+  private volatile BmiHeatMetrics metrics;
+  private final ReentrantLock updateLock = new ReentrantLock();
   
   /**
    * Creates a new BmiHeat model that is ready for initialization.
@@ -32,10 +48,23 @@ public class BmiHeat implements BMI {
   public BmiHeat() {
     model = null;
     varUnits = new HashMap<String, String>();
-    grids = new HashMap<Integer, String>();
+    varGrids = new HashMap<String, Integer>();
     gridType = new HashMap<Integer, String>();
   }
 
+  /**
+   * Creates a BmiHeat model that wraps an existing Heat model, such as a
+   * member of a {@link edu.colorado.csdms.heat.HeatEnsemble}. It's ready
+   * to use without initialization, and it shares the model's state.
+   *
+   * @param model the Heat model
+   */
+  public BmiHeat(Heat model) {
+    this();
+    this.model = model;
+    initializeHelper();
+  }
+
   /*
    * Model control functions
    */
@@ -44,15 +73,22 @@ public class BmiHeat implements BMI {
   public void initialize(String configFile) {
     File theFile = new File(configFile);
     if (theFile.exists()) {
-      model = new Heat(configFile);
+      Heat configured = new Heat(configFile);
+      closeModel();
+      model = configured;
+      ownsModel = true;
       initializeHelper();
+      tuneTiling();
     }
   }
 
   @Override
   public void initialize() {
+    closeModel();
     model = new Heat();
+    ownsModel = true;
     initializeHelper();
+    tuneTiling();
   }
 
   /**
@@ -60,41 +96,398 @@ public class BmiHeat implements BMI {
    * instance.
    */
   private void initializeHelper() {
-    varUnits.put(INPUT_VAR_NAMES[0], "K");
-    grids.put(0, INPUT_VAR_NAMES[0]);
+    varUnits.put(OUTPUT_VAR_NAMES[0], "K");
+    varUnits.put(OUTPUT_VAR_NAMES[1], "K m-1");
+    varUnits.put(OUTPUT_VAR_NAMES[2], "K m-1");
+    varUnits.put(OUTPUT_VAR_NAMES[3], "K m s-1");
+    varUnits.put(OUTPUT_VAR_NAMES[4], "K m2");
+    for (int i = 0; i < 4; i++) {
+      varGrids.put(OUTPUT_VAR_NAMES[i], 0);
+    }
+    varGrids.put(OUTPUT_VAR_NAMES[4], 1);
     gridType.put(0, "uniform_rectilinear");
+    gridType.put(1, "scalar");
+    derivedFields = new DerivedFields(model);
+    if (snapshots != null) {
+      snapshots = new FieldSnapshots(getCurrentTime(),
+          model.getModificationCount(), model.getTemperatureField());
+    }
+  }
+
+  /**
+   * Finds the derived output variable with a given name.
+   *
+   * @param varName the name of a variable
+   * @return the variable, such as {@link DerivedFields#X_GRADIENT}, or -1
+   *     if it isn't a derived variable
+   */
+  private static int derivedVariable(String varName) {
+    for (int i = 1; i < OUTPUT_VAR_NAMES.length; i++) {
+      if (OUTPUT_VAR_NAMES[i].equals(varName)) {
+        return i - 1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Chooses how the model's solver sweeps the grid, with a
+   * {@link TileTuner} that reads the choice for the grid size from its
+   * cache or makes it with a short calibration. Grids with short rows are
+   * left as they are. Set the system property
+   * {@value edu.colorado.csdms.heat.TileTuner#TILING_PROPERTY} to "false"
+   * to skip it.
+   */
+  private void tuneTiling() {
+    if (TileTuner.isEnabled()) {
+      model.setTiledSolver(new TileTuner().tune(model.getRowCount(),
+          model.getColumnCount()));
+    }
   }
 
   @Override
   public void update() {
+    BmiHeatMetrics m = metrics;
+    long startTime = m == null ? 0L : System.nanoTime();
+    long startBytes = m == null ? 0L : BmiHeatMetrics.threadAllocatedBytes();
+    updateLock.lock();
+    try {
+      step();
+    } finally {
+      updateLock.unlock();
+    }
+    if (m != null) {
+      m.recordUpdate(BmiHeatMetrics.Operation.UPDATE, startTime, startBytes);
+    }
+  }
+
+  /**
+   * Takes one time step. The caller holds the update lock.
+   */
+  private void step() {
     model.advanceInTime();
+    afterSteps(1);
   }
 
   @Override
   public void updateUntil(double then) {
-    Double nSteps = (then - getCurrentTime()) / getTimeStep();
-    for (int i = 0; i < Math.floor(nSteps); i++) {
-      update();
+    BmiHeatMetrics m = metrics;
+    long startTime = m == null ? 0L : System.nanoTime();
+    long startBytes = m == null ? 0L : BmiHeatMetrics.threadAllocatedBytes();
+    updateLock.lock();
+    try {
+      updateUntilHelper(then);
+    } finally {
+      updateLock.unlock();
+    }
+    if (m != null) {
+      m.recordUpdate(BmiHeatMetrics.Operation.UPDATE_UNTIL, startTime,
+          startBytes);
+    }
+  }
+
+  /**
+   * Advances the model to a time. The caller holds the update lock.
+   *
+   * @param then the time to advance to
+   */
+  private void updateUntilHelper(double then) {
+    if (adaptiveStepper != null) {
+      afterSteps(adaptiveStepper.advance(model, then));
+      return;
+    }
+    double nSteps = (then - getCurrentTime()) / getTimeStep();
+    long nWholeSteps = (long) Math.floor(nSteps);
+    while (nWholeSteps > 0) {
+      long nBlockSteps = nWholeSteps;
+      if (snapshotWriter != null) {
+        nBlockSteps = Math.min(nBlockSteps, snapshotWriter
+            .getStepsUntilNext(getCurrentTime(), getTimeStep()));
+      }
+      model.advanceInTime(nBlockSteps);
+      afterSteps(nBlockSteps);
+      nWholeSteps -= nBlockSteps;
     }
     updateFrac(nSteps - Math.floor(nSteps));
   }
 
   /**
-   * A helper for updating a model to a fractional time step.
+   * Passes the model state to the snapshot writer, if there is one, and
+   * publishes it to concurrent readers, if enabled, and to the coupling
+   * channel, if any, after the model takes time steps, and counts the steps
+   * in the metrics, if any.
+   *
+   * @param nSteps the number of steps taken, or 0 after a fractional step
+   */
+  private void afterSteps(long nSteps) {
+    BmiHeatMetrics m = metrics;
+    if (m != null) {
+      m.recordSteps(nSteps);
+    }
+    if (snapshotWriter != null) {
+      snapshotWriter.onStep(nSteps, getCurrentTime(),
+          model.getTemperatureField());
+    }
+    publish();
+  }
+
+  /**
+   * Makes {@link #updateUntil(double)} take steps whose length adapts to
+   * keep the local error within the stepper's tolerance, ending exactly at
+   * the requested time. The snapshot writer, if any, is told of the steps
+   * once they're all taken. {@link #update()} still takes one step of the
+   * model's time step.
+   *
+   * @param stepper the adaptive stepper, or null to take fixed steps
+   */
+  public void setAdaptiveStepper(AdaptiveStepper stepper) {
+    adaptiveStepper = stepper;
+  }
+
+  /**
+   * Chooses how the model takes time steps, and the length of each step.
+   * The implicit integrators are stable for any time step, so a model can
+   * reach a given time in far fewer updates than with the explicit scheme;
+   * {@link #getTimeStep()} reports the new step.
+   *
+   * @param integrator the time integrator
+   * @param timeStep the time step
+   */
+  public void setIntegrator(Heat.Integrator integrator, double timeStep) {
+    updateLock.lock();
+    try {
+      model.setIntegrator(integrator);
+      model.setTimeStep(timeStep);
+    } finally {
+      updateLock.unlock();
+    }
+  }
+
+  /**
+   * Chooses whether the model stores "plate_surface__temperature" as
+   * double or float. With float storage, {@link #getVarType(String)}
+   * reports "float", a time step moves half the bytes, and the
+   * <code>float[]</code> getters and setters copy the field without
+   * converting it; the <code>double[]</code> ones still work, widening or
+   * rounding each value. See {@link Heat#setPrecision(Heat.Precision)}.
+   *
+   * @param precision the precision
+   * @throws IllegalStateException if the field is to be stored as float
+   *     and the integrator isn't explicit
+   */
+  public void setPrecision(Heat.Precision precision) {
+    updateLock.lock();
+    try {
+      model.setPrecision(precision);
+      afterSet();
+    } finally {
+      updateLock.unlock();
+    }
+  }
+
+  /**
+   * Replaces the temperature field with the steady state of the model, in
+   * place of many calls to {@link #update()}. The temperatures on the edges
+   * of the plate are held at their current values, and the model time is
+   * not changed.
+   *
+   * @param solver the steady-state solver, which holds the tolerance and
+   *     largest number of iterations, and reports the residual
+   * @return the number of iterations taken
+   * @see edu.colorado.csdms.heat.SteadyState2D
+   */
+  public int solveSteadyState(SteadyState2D solver) {
+    updateLock.lock();
+    try {
+      int nIterations = model.solveSteadyState(solver);
+      afterSet();
+      return nIterations;
+    } finally {
+      updateLock.unlock();
+    }
+  }
+
+  /**
+   * Lets other threads read "plate_surface__temperature" while the model
+   * is being updated.
+   * <p>
+   * When enabled, the model publishes a copy of the temperature field after
+   * each {@link #update()}, each block of steps in
+   * {@link #updateUntil(double)}, and each call to setValue or
+   * setValueAtIndices. {@link #getValue(String, double[])} and
+   * {@link #getValueAtIndices(String, double[], int[])} read the latest
+   * copy, so they always see a complete field and never wait for an
+   * update to finish. Updates and setValue calls from different threads
+   * are run one at a time. {@link #getValuePtr(String)} still returns the
+   * live array. Call this method between updates.
+   *
+   * @param enabled true to publish copies for concurrent readers
+   */
+  public void setConcurrentReads(boolean enabled) {
+    updateLock.lock();
+    try {
+      if (!enabled) {
+        snapshots = null;
+      } else if (snapshots == null) {
+        snapshots = new FieldSnapshots(getCurrentTime(),
+            model.getModificationCount(), model.getTemperatureField());
+      }
+    } finally {
+      updateLock.unlock();
+    }
+  }
+
+  /**
+   * Tells whether concurrent reads are enabled.
+   *
+   * @return true if readers see published copies of the field
+   * @see #setConcurrentReads(boolean)
+   */
+  public boolean isConcurrentReads() {
+    return snapshots != null;
+  }
+
+  /**
+   * Measures the latency of each call to update, updateUntil, getValue,
+   * getValueAtIndices, setValue and setValueAtIndices, the bytes they copy,
+   * and the time steps taken and bytes allocated by updates. The same
+   * metrics can be given to several models. Without metrics, which is the
+   * default, each of those calls costs one extra field read.
+   *
+   * @param metrics the metrics to record into, or null to stop recording
+   */
+  public void setMetrics(BmiHeatMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Gets the metrics being recorded.
+   *
+   * @return the metrics, or null if none
+   * @see #setMetrics(BmiHeatMetrics)
+   */
+  public BmiHeatMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Publishes "plate_surface__temperature" to models in other processes
+   * through a {@link CouplingChannel}. The current field is published
+   * right away, then again after each {@link #update()}, each block of
+   * steps in {@link #updateUntil(double)}, and each call to setValue or
+   * setValueAtIndices. The channel isn't closed by this class.
+   *
+   * @param channel the coupling channel, or null to stop publishing
+   * @throws IllegalArgumentException if the channel's grid doesn't match
+   *     the model's
+   */
+  public void setCouplingChannel(CouplingChannel channel) {
+    if (channel != null && (channel.getRowCount() != model.getRowCount()
+        || channel.getColumnCount() != model.getColumnCount())) {
+      throw new IllegalArgumentException("The channel's grid is "
+          + channel.getRowCount() + " x " + channel.getColumnCount()
+          + ", not " + model.getRowCount() + " x " + model.getColumnCount());
+    }
+    updateLock.lock();
+    try {
+      couplingChannel = channel;
+      if (channel != null) {
+        channel.publish(getCurrentTime(), model.getTemperatureField());
+      }
+    } finally {
+      updateLock.unlock();
+    }
+  }
+
+  /**
+   * Gets the coupling channel the field is published to.
+   *
+   * @return the channel, or null if none
+   * @see #setCouplingChannel(CouplingChannel)
+   */
+  public CouplingChannel getCouplingChannel() {
+    return couplingChannel;
+  }
+
+  /**
+   * Streams snapshots of "plate_surface__temperature" to a file as the
+   * model is updated. The writer's step and time intervals decide when
+   * snapshots are taken. The writer isn't closed by this class.
+   *
+   * @param writer the snapshot writer, or null to stop taking snapshots
+   */
+  public void setSnapshotWriter(SnapshotWriter writer) {
+    if (writer != null) {
+      writer.setStartTime(getCurrentTime());
+    }
+    snapshotWriter = writer;
+  }
+
+  /**
+   * A helper for updating a model to a fractional time step. The step is
+   * published, but isn't counted as a step by the snapshot writer or the
+   * metrics, and isn't taken at all if its length is zero.
    * @param timeFrac
    */
   private void updateFrac(double timeFrac) {
+    if (timeFrac == 0.0) {
+      return;
+    }
     double timeStep = getTimeStep();
     model.setTimeStep(timeFrac * timeStep);
-    update();
+    model.advanceInTime();
     model.setTimeStep(timeStep);
+    afterSteps(0);
   }
 
+  /**
+   * Releases the model. A model made by {@link #initialize()} or
+   * {@link #restart(String)} is closed, stopping its solver threads and
+   * worker processes; one passed to {@link #BmiHeat(Heat)} is left to its
+   * owner.
+   */
   @Override
   public void finalize() {
+    closeModel();
     model = null;
   }
 
+  /**
+   * Closes the model, if this class made it, before it's released or
+   * replaced.
+   */
+  private void closeModel() {
+    if (model != null && ownsModel) {
+      model.close();
+    }
+  }
+
+  /**
+   * Saves the state of the model to a binary checkpoint file.
+   *
+   * @param fileName the path to the checkpoint file
+   * @throws IOException if the file can't be written
+   */
+  public void checkpoint(String fileName) throws IOException {
+    model.checkpoint(fileName);
+  }
+
+  /**
+   * Initializes the model from the state saved in a checkpoint file, in
+   * place of {@link #initialize(String)}.
+   *
+   * @param fileName the path to the checkpoint file
+   * @throws IOException if the file can't be read or is corrupt
+   */
+  public void restart(String fileName) throws IOException {
+    Heat restarted = Heat.restart(fileName);
+    closeModel();
+    model = restarted;
+    ownsModel = true;
+    initializeHelper();
+    tuneTiling();
+  }
+
   /*
    * Model information functions
    */
@@ -130,21 +523,23 @@ public class BmiHeat implements BMI {
 
   @Override
   public int getVarGrid(String varName) {
-    for (Map.Entry<Integer, String> entry : grids.entrySet()) {
-      if (entry.getValue().equals(varName)) {
-        return entry.getKey();
-      }
-    }
-    return -1;
+    Integer grid = varGrids.get(varName);
+    return grid == null ? -1 : grid;
   }
 
   @Override
   public String getVarType(String varName) {
     if (varName == getOutputVarNames()[0]) {
-      if (model.getTemperature().getClass().getName().contains("D")) {
+      if (model.getPrecision() != Heat.Precision.DOUBLE) {
+        return "float";
+      }
+      if (model.getTemperatureField().getClass().getName().contains("D")) {
         return "double";
       }
     }
+    if (derivedVariable(varName) >= 0) {
+      return "double";
+    }
     return null;
   }
 
@@ -158,13 +553,15 @@ public class BmiHeat implements BMI {
     int itemSize = 0;
     if (getVarType(varName).equalsIgnoreCase("double")) {
       itemSize = 8;
+    } else if (getVarType(varName).equalsIgnoreCase("float")) {
+      itemSize = 4;
     }
     return itemSize;
   }
 
   @Override
   public int getVarNbytes(String varName) {
-    if (varName == getOutputVarNames()[0]) {
+    if (varName == getOutputVarNames()[0] || derivedVariable(varName) >= 0) {
       return getVarItemsize(varName) * getGridSize(getVarGrid(varName));
     } else {
       return -1;
@@ -187,7 +584,7 @@ public class BmiHeat implements BMI {
 
   @Override
   public double getCurrentTime() {
-    return model.getTime();
+    return model.getTimeValue();
   }
 
   @Override
@@ -202,19 +599,111 @@ public class BmiHeat implements BMI {
 
   @Override
   public double getTimeStep() {
-    return model.getTimeStep();
+    return model.getTimeStepValue();
   }
 
   /*
    * Getters and setters
    */
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The derived output variables, the temperature gradient, the magnitude
+   * of the diffusive flux, and the area integral of temperature, are
+   * computed on the first call after an update or setValue call, and
+   * copied from that result until the next one. Changes made through the
+   * array from {@link #getValuePtr(String)} aren't seen by them until then.
+   */
   @Override
   public void getValue(String varName, double[] dest) {
-    int nRows = model.getShape().get(0);
-    int nCols = model.getShape().get(1);
-    for (int i = 0; i < nRows; i++) {
-      System.arraycopy(model.getTemperature()[i], 0, dest, (i*nCols), nCols);
+    BmiHeatMetrics m = metrics;
+    long startTime = m == null ? 0L : System.nanoTime();
+    int nValues;
+    int derived = derivedVariable(varName);
+    if (derived >= 0) {
+      nValues = getDerivedValue(derived, dest, null);
+      if (m != null) {
+        m.record(BmiHeatMetrics.Operation.GET_VALUE, startTime, 8L * nValues);
+      }
+      return;
+    }
+    FieldSnapshots published = snapshots;
+    float[] floats = published == null ? model.readFloatTemperatureField()
+        : null;
+    if (floats != null) {
+      nValues = floats.length;
+      for (int k = 0; k < nValues; k++) {
+        dest[k] = floats[k];
+      }
+    } else if (published == null) {
+      double[] temperature = model.getTemperatureField();
+      nValues = temperature.length;
+      System.arraycopy(temperature, 0, dest, 0, nValues);
+    } else {
+      FieldSnapshots.Buffer snapshot = published.acquire();
+      try {
+        nValues = snapshot.values.length;
+        System.arraycopy(snapshot.values, 0, dest, 0, nValues);
+      } finally {
+        published.release(snapshot);
+      }
+    }
+    if (m != null) {
+      m.record(BmiHeatMetrics.Operation.GET_VALUE, startTime, 8L * nValues);
+    }
+  }
+
+  /**
+   * Copies the values of a variable into an array of float, the type of
+   * "plate_surface__temperature" when the model stores it as float; see
+   * {@link #setPrecision(Heat.Precision)}. Values stored as double are
+   * rounded.
+   *
+   * @param varName the name of the variable
+   * @param dest the array to hold the values
+   */
+  public void getValue(String varName, float[] dest) {
+    BmiHeatMetrics m = metrics;
+    long startTime = m == null ? 0L : System.nanoTime();
+    int nValues;
+    int derived = derivedVariable(varName);
+    if (derived >= 0) {
+      double[] values = new double[getGridSize(getVarGrid(varName))];
+      nValues = getDerivedValue(derived, values, null);
+      for (int k = 0; k < nValues; k++) {
+        dest[k] = (float) values[k];
+      }
+      if (m != null) {
+        m.record(BmiHeatMetrics.Operation.GET_VALUE, startTime, 4L * nValues);
+      }
+      return;
+    }
+    FieldSnapshots published = snapshots;
+    float[] floats = published == null ? model.readFloatTemperatureField()
+        : null;
+    if (floats != null) {
+      nValues = floats.length;
+      System.arraycopy(floats, 0, dest, 0, nValues);
+    } else if (published == null) {
+      double[] temperature = model.getTemperatureField();
+      nValues = temperature.length;
+      for (int k = 0; k < nValues; k++) {
+        dest[k] = (float) temperature[k];
+      }
+    } else {
+      FieldSnapshots.Buffer snapshot = published.acquire();
+      try {
+        nValues = snapshot.values.length;
+        for (int k = 0; k < nValues; k++) {
+          dest[k] = (float) snapshot.values[k];
+        }
+      } finally {
+        published.release(snapshot);
+      }
+    }
+    if (m != null) {
+      m.record(BmiHeatMetrics.Operation.GET_VALUE, startTime, 4L * nValues);
     }
   }
 
@@ -228,14 +717,165 @@ public class BmiHeat implements BMI {
     return; // Not implemented for Heat
   }
 
+  /**
+   * Copies a derived output variable, computed from the current field or,
+   * with concurrent reads, from the latest published copy of it.
+   *
+   * @param derived the variable, such as {@link DerivedFields#X_GRADIENT}
+   * @param dest the array to hold the values
+   * @param indices the indices of the values, or null for all of them
+   * @return the number of values copied
+   */
+  private int getDerivedValue(int derived, double[] dest, int[] indices) {
+    DerivedFields fields = derivedFields;
+    FieldSnapshots published = snapshots;
+    long version;
+    double[] field;
+    FieldSnapshots.Buffer snapshot = null;
+    if (published == null) {
+      // The model's count also changes when it's stepped or set directly,
+      // not through this BMI, as a member of a HeatEnsemble is.
+      version = model.getModificationCount();
+      field = model.getTemperatureField();
+    } else {
+      snapshot = published.acquire();
+      version = snapshot.version;
+      field = snapshot.values;
+    }
+    try {
+      if (indices == null) {
+        return fields.get(derived, version, field, dest);
+      }
+      fields.getAtIndices(derived, version, field, dest, indices);
+      return indices.length;
+    } finally {
+      if (snapshot != null) {
+        published.release(snapshot);
+      }
+    }
+  }
+
+  /**
+   * Gets the number of times a derived output variable has been computed
+   * rather than copied from the last result, since the model was
+   * initialized.
+   *
+   * @return the number of computations
+   */
+  long getDerivedComputeCount() {
+    return derivedFields.getComputeCount();
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * For "plate_surface__temperature", returns the model's temperature
+   * array, a <code>double[]</code> stored by rows, or a
+   * <code>float[]</code> if the model stores the field as float, without
+   * copying it.
+   * Changes made through the array change the model state. The model
+   * alternates between two arrays on each time step, so the array returned
+   * here holds the current temperatures only until the next call to
+   * {@link #update()} or {@link #updateUntil(double)}; get it again after
+   * each update. The array must not be read while an update is running.
+   * If the model uses an active-tile solver, heat written through the
+   * array into a cold part of the grid is seen only after the next call to
+   * setValue or setValueAtIndices; if it uses worker processes, no change
+   * written through the array is seen until then.
+   *
+   * @return the temperature array, or null for any other variable
+   */
   @Override
+  @SuppressWarnings("unchecked")
   public <T> T getValuePtr(String varName) {
-    return null; // Not implemented for Heat
+    if (varName.equals(OUTPUT_VAR_NAMES[0])) {
+      float[] floats = model.getFloatTemperatureField();
+      return (T) (floats != null ? floats : model.getTemperatureField());
+    }
+    return null;
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Indices are flat, by rows, into the grid. Runs of consecutive or evenly
+   * spaced indices, such as a row or a column of the grid, are copied in
+   * bulk.
+   */
   @Override
   public void getValueAtIndices(String varName, double[] dest, int[] indices) {
-    return; // Not implemented
+    BmiHeatMetrics m = metrics;
+    long startTime = m == null ? 0L : System.nanoTime();
+    int derived = derivedVariable(varName);
+    FieldSnapshots published = snapshots;
+    float[] floats = published == null && derived < 0
+        ? model.readFloatTemperatureField() : null;
+    if (derived >= 0) {
+      getDerivedValue(derived, dest, indices);
+    } else if (floats != null) {
+      for (int i = 0; i < indices.length; i++) {
+        dest[i] = floats[indices[i]];
+      }
+    } else if (published == null) {
+      IndexRuns.gather(model.getTemperatureField(), dest, indices);
+    } else {
+      FieldSnapshots.Buffer snapshot = published.acquire();
+      try {
+        IndexRuns.gather(snapshot.values, dest, indices);
+      } finally {
+        published.release(snapshot);
+      }
+    }
+    if (m != null) {
+      m.record(BmiHeatMetrics.Operation.GET_VALUE_AT_INDICES, startTime,
+          8L * indices.length);
+    }
+  }
+
+  /**
+   * Copies the values of a variable at the given indices into an array of
+   * float. Indices are flat, by rows, into the grid, and values stored as
+   * double are rounded.
+   *
+   * @param varName the name of the variable
+   * @param dest the array to hold the values
+   * @param indices the indices of the values
+   * @see #getValue(String, float[])
+   */
+  public void getValueAtIndices(String varName, float[] dest, int[] indices) {
+    BmiHeatMetrics m = metrics;
+    long startTime = m == null ? 0L : System.nanoTime();
+    int derived = derivedVariable(varName);
+    FieldSnapshots published = snapshots;
+    float[] floats = published == null && derived < 0
+        ? model.readFloatTemperatureField() : null;
+    if (derived >= 0) {
+      double[] values = new double[indices.length];
+      getDerivedValue(derived, values, indices);
+      for (int i = 0; i < indices.length; i++) {
+        dest[i] = (float) values[i];
+      }
+    } else if (floats != null) {
+      IndexRuns.gather(floats, dest, indices);
+    } else {
+      FieldSnapshots.Buffer snapshot =
+          published == null ? null : published.acquire();
+      try {
+        double[] values = snapshot == null ? model.getTemperatureField()
+            : snapshot.values;
+        for (int i = 0; i < indices.length; i++) {
+          dest[i] = (float) values[indices[i]];
+        }
+      } finally {
+        if (snapshot != null) {
+          published.release(snapshot);
+        }
+      }
+    }
+    if (m != null) {
+      m.record(BmiHeatMetrics.Operation.GET_VALUE_AT_INDICES, startTime,
+          4L * indices.length);
+    }
   }
 
   @Override
@@ -250,11 +890,69 @@ public class BmiHeat implements BMI {
 
   @Override
   public void setValue(String varName, double[] src) {
-    int nRows = model.getShape().get(0);
-    int nCols = model.getShape().get(1);
-    double[][] temperature = model.getTemperature();
-    for (int i = 0; i < nRows; i++) {
-      System.arraycopy(src, (i*nCols), temperature[i], 0, nCols);
+    if (derivedVariable(varName) >= 0) {
+      return; // Derived variables are output only
+    }
+    BmiHeatMetrics m = metrics;
+    long startTime = m == null ? 0L : System.nanoTime();
+    int nValues;
+    updateLock.lock();
+    try {
+      float[] floats = model.getFloatTemperatureField();
+      if (floats != null) {
+        nValues = floats.length;
+        for (int k = 0; k < nValues; k++) {
+          floats[k] = (float) src[k];
+        }
+      } else {
+        double[] temperature = model.getTemperatureField();
+        nValues = temperature.length;
+        System.arraycopy(src, 0, temperature, 0, nValues);
+      }
+      model.temperatureChanged();
+      afterSet();
+    } finally {
+      updateLock.unlock();
+    }
+    if (m != null) {
+      m.record(BmiHeatMetrics.Operation.SET_VALUE, startTime, 8L * nValues);
+    }
+  }
+
+  /**
+   * Sets the values of a variable from an array of float.
+   *
+   * @param varName the name of the variable
+   * @param src the new values
+   * @see #getValue(String, float[])
+   */
+  public void setValue(String varName, float[] src) {
+    if (derivedVariable(varName) >= 0) {
+      return; // Derived variables are output only
+    }
+    BmiHeatMetrics m = metrics;
+    long startTime = m == null ? 0L : System.nanoTime();
+    int nValues;
+    updateLock.lock();
+    try {
+      float[] floats = model.getFloatTemperatureField();
+      if (floats != null) {
+        nValues = floats.length;
+        System.arraycopy(src, 0, floats, 0, nValues);
+      } else {
+        double[] temperature = model.getTemperatureField();
+        nValues = temperature.length;
+        for (int k = 0; k < nValues; k++) {
+          temperature[k] = src[k];
+        }
+      }
+      model.temperatureChanged();
+      afterSet();
+    } finally {
+      updateLock.unlock();
+    }
+    if (m != null) {
+      m.record(BmiHeatMetrics.Operation.SET_VALUE, startTime, 4L * nValues);
     }
   }
 
@@ -268,9 +966,99 @@ public class BmiHeat implements BMI {
     return; // Not implemented for Heat
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Indices are flat, by rows, into the grid. Runs of consecutive or evenly
+   * spaced indices, such as a row or a column of the grid, are copied in
+   * bulk.
+   */
   @Override
   public void setValueAtIndices(String varName, int[] indices, double[] src) {
-    return; // Not implemented for Heat
+    if (derivedVariable(varName) >= 0) {
+      return; // Derived variables are output only
+    }
+    BmiHeatMetrics m = metrics;
+    long startTime = m == null ? 0L : System.nanoTime();
+    updateLock.lock();
+    try {
+      float[] floats = model.getFloatTemperatureField();
+      if (floats != null) {
+        for (int i = 0; i < indices.length; i++) {
+          floats[indices[i]] = (float) src[i];
+        }
+      } else {
+        IndexRuns.scatter(src, model.getTemperatureField(), indices);
+      }
+      model.temperatureChanged();
+      afterSet();
+    } finally {
+      updateLock.unlock();
+    }
+    if (m != null) {
+      m.record(BmiHeatMetrics.Operation.SET_VALUE_AT_INDICES, startTime,
+          8L * indices.length);
+    }
+  }
+
+  /**
+   * Sets the values of a variable at the given indices from an array of
+   * float. Indices are flat, by rows, into the grid.
+   *
+   * @param varName the name of the variable
+   * @param indices the indices of the values
+   * @param src the new values
+   * @see #getValue(String, float[])
+   */
+  public void setValueAtIndices(String varName, int[] indices, float[] src) {
+    if (derivedVariable(varName) >= 0) {
+      return; // Derived variables are output only
+    }
+    BmiHeatMetrics m = metrics;
+    long startTime = m == null ? 0L : System.nanoTime();
+    updateLock.lock();
+    try {
+      float[] floats = model.getFloatTemperatureField();
+      if (floats != null) {
+        IndexRuns.scatter(src, floats, indices);
+      } else {
+        double[] temperature = model.getTemperatureField();
+        for (int i = 0; i < indices.length; i++) {
+          temperature[indices[i]] = src[i];
+        }
+      }
+      model.temperatureChanged();
+      afterSet();
+    } finally {
+      updateLock.unlock();
+    }
+    if (m != null) {
+      m.record(BmiHeatMetrics.Operation.SET_VALUE_AT_INDICES, startTime,
+          4L * indices.length);
+    }
+  }
+
+  /**
+   * Publishes the field to concurrent readers, if enabled, and to the
+   * coupling channel, if any, after it's set.
+   */
+  private void afterSet() {
+    publish();
+  }
+
+  /**
+   * Publishes the field to concurrent readers and the coupling channel.
+   */
+  private void publish() {
+    FieldSnapshots published = snapshots;
+    if (published != null) {
+      published.publish(getCurrentTime(), model.getModificationCount(),
+          model.getTemperatureField());
+    }
+    CouplingChannel channel = couplingChannel;
+    if (channel != null) {
+      channel.publish(getCurrentTime(), model.getTemperatureField());
+    }
   }
 
   @Override
@@ -289,16 +1077,23 @@ public class BmiHeat implements BMI {
 
   @Override
   public int getGridRank(int gridId) {
-    return model.getShape().size();
+    return isScalarGrid(gridId) ? 0 : 2;
   }
 
   @Override
   public int getGridSize(int gridId) {
-    int product = 1;
-    for (int i = 0; i < model.getShape().size(); i++) {
-      product *= model.getShape().get(i);
+    if (isScalarGrid(gridId)) {
+      return 1;
     }
-    return product;
+    return model.getRowCount() * model.getColumnCount();
+  }
+
+  /**
+   * Tells whether a grid holds a single value, like the area integral of
+   * temperature.
+   */
+  private boolean isScalarGrid(int gridId) {
+    return "scalar".equals(gridType.get(gridId));
   }
 
   @Override
@@ -308,23 +1103,29 @@ public class BmiHeat implements BMI {
 
   @Override
   public void getGridShape(int gridId, int[] gridShape) {
-    for (int i = 0; i < model.getShape().size(); i++) {
-      gridShape[i] = model.getShape().get(i);
+    if (isScalarGrid(gridId)) {
+      return;
     }
+    gridShape[0] = model.getRowCount();
+    gridShape[1] = model.getColumnCount();
   }
 
   @Override
   public void getGridSpacing(int gridId, double[] gridSpacing) {
-    for (int i = 0; i < model.getSpacing().size(); i++) {
-      gridSpacing[i] = model.getSpacing().get(i);
+    if (isScalarGrid(gridId)) {
+      return;
     }
+    gridSpacing[0] = model.getDy();
+    gridSpacing[1] = model.getDx();
   }
 
   @Override
   public void getGridOrigin(int gridId, double[] gridOrigin) {
-    for (int i = 0; i < model.getOrigin().size(); i++) {
-      gridOrigin[i] = model.getOrigin().get(i);
+    if (isScalarGrid(gridId)) {
+      return;
     }
+    gridOrigin[0] = model.getYStart();
+    gridOrigin[1] = model.getXStart();
   }
 
   @Override
@@ -0,0 +1,131 @@
+package edu.colorado.csdms.bmiheat;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A client for one session on a {@link BmiHeatServer} on the same host.
+ * <p>
+ * Calls are sent in batches, so a sequence of calls costs one round trip.
+ * For example:
+ *
+ * <pre>
+ * try (BmiHeatClient client = new BmiHeatClient(port)) {
+ *   List&lt;String&gt; replies = client.send("initialize",
+ *       "update_until 10.0", "get_value plate_surface__temperature");
+ *   double[] temperature = BmiHeatClient.parseValues(replies.get(2));
+ * }
+ * </pre>
+ */
+public class BmiHeatClient implements Closeable {
+
+  private final Socket socket;
+  private final BufferedReader in;
+  private final Writer out;
+
+  /**
+   * Connects to a server on the loopback address.
+   *
+   * @param port the port the server listens on
+   * @throws IOException if the server can't be reached
+   */
+  public BmiHeatClient(int port) throws IOException {
+    socket = new Socket(InetAddress.getLoopbackAddress(), port);
+    socket.setTcpNoDelay(true);
+    in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+        StandardCharsets.UTF_8));
+    out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+        StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Sends a batch of calls and waits for the replies.
+   *
+   * @param calls the calls, as described in {@link BmiHeatServer}
+   * @return the reply to each call, in order
+   * @throws IOException if the connection fails
+   */
+  public List<String> send(String... calls) throws IOException {
+    return send(Arrays.asList(calls));
+  }
+
+  /**
+   * Sends a batch of calls and waits for the replies.
+   *
+   * @param calls the calls, as described in {@link BmiHeatServer}
+   * @return the reply to each call, in order
+   * @throws IOException if the connection fails
+   */
+  public List<String> send(List<String> calls) throws IOException {
+    for (String call : calls) {
+      if (call.trim().isEmpty() || call.indexOf('\n') >= 0) {
+        throw new IllegalArgumentException("Not a call: \"" + call + "\"");
+      }
+      out.write(call);
+      out.write('\n');
+    }
+    out.write('\n');
+    out.flush();
+
+    List<String> replies = new ArrayList<String>(calls.size());
+    String line;
+    while ((line = in.readLine()) != null && !line.isEmpty()) {
+      replies.add(line);
+    }
+    if (line == null) {
+      throw new EOFException("The server closed the session");
+    }
+    return replies;
+  }
+
+  /**
+   * Tells whether a reply reports success.
+   *
+   * @param reply a reply from {@link #send}
+   * @return true if the call succeeded
+   */
+  public static boolean isOk(String reply) {
+    return reply.equals("ok") || reply.startsWith("ok ");
+  }
+
+  /**
+   * Gets the numbers in a successful reply.
+   *
+   * @param reply a reply from {@link #send}
+   * @return the values in the reply
+   * @throws IllegalArgumentException if the reply reports an error
+   */
+  public static double[] parseValues(String reply) {
+    if (!isOk(reply)) {
+      throw new IllegalArgumentException(reply);
+    }
+    String[] words = reply.split(" ");
+    double[] values = new double[words.length - 1];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = Double.parseDouble(words[i + 1]);
+    }
+    return values;
+  }
+
+  /**
+   * Ends the session.
+   *
+   * @throws IOException if the connection can't be closed
+   */
+  @Override
+  public void close() throws IOException {
+    socket.close();
+  }
+}
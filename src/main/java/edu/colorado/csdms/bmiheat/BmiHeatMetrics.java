@@ -0,0 +1,448 @@
+package edu.colorado.csdms.bmiheat;
+
+import java.beans.ConstructorProperties;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms for the hot methods of {@link BmiHeat}.
+ * <p>
+ * Attach an instance with {@link BmiHeat#setMetrics(BmiHeatMetrics)}. Each
+ * call to update, updateUntil, getValue, getValueAtIndices, setValue and
+ * setValueAtIndices then records its latency in a
+ * {@link LatencyHistogram} and the number of bytes it copies; updates also
+ * record the number of time steps taken and the bytes allocated by the
+ * calling thread. Recording takes no locks, so one instance can be shared
+ * by several models and by threads reading values concurrently. Without
+ * metrics attached, each call costs only a check of one field.
+ * <p>
+ * The metrics can be registered as a JMX MXBean with
+ * {@link #register(String)}, and passed to a {@link Reporter} at a fixed
+ * rate with {@link #startReporting(Reporter, long, TimeUnit)}.
+ */
+public class BmiHeatMetrics implements BmiHeatMetricsMXBean {
+
+  /** The JMX domain under which metrics are registered. */
+  public static final String JMX_DOMAIN = "edu.colorado.csdms.bmiheat";
+
+  /**
+   * The BMI methods that are measured.
+   */
+  public enum Operation {
+    UPDATE("update"),
+    UPDATE_UNTIL("update_until"),
+    GET_VALUE("get_value"),
+    GET_VALUE_AT_INDICES("get_value_at_indices"),
+    SET_VALUE("set_value"),
+    SET_VALUE_AT_INDICES("set_value_at_indices");
+
+    private final String bmiName;
+
+    Operation(String bmiName) {
+      this.bmiName = bmiName;
+    }
+
+    /**
+     * Gets the name of the method in the BMI specification.
+     *
+     * @return the name, such as "update_until"
+     */
+    public String getBmiName() {
+      return bmiName;
+    }
+  }
+
+  /**
+   * Receives metrics at a fixed rate.
+   */
+  public interface Reporter {
+
+    /**
+     * Reports the metrics. Called on the reporting thread.
+     *
+     * @param metrics the metrics
+     */
+    void report(BmiHeatMetrics metrics);
+  }
+
+  private static final ThreadMXBean THREADS =
+      ManagementFactory.getThreadMXBean();
+  private static final boolean ALLOCATION_SUPPORTED = isAllocationSupported();
+
+  private final Map<Operation, LatencyHistogram> latencies =
+      new EnumMap<Operation, LatencyHistogram>(Operation.class);
+  private final Map<Operation, AtomicLong> bytesMoved =
+      new EnumMap<Operation, AtomicLong>(Operation.class);
+  private final AtomicLong stepCount = new AtomicLong();
+  private final AtomicLong allocatedBytes = new AtomicLong();
+  private ObjectName objectName;
+  private ScheduledExecutorService reportingExecutor;
+
+  /**
+   * Makes an empty set of metrics.
+   */
+  public BmiHeatMetrics() {
+    for (Operation operation : Operation.values()) {
+      latencies.put(operation, new LatencyHistogram());
+      bytesMoved.put(operation, new AtomicLong());
+    }
+  }
+
+  /*
+   * Recording, called by BmiHeat
+   */
+
+  /**
+   * Gets the bytes allocated so far by the calling thread, or 0 if the JVM
+   * can't measure it.
+   */
+  static long threadAllocatedBytes() {
+    if (!ALLOCATION_SUPPORTED) {
+      return 0L;
+    }
+    return ((com.sun.management.ThreadMXBean) THREADS)
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * Records a call that copied values.
+   *
+   * @param operation the BMI method
+   * @param startTime the time at the start of the call
+   * @param nBytes the number of bytes copied
+   */
+  void record(Operation operation, long startTime, long nBytes) {
+    latencies.get(operation).record(System.nanoTime() - startTime);
+    if (nBytes != 0) {
+      bytesMoved.get(operation).addAndGet(nBytes);
+    }
+  }
+
+  /**
+   * Records an update.
+   *
+   * @param operation the BMI method
+   * @param startTime the time at the start of the call
+   * @param startAllocatedBytes the thread's allocated bytes at the start
+   */
+  void recordUpdate(Operation operation, long startTime,
+      long startAllocatedBytes) {
+    latencies.get(operation).record(System.nanoTime() - startTime);
+    if (ALLOCATION_SUPPORTED) {
+      allocatedBytes.addAndGet(threadAllocatedBytes() - startAllocatedBytes);
+    }
+  }
+
+  /**
+   * Records time steps taken.
+   *
+   * @param nSteps the number of steps
+   */
+  void recordSteps(long nSteps) {
+    stepCount.addAndGet(nSteps);
+  }
+
+  /*
+   * Reading
+   */
+
+  /**
+   * Gets the latency histogram of a method.
+   *
+   * @param operation the BMI method
+   * @return the histogram, in nanoseconds
+   */
+  public LatencyHistogram getLatencies(Operation operation) {
+    return latencies.get(operation);
+  }
+
+  /**
+   * Gets the number of calls to a method.
+   *
+   * @param operation the BMI method
+   * @return the number of calls
+   */
+  public long getCallCount(Operation operation) {
+    return latencies.get(operation).getCount();
+  }
+
+  /**
+   * Gets the number of bytes copied in or out of the model by a method.
+   *
+   * @param operation the BMI method
+   * @return the number of bytes
+   */
+  public long getBytesMoved(Operation operation) {
+    return bytesMoved.get(operation).get();
+  }
+
+  @Override
+  public long getStepCount() {
+    return stepCount.get();
+  }
+
+  @Override
+  public long getAllocatedBytes() {
+    return ALLOCATION_SUPPORTED ? allocatedBytes.get() : -1L;
+  }
+
+  @Override
+  public double getAllocatedBytesPerStep() {
+    long nSteps = stepCount.get();
+    if (!ALLOCATION_SUPPORTED || nSteps == 0) {
+      return Double.NaN;
+    }
+    return (double) allocatedBytes.get() / nSteps;
+  }
+
+  @Override
+  public List<OperationStats> getOperationStats() {
+    List<OperationStats> stats = new ArrayList<OperationStats>();
+    for (Operation operation : Operation.values()) {
+      LatencyHistogram histogram = latencies.get(operation);
+      stats.add(new OperationStats(operation.getBmiName(),
+          histogram.getCount(), histogram.getMeanNanos(),
+          histogram.getPercentileNanos(50.0),
+          histogram.getPercentileNanos(99.0),
+          histogram.getPercentileNanos(99.9), histogram.getMaxNanos(),
+          bytesMoved.get(operation).get()));
+    }
+    return Collections.unmodifiableList(stats);
+  }
+
+  @Override
+  public void reset() {
+    for (Operation operation : Operation.values()) {
+      latencies.get(operation).reset();
+      bytesMoved.get(operation).set(0);
+    }
+    stepCount.set(0);
+    allocatedBytes.set(0);
+  }
+
+  /**
+   * Describes the metrics, one line per method that has been called.
+   *
+   * @return the description
+   */
+  @Override
+  public String toString() {
+    StringBuilder text = new StringBuilder();
+    text.append(String.format(Locale.ROOT,
+        "steps=%d allocated_bytes_per_step=%.1f%n", getStepCount(),
+        getAllocatedBytesPerStep()));
+    for (OperationStats stats : getOperationStats()) {
+      if (stats.getCount() > 0) {
+        text.append(String.format(Locale.ROOT,
+            "%s: count=%d mean=%.0fns p50=%dns p99=%dns p99.9=%dns"
+            + " max=%dns bytes=%d%n", stats.getOperation(),
+            stats.getCount(), stats.getMeanNanos(), stats.getP50Nanos(),
+            stats.getP99Nanos(), stats.getP999Nanos(), stats.getMaxNanos(),
+            stats.getBytes()));
+      }
+    }
+    return text.toString();
+  }
+
+  /*
+   * JMX and reporting
+   */
+
+  /**
+   * Registers the metrics with the platform MBean server, under the name
+   * <code>edu.colorado.csdms.bmiheat:type=BmiHeatMetrics,name=</code>
+   * followed by the given name.
+   *
+   * @param name a name that tells these metrics from others in the JVM
+   * @return the object name registered
+   * @throws IllegalStateException if the name is in use or invalid
+   */
+  public synchronized ObjectName register(String name) {
+    unregister();
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      ObjectName newName = new ObjectName(JMX_DOMAIN
+          + ":type=BmiHeatMetrics,name=" + ObjectName.quote(name));
+      server.registerMBean(this, newName);
+      objectName = newName;
+      return newName;
+    } catch (JMException e) {
+      throw new IllegalStateException(
+          "Can't register metrics as " + name + ": " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Removes the metrics from the platform MBean server, if registered.
+   */
+  public synchronized void unregister() {
+    if (objectName == null) {
+      return;
+    }
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    } catch (JMException e) {
+      // Already gone.
+    }
+    objectName = null;
+  }
+
+  /**
+   * Passes the metrics to a reporter at a fixed rate, on a daemon thread,
+   * in place of any reporter started before.
+   *
+   * @param reporter the reporter
+   * @param period the time between reports
+   * @param unit the unit of period
+   */
+  public synchronized void startReporting(final Reporter reporter,
+      long period, TimeUnit unit) {
+    stopReporting();
+    reportingExecutor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "bmiheat-metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    reportingExecutor.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        reporter.report(BmiHeatMetrics.this);
+      }
+    }, period, period, unit);
+  }
+
+  /**
+   * Stops the reporter, if one was started.
+   */
+  public synchronized void stopReporting() {
+    if (reportingExecutor != null) {
+      reportingExecutor.shutdownNow();
+      reportingExecutor = null;
+    }
+  }
+
+  /**
+   * Makes a reporter that prints the metrics, as given by
+   * {@link #toString()}, to a stream.
+   *
+   * @param out the stream, such as System.err
+   * @return the reporter
+   */
+  public static Reporter printTo(final PrintStream out) {
+    return new Reporter() {
+      @Override
+      public void report(BmiHeatMetrics metrics) {
+        out.print(metrics);
+        out.flush();
+      }
+    };
+  }
+
+  private static boolean isAllocationSupported() {
+    try {
+      if (!(THREADS instanceof com.sun.management.ThreadMXBean)) {
+        return false;
+      }
+      com.sun.management.ThreadMXBean hotSpotThreads =
+          (com.sun.management.ThreadMXBean) THREADS;
+      return hotSpotThreads.isThreadAllocatedMemorySupported()
+          && hotSpotThreads.isThreadAllocatedMemoryEnabled();
+    } catch (LinkageError e) {
+      return false;
+    }
+  }
+
+  /**
+   * The statistics of one BMI method, as seen through JMX.
+   */
+  public static class OperationStats {
+
+    private final String operation;
+    private final long count;
+    private final double meanNanos;
+    private final long p50Nanos;
+    private final long p99Nanos;
+    private final long p999Nanos;
+    private final long maxNanos;
+    private final long bytes;
+
+    /**
+     * Makes the statistics of a method.
+     *
+     * @param operation the BMI name of the method
+     * @param count the number of calls
+     * @param meanNanos the mean latency
+     * @param p50Nanos the median latency
+     * @param p99Nanos the 99th percentile latency
+     * @param p999Nanos the 99.9th percentile latency
+     * @param maxNanos the largest latency
+     * @param bytes the number of bytes copied
+     */
+    @ConstructorProperties({"operation", "count", "meanNanos", "p50Nanos",
+        "p99Nanos", "p999Nanos", "maxNanos", "bytes"})
+    public OperationStats(String operation, long count, double meanNanos,
+        long p50Nanos, long p99Nanos, long p999Nanos, long maxNanos,
+        long bytes) {
+      this.operation = operation;
+      this.count = count;
+      this.meanNanos = meanNanos;
+      this.p50Nanos = p50Nanos;
+      this.p99Nanos = p99Nanos;
+      this.p999Nanos = p999Nanos;
+      this.maxNanos = maxNanos;
+      this.bytes = bytes;
+    }
+
+    public String getOperation() {
+      return operation;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public double getMeanNanos() {
+      return meanNanos;
+    }
+
+    public long getP50Nanos() {
+      return p50Nanos;
+    }
+
+    public long getP99Nanos() {
+      return p99Nanos;
+    }
+
+    public long getP999Nanos() {
+      return p999Nanos;
+    }
+
+    public long getMaxNanos() {
+      return maxNanos;
+    }
+
+    public long getBytes() {
+      return bytes;
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package edu.colorado.csdms.bmiheat;
+
+import java.util.List;
+
+/**
+ * The management interface of {@link BmiHeatMetrics}, seen by JMX clients
+ * such as JConsole once the metrics are registered.
+ */
+public interface BmiHeatMetricsMXBean {
+
+  /**
+   * Gets the number of time steps taken.
+   *
+   * @return the step count
+   */
+  long getStepCount();
+
+  /**
+   * Gets the number of bytes allocated by the calling threads during
+   * updates.
+   *
+   * @return the bytes allocated, or -1 if the JVM can't measure it
+   */
+  long getAllocatedBytes();
+
+  /**
+   * Gets the number of bytes allocated during updates per time step.
+   *
+   * @return the bytes allocated per step, or NaN if unknown
+   */
+  double getAllocatedBytesPerStep();
+
+  /**
+   * Gets the counts, latencies and bytes moved of each BMI method.
+   *
+   * @return the statistics, one entry per method
+   */
+  List<BmiHeatMetrics.OperationStats> getOperationStats();
+
+  /**
+   * Clears all counts and latencies.
+   */
+  void reset();
+}
@@ -0,0 +1,239 @@
+package edu.colorado.csdms.bmiheat;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves many independent BmiHeat sessions from one JVM over a loopback
+ * socket.
+ * <p>
+ * Each connection is a session with its own model and its own thread. On
+ * JDK 21 or later the session threads are virtual threads, so idle
+ * sessions cost little; on earlier JDKs they are daemon platform threads.
+ * Calls that advance or build a model run on a fixed pool of compute
+ * threads, so the number of sessions doesn't change how many threads
+ * compete for the processors.
+ * <p>
+ * A client sends a batch of calls, one per line, ending with an empty
+ * line. The server runs them in order and replies with one line per call,
+ * followed by an empty line. A call is the BMI function name in snake
+ * case followed by its arguments, separated by spaces, for example
+ * <code>update_until 10.0</code> or <code>get_value
+ * plate_surface__temperature</code>. Arrays are passed and returned as
+ * space-separated values; <code>set_value_at_indices</code> takes the
+ * number of indices, the indices, then the values. The reply to a call is
+ * "ok" followed by any results, or "error" followed by a message. A call
+ * whose BMI function returns null, such as <code>get_time_units</code>,
+ * replies with just "ok". A session's model is finalized when its client
+ * disconnects.
+ * {@link BmiHeatClient} speaks this protocol.
+ */
+public class BmiHeatServer implements Closeable {
+
+  private final ServerSocket serverSocket;
+  private final ExecutorService computePool;
+  private final ThreadFactory sessionThreads;
+  private final Thread acceptThread;
+  private final Set<Socket> connections =
+      Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+  private final AtomicLong sessionCount = new AtomicLong();
+  private volatile boolean closed;
+
+  /**
+   * Starts a server with one compute thread per processor.
+   *
+   * @param port the port to listen on, or 0 for any free port
+   * @throws IOException if the socket can't be opened
+   */
+  public BmiHeatServer(int port) throws IOException {
+    this(port, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Starts a server.
+   *
+   * @param port the port to listen on, or 0 for any free port
+   * @param nComputeThreads the number of threads that run initialize and
+   *     update calls
+   * @throws IOException if the socket can't be opened
+   */
+  public BmiHeatServer(int port, int nComputeThreads) throws IOException {
+    if (nComputeThreads < 1) {
+      throw new IllegalArgumentException("nComputeThreads must be positive");
+    }
+    serverSocket =
+        new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+    computePool = Executors.newFixedThreadPool(nComputeThreads,
+        new DaemonThreadFactory("BmiHeatServer-compute-"));
+    sessionThreads = makeSessionThreadFactory();
+    acceptThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        acceptConnections();
+      }
+    }, "BmiHeatServer-accept");
+    acceptThread.setDaemon(true);
+    acceptThread.start();
+  }
+
+  /**
+   * Gets the port the server listens on.
+   *
+   * @return the port number
+   */
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * Gets the number of sessions started so far.
+   *
+   * @return the number of sessions
+   */
+  public long getSessionCount() {
+    return sessionCount.get();
+  }
+
+  /**
+   * Gets the number of sessions now connected.
+   *
+   * @return the number of open sessions
+   */
+  public int getOpenSessionCount() {
+    return connections.size();
+  }
+
+  /**
+   * Tells whether sessions run on virtual threads.
+   *
+   * @return true if session threads are virtual
+   */
+  public boolean isUsingVirtualThreads() {
+    return !(sessionThreads instanceof DaemonThreadFactory);
+  }
+
+  /**
+   * Stops accepting connections, closes the open sessions, and stops the
+   * compute threads.
+   *
+   * @throws IOException if the server socket can't be closed
+   */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    serverSocket.close();
+    for (Socket socket : connections) {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // The session ends either way.
+      }
+    }
+    computePool.shutdown();
+  }
+
+  /**
+   * Runs on the accept thread, starting a session for each connection.
+   */
+  private void acceptConnections() {
+    while (!closed) {
+      final Socket socket;
+      try {
+        socket = serverSocket.accept();
+      } catch (IOException e) {
+        return;
+      }
+      connections.add(socket);
+      sessionCount.incrementAndGet();
+      sessionThreads.newThread(new Runnable() {
+        @Override
+        public void run() {
+          serve(socket);
+        }
+      }).start();
+    }
+  }
+
+  /**
+   * Runs a session until the client disconnects.
+   */
+  private void serve(Socket socket) {
+    BmiHeatSession session = new BmiHeatSession(computePool);
+    try (Socket s = socket;
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+            s.getInputStream(), StandardCharsets.UTF_8));
+        Writer out = new BufferedWriter(new OutputStreamWriter(
+            s.getOutputStream(), StandardCharsets.UTF_8))) {
+      s.setTcpNoDelay(true);
+      String line;
+      while ((line = in.readLine()) != null) {
+        if (line.isEmpty()) {
+          out.write('\n');
+          out.flush();
+        } else {
+          out.write(session.call(line));
+          out.write('\n');
+        }
+      }
+    } catch (IOException e) {
+      // The client went away; the session ends.
+    } finally {
+      connections.remove(socket);
+      session.close();
+    }
+  }
+
+  /**
+   * Makes a factory for virtual threads if the JDK has them, using
+   * reflection so that this class still runs on older JDKs.
+   */
+  private static ThreadFactory makeSessionThreadFactory() {
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      builder = builderClass.getMethod("name", String.class, long.class)
+          .invoke(builder, "BmiHeatServer-session-", 1L);
+      return (ThreadFactory) builderClass.getMethod("factory")
+          .invoke(builder);
+    } catch (Exception | LinkageError e) {
+      return new DaemonThreadFactory("BmiHeatServer-session-");
+    }
+  }
+
+  /**
+   * Makes numbered daemon platform threads.
+   */
+  private static class DaemonThreadFactory implements ThreadFactory {
+
+    private final String prefix;
+    private final AtomicInteger count = new AtomicInteger();
+
+    DaemonThreadFactory(String prefix) {
+      this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable task) {
+      Thread thread = new Thread(task, prefix + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
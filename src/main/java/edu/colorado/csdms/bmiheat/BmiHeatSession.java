@@ -0,0 +1,276 @@
+package edu.colorado.csdms.bmiheat;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Runs BMI calls, written as lines of text, on one BmiHeat model. The
+ * format of the calls and replies is described in {@link BmiHeatServer}.
+ * <p>
+ * Calls that advance or build the model are run on a shared pool of
+ * compute threads; the others are run on the calling thread.
+ */
+class BmiHeatSession {
+
+  private final BmiHeat model = new BmiHeat();
+  private final ExecutorService computePool;
+  private boolean initialized;
+
+  /**
+   * Makes a session with a new, uninitialized model.
+   *
+   * @param computePool the pool that runs initialize and update calls
+   */
+  BmiHeatSession(ExecutorService computePool) {
+    this.computePool = computePool;
+  }
+
+  /**
+   * Runs one call.
+   *
+   * @param line the call
+   * @return the reply
+   */
+  String call(String line) {
+    String[] words = line.trim().split("\\s+");
+    try {
+      String result = dispatch(words);
+      // A null result, like the time units of this model, has no payload.
+      return result == null || result.isEmpty() ? "ok" : "ok " + result;
+    } catch (Exception e) {
+      String message = e.getMessage() == null
+          ? e.getClass().getSimpleName() : e.getMessage();
+      return "error " + message.replace('\n', ' ');
+    }
+  }
+
+  /**
+   * Ends the session, finalizing the model so that any threads, writers or
+   * worker processes it started are stopped.
+   */
+  void close() {
+    if (initialized) {
+      model.finalize();
+      initialized = false;
+    }
+  }
+
+  private String dispatch(final String[] words) throws Exception {
+    String name = words[0];
+    switch (name) {
+      case "initialize":
+        if (words.length > 1 && !new File(words[1]).exists()) {
+          throw new IllegalArgumentException(
+              "No such configuration file: " + words[1]);
+        }
+        compute(new Callable<String>() {
+          @Override
+          public String call() {
+            if (words.length > 1) {
+              model.initialize(words[1]);
+            } else {
+              model.initialize();
+            }
+            return "";
+          }
+        });
+        initialized = true;
+        return "";
+      case "finalize":
+        model.finalize();
+        initialized = false;
+        return "";
+      case "get_component_name":
+        return model.getComponentName();
+      case "get_input_var_names":
+        return join(model.getInputVarNames());
+      case "get_output_var_names":
+        return join(model.getOutputVarNames());
+      default:
+        break;
+    }
+
+    if (!initialized) {
+      throw new IllegalStateException("The model is not initialized");
+    }
+    switch (name) {
+      case "update":
+        return compute(new Callable<String>() {
+          @Override
+          public String call() {
+            model.update();
+            return "";
+          }
+        });
+      case "update_until": {
+        final double then = Double.parseDouble(argument(words, 1));
+        return compute(new Callable<String>() {
+          @Override
+          public String call() {
+            model.updateUntil(then);
+            return "";
+          }
+        });
+      }
+      case "get_var_grid":
+        return String.valueOf(model.getVarGrid(argument(words, 1)));
+      case "get_var_type":
+        return model.getVarType(argument(words, 1));
+      case "get_var_units":
+        return model.getVarUnits(argument(words, 1));
+      case "get_var_itemsize":
+        return String.valueOf(model.getVarItemsize(argument(words, 1)));
+      case "get_var_nbytes":
+        return String.valueOf(model.getVarNbytes(argument(words, 1)));
+      case "get_start_time":
+        return String.valueOf(model.getStartTime());
+      case "get_current_time":
+        return String.valueOf(model.getCurrentTime());
+      case "get_end_time":
+        return String.valueOf(model.getEndTime());
+      case "get_time_step":
+        return String.valueOf(model.getTimeStep());
+      case "get_time_units":
+        return model.getTimeUnits();
+      case "get_grid_rank":
+        return String.valueOf(model.getGridRank(gridArgument(words)));
+      case "get_grid_size":
+        return String.valueOf(model.getGridSize(gridArgument(words)));
+      case "get_grid_type":
+        return model.getGridType(gridArgument(words));
+      case "get_grid_shape": {
+        int grid = gridArgument(words);
+        int[] shape = new int[model.getGridRank(grid)];
+        model.getGridShape(grid, shape);
+        return join(shape);
+      }
+      case "get_grid_spacing": {
+        int grid = gridArgument(words);
+        double[] spacing = new double[model.getGridRank(grid)];
+        model.getGridSpacing(grid, spacing);
+        return join(spacing);
+      }
+      case "get_grid_origin": {
+        int grid = gridArgument(words);
+        double[] origin = new double[model.getGridRank(grid)];
+        model.getGridOrigin(grid, origin);
+        return join(origin);
+      }
+      case "get_value": {
+        String varName = argument(words, 1);
+        double[] dest = new double[valueCount(varName)];
+        model.getValue(varName, dest);
+        return join(dest);
+      }
+      case "set_value": {
+        String varName = argument(words, 1);
+        model.setValue(varName, parseDoubles(words, 2, words.length - 2));
+        return "";
+      }
+      case "get_value_at_indices": {
+        String varName = argument(words, 1);
+        int[] indices = parseInts(words, 2, words.length - 2);
+        double[] dest = new double[indices.length];
+        model.getValueAtIndices(varName, dest, indices);
+        return join(dest);
+      }
+      case "set_value_at_indices": {
+        String varName = argument(words, 1);
+        int count = Integer.parseInt(argument(words, 2));
+        if (words.length != 3 + 2 * count) {
+          throw new IllegalArgumentException(
+              "Expected " + count + " indices and " + count + " values");
+        }
+        model.setValueAtIndices(varName, parseInts(words, 3, count),
+            parseDoubles(words, 3 + count, count));
+        return "";
+      }
+      default:
+        throw new IllegalArgumentException("Unknown call: " + name);
+    }
+  }
+
+  /**
+   * Runs a call on the compute pool and waits for it.
+   */
+  private String compute(Callable<String> task) throws Exception {
+    try {
+      return computePool.submit(task).get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private int valueCount(String varName) {
+    int grid = model.getVarGrid(varName);
+    if (grid < 0) {
+      throw new IllegalArgumentException("Unknown variable: " + varName);
+    }
+    return model.getGridSize(grid);
+  }
+
+  private static String argument(String[] words, int index) {
+    if (index >= words.length) {
+      throw new IllegalArgumentException(words[0] + " needs more arguments");
+    }
+    return words[index];
+  }
+
+  private static int gridArgument(String[] words) {
+    return Integer.parseInt(argument(words, 1));
+  }
+
+  private static double[] parseDoubles(String[] words, int first, int count) {
+    double[] values = new double[count];
+    for (int i = 0; i < count; i++) {
+      values[i] = Double.parseDouble(words[first + i]);
+    }
+    return values;
+  }
+
+  private static int[] parseInts(String[] words, int first, int count) {
+    int[] values = new int[count];
+    for (int i = 0; i < count; i++) {
+      values[i] = Integer.parseInt(words[first + i]);
+    }
+    return values;
+  }
+
+  private static String join(String[] values) {
+    StringBuilder text = new StringBuilder();
+    for (String value : values) {
+      if (text.length() > 0) {
+        text.append(' ');
+      }
+      text.append(value);
+    }
+    return text.toString();
+  }
+
+  private static String join(int[] values) {
+    StringBuilder text = new StringBuilder();
+    for (int value : values) {
+      if (text.length() > 0) {
+        text.append(' ');
+      }
+      text.append(value);
+    }
+    return text.toString();
+  }
+
+  private static String join(double[] values) {
+    StringBuilder text = new StringBuilder(values.length * 8);
+    for (double value : values) {
+      if (text.length() > 0) {
+        text.append(' ');
+      }
+      text.append(value);
+    }
+    return text.toString();
+  }
+}
@@ -0,0 +1,203 @@
+package edu.colorado.csdms.bmiheat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Publishes a grid variable to other processes through a memory-mapped
+ * file, for coupling with models that run outside this JVM.
+ * <p>
+ * The file holds a ring of slots. Each publish copies the field into the
+ * next slot, so readers map the file and read the values in place, with
+ * no serialization. There is one writer and any number of readers, and
+ * neither waits for the other: each slot carries a sequence number that
+ * the writer negates while it fills the slot, so a reader can tell when
+ * the slot it read was being overwritten and try again. A reader that
+ * keeps up with the writer never sees that, since a slot is only reused
+ * after {@code slotCount - 1} more publishes. {@link CouplingReader} reads
+ * the file.
+ * <p>
+ * The file starts with a {@value #HEADER_SIZE}-byte header holding a
+ * magic number, the format version, the number of rows and columns, the
+ * number of slots, and, at byte {@value #LATEST_OFFSET}, the sequence
+ * number of the latest publish, numbered from 1. Slot <i>i</i> starts at
+ * byte <code>HEADER_SIZE + i * slotSize</code>, where the slot size is
+ * <code>16 + 8 * nRows * nCols</code> rounded up to a multiple of 64. A
+ * slot holds its sequence number, the model time, and the field stored by
+ * rows. Publish <i>n</i> goes in slot <code>(n - 1) % slotCount</code>.
+ * Integers, longs and doubles are little-endian, so processes written in
+ * other languages can map the file too.
+ */
+public class CouplingChannel implements Closeable {
+
+  /** Identifies a coupling file: "HCPL" in ASCII. */
+  public static final int MAGIC = 0x4843504c;
+
+  /** The version of the file format. */
+  public static final int VERSION = 1;
+
+  /** The size of the header in bytes; the first slot starts here. */
+  public static final int HEADER_SIZE = 64;
+
+  /** The position in the header of the latest sequence number. */
+  public static final int LATEST_OFFSET = 24;
+
+  /** The default number of slots. */
+  public static final int DEFAULT_SLOT_COUNT = 4;
+
+  private final int nRows;
+  private final int nCols;
+  private final FileChannel channel;
+  private final MappedByteBuffer header;
+  private final MappedByteBuffer[] slots;
+  private final DoubleBuffer[] slotValues;
+  private long sequence;
+  private boolean closed;
+
+  /**
+   * Makes a channel with the default number of slots.
+   *
+   * @param fileName the path to the file, which is replaced
+   * @param nRows the number of rows in the grid
+   * @param nCols the number of columns in the grid
+   * @throws IOException if the file can't be created or mapped
+   */
+  public CouplingChannel(String fileName, int nRows, int nCols)
+      throws IOException {
+    this(fileName, nRows, nCols, DEFAULT_SLOT_COUNT);
+  }
+
+  /**
+   * Makes a channel.
+   *
+   * @param fileName the path to the file, which is replaced
+   * @param nRows the number of rows in the grid
+   * @param nCols the number of columns in the grid
+   * @param slotCount the number of slots, at least 2
+   * @throws IOException if the file can't be created or mapped
+   */
+  public CouplingChannel(String fileName, int nRows, int nCols,
+      int slotCount) throws IOException {
+    if (slotCount < 2) {
+      throw new IllegalArgumentException("slotCount must be at least 2");
+    }
+    long slotSize = getSlotSize(nRows, nCols);
+    if (slotSize > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("The grid is too large to map");
+    }
+    this.nRows = nRows;
+    this.nCols = nCols;
+
+    channel = FileChannel.open(Paths.get(fileName),
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+    header.order(ByteOrder.LITTLE_ENDIAN);
+    slots = new MappedByteBuffer[slotCount];
+    slotValues = new DoubleBuffer[slotCount];
+    for (int i = 0; i < slotCount; i++) {
+      slots[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+          HEADER_SIZE + i * slotSize, slotSize);
+      slots[i].order(ByteOrder.LITTLE_ENDIAN);
+      slots[i].position(16);
+      slotValues[i] = slots[i].slice().order(ByteOrder.LITTLE_ENDIAN)
+          .asDoubleBuffer();
+      slots[i].position(0);
+    }
+
+    // The magic number goes last, so a reader never sees a partial header.
+    header.putInt(4, VERSION).putInt(8, nRows).putInt(12, nCols)
+        .putInt(16, slotCount).putLong(LATEST_OFFSET, 0L);
+    MemoryFences.releaseFence();
+    header.putInt(0, MAGIC);
+  }
+
+  /**
+   * Gets the size of a slot.
+   *
+   * @param nRows the number of rows in the grid
+   * @param nCols the number of columns in the grid
+   * @return the size of a slot in bytes
+   */
+  static long getSlotSize(int nRows, int nCols) {
+    long size = 16 + 8L * nRows * nCols;
+    return (size + 63) / 64 * 64;
+  }
+
+  /**
+   * Gets the number of rows in the grid.
+   *
+   * @return the number of rows
+   */
+  public int getRowCount() {
+    return nRows;
+  }
+
+  /**
+   * Gets the number of columns in the grid.
+   *
+   * @return the number of columns
+   */
+  public int getColumnCount() {
+    return nCols;
+  }
+
+  /**
+   * Gets the sequence number of the latest publish.
+   *
+   * @return the sequence number, or 0 if nothing has been published
+   */
+  public synchronized long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * Publishes a field to the readers.
+   *
+   * @param time the model time of the field
+   * @param field the values, stored by rows
+   * @return the sequence number of the publish
+   */
+  public synchronized long publish(double time, double[] field) {
+    if (closed) {
+      throw new IllegalStateException("The channel is closed");
+    }
+    if (field.length != nRows * nCols) {
+      throw new IllegalArgumentException("The field has " + field.length
+          + " values, not " + nRows * nCols);
+    }
+    long next = sequence + 1;
+    int index = (int) ((next - 1) % slots.length);
+    MappedByteBuffer slot = slots[index];
+
+    slot.putLong(0, -next);
+    MemoryFences.releaseFence();
+    slot.putDouble(8, time);
+    DoubleBuffer values = slotValues[index];
+    values.clear();
+    values.put(field);
+    MemoryFences.releaseFence();
+    slot.putLong(0, next);
+    MemoryFences.releaseFence();
+    header.putLong(LATEST_OFFSET, next);
+    sequence = next;
+    return next;
+  }
+
+  /**
+   * Closes the file. Readers can still read the last fields published.
+   *
+   * @throws IOException if the file can't be closed
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    closed = true;
+    channel.close();
+  }
+}
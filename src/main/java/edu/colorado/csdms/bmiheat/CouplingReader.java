@@ -0,0 +1,288 @@
+package edu.colorado.csdms.bmiheat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reads the fields published through a {@link CouplingChannel}, from this
+ * process or another one.
+ * <p>
+ * {@link #latest()} gives a {@link Frame} that views the values in the
+ * mapped file without copying them; {@link #read(double[])} copies them
+ * into an array. Neither waits for the writer. A reader is meant for one
+ * thread.
+ */
+public class CouplingReader implements Closeable {
+
+  private final FileChannel channel;
+  private final MappedByteBuffer header;
+  private final MappedByteBuffer[] slots;
+  private final DoubleBuffer[] slotValues;
+  private final int nRows;
+  private final int nCols;
+
+  /**
+   * A field published through the channel, viewed in place.
+   * <p>
+   * The writer may reuse the slot of a frame once it has published
+   * {@code slotCount - 1} more fields. Values read from a frame are
+   * consistent only if {@link #isValid()} is still true after they're
+   * read.
+   */
+  public class Frame {
+
+    private final long sequence;
+    private final double time;
+    private final MappedByteBuffer slot;
+    private final DoubleBuffer values;
+
+    private Frame(long sequence, double time, MappedByteBuffer slot,
+        DoubleBuffer values) {
+      this.sequence = sequence;
+      this.time = time;
+      this.slot = slot;
+      this.values = values;
+    }
+
+    /**
+     * Gets the sequence number of the publish.
+     *
+     * @return the sequence number, from 1
+     */
+    public long getSequence() {
+      return sequence;
+    }
+
+    /**
+     * Gets the model time of the field.
+     *
+     * @return the model time
+     */
+    public double getTime() {
+      return time;
+    }
+
+    /**
+     * Gets the values, stored by rows, in the mapped file.
+     *
+     * @return a read-only view of the values
+     */
+    public DoubleBuffer getValues() {
+      return values;
+    }
+
+    /**
+     * Tells whether the slot still holds this frame's field, so that
+     * values read from it so far are consistent.
+     *
+     * @return true if the writer hasn't started to reuse the slot
+     */
+    public boolean isValid() {
+      MemoryFences.acquireFence();
+      return slot.getLong(0) == sequence;
+    }
+
+    /**
+     * Copies the values into an array.
+     *
+     * @param dest an array with nRows * nCols elements
+     * @return true if the copy is consistent, false if the slot was reused
+     *     while it was copied
+     */
+    public boolean copyTo(double[] dest) {
+      DoubleBuffer view = values.duplicate();
+      view.get(dest, 0, view.remaining());
+      return isValid();
+    }
+  }
+
+  /**
+   * Opens a coupling file.
+   *
+   * @param fileName the path to the file
+   * @throws IOException if the file can't be read or isn't a coupling file
+   */
+  public CouplingReader(String fileName) throws IOException {
+    channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+    try {
+      if (channel.size() < CouplingChannel.HEADER_SIZE) {
+        throw new IOException("Not a coupling file: " + fileName);
+      }
+      header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+          CouplingChannel.HEADER_SIZE);
+      header.order(ByteOrder.LITTLE_ENDIAN);
+      if (header.getInt(0) != CouplingChannel.MAGIC) {
+        throw new IOException("Not a coupling file: " + fileName);
+      }
+      MemoryFences.acquireFence();
+      if (header.getInt(4) != CouplingChannel.VERSION) {
+        throw new IOException("Unsupported coupling file version "
+            + header.getInt(4) + ": " + fileName);
+      }
+      nRows = header.getInt(8);
+      nCols = header.getInt(12);
+      int slotCount = header.getInt(16);
+      long slotSize = CouplingChannel.getSlotSize(nRows, nCols);
+      slots = new MappedByteBuffer[slotCount];
+      slotValues = new DoubleBuffer[slotCount];
+      for (int i = 0; i < slotCount; i++) {
+        slots[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+            CouplingChannel.HEADER_SIZE + i * slotSize, slotSize);
+        slots[i].order(ByteOrder.LITTLE_ENDIAN);
+        slots[i].position(16);
+        slotValues[i] = slots[i].slice().order(ByteOrder.LITTLE_ENDIAN)
+            .asDoubleBuffer();
+        slotValues[i].limit(nRows * nCols);
+        slots[i].position(0);
+      }
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Gets the number of rows in the grid.
+   *
+   * @return the number of rows
+   */
+  public int getRowCount() {
+    return nRows;
+  }
+
+  /**
+   * Gets the number of columns in the grid.
+   *
+   * @return the number of columns
+   */
+  public int getColumnCount() {
+    return nCols;
+  }
+
+  /**
+   * Gets the number of slots in the ring.
+   *
+   * @return the number of slots
+   */
+  public int getSlotCount() {
+    return slots.length;
+  }
+
+  /**
+   * Gets the sequence number of the latest publish.
+   *
+   * @return the sequence number, or 0 if nothing has been published
+   */
+  public long getSequence() {
+    long sequence = header.getLong(CouplingChannel.LATEST_OFFSET);
+    MemoryFences.acquireFence();
+    return sequence;
+  }
+
+  /**
+   * Gets a published field, if its slot hasn't been reused.
+   *
+   * @param sequence the sequence number of the publish
+   * @return the frame, or null if the field isn't published yet or its
+   *     slot has been reused
+   */
+  public Frame get(long sequence) {
+    if (sequence < 1) {
+      return null;
+    }
+    int index = (int) ((sequence - 1) % slots.length);
+    MappedByteBuffer slot = slots[index];
+    if (slot.getLong(0) != sequence) {
+      return null;
+    }
+    MemoryFences.acquireFence();
+    double time = slot.getDouble(8);
+    return new Frame(sequence, time, slot,
+        slotValues[index].asReadOnlyBuffer());
+  }
+
+  /**
+   * Gets the latest published field.
+   *
+   * @return the frame, or null if nothing has been published
+   */
+  public Frame latest() {
+    while (true) {
+      long sequence = getSequence();
+      if (sequence == 0) {
+        return null;
+      }
+      Frame frame = get(sequence);
+      if (frame != null) {
+        return frame;
+      }
+    }
+  }
+
+  /**
+   * Copies the latest published field into an array, trying again if its
+   * slot is reused during the copy.
+   *
+   * @param dest an array with nRows * nCols elements
+   * @return the sequence number of the field copied, or 0 if nothing has
+   *     been published
+   */
+  public long read(double[] dest) {
+    while (true) {
+      Frame frame = latest();
+      if (frame == null) {
+        return 0;
+      }
+      if (frame.copyTo(dest)) {
+        return frame.getSequence();
+      }
+    }
+  }
+
+  /**
+   * Waits until a field is published.
+   *
+   * @param sequence the sequence number to wait for
+   * @param timeout the longest time to wait
+   * @param unit the unit of timeout
+   * @return the latest sequence number, which is less than the one waited
+   *     for if the wait timed out
+   * @throws InterruptedException if the thread is interrupted
+   */
+  public long await(long sequence, long timeout, TimeUnit unit)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    long latest = getSequence();
+    int spins = 0;
+    while (latest < sequence && System.nanoTime() - deadline < 0) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      if (++spins < 100) {
+        Thread.yield();
+      } else {
+        LockSupport.parkNanos(50000L);
+      }
+      latest = getSequence();
+    }
+    return latest;
+  }
+
+  /**
+   * Closes the file.
+   *
+   * @throws IOException if the file can't be closed
+   */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,197 @@
+package edu.colorado.csdms.bmiheat;
+
+import edu.colorado.csdms.heat.Heat;
+
+/**
+ * Computes output variables derived from the temperature field, only when
+ * they're asked for, and keeps each one until the field changes.
+ * <p>
+ * Each field is identified by a version number, the model's
+ * {@link Heat#getModificationCount() modification count}, which changes
+ * whenever the field changes, through a time step or a setValue call or
+ * directly on the model. A variable asked for again with the same version
+ * is copied from the last result. The two gradient components are
+ * computed together, and the flux magnitude reuses them.
+ * <p>
+ * Gradients are central differences between neighbors, and one-sided
+ * differences on the edges of the grid. The area integral uses the
+ * trapezoidal rule over the plate.
+ */
+final class DerivedFields {
+
+  /** The derivative of temperature along the rows, in x. */
+  static final int X_GRADIENT = 0;
+
+  /** The derivative of temperature along the columns, in y. */
+  static final int Y_GRADIENT = 1;
+
+  /** The magnitude of the diffusive flux, alpha times the gradient. */
+  static final int FLUX_MAGNITUDE = 2;
+
+  /** The temperature integrated over the area of the plate. */
+  static final int AREA_INTEGRAL = 3;
+
+  private final Heat model;
+  private final long[] versions = {-1, -1, -1, -1};
+  private double[] xGradient;
+  private double[] yGradient;
+  private double[] fluxMagnitude;
+  private final double[] areaIntegral = new double[1];
+  private long computeCount;
+
+  /**
+   * Makes the derived variables of a model.
+   *
+   * @param model the model, which gives the grid and alpha
+   */
+  DerivedFields(Heat model) {
+    this.model = model;
+  }
+
+  /**
+   * Copies a derived variable, computing it first if it isn't known for
+   * this version of the field.
+   *
+   * @param variable the variable, such as {@link #X_GRADIENT}
+   * @param version the version of the field
+   * @param field the temperature field
+   * @param dest the array to hold the values
+   * @return the number of values copied
+   */
+  synchronized int get(int variable, long version, double[] field,
+      double[] dest) {
+    double[] values = values(variable, version, field);
+    System.arraycopy(values, 0, dest, 0, values.length);
+    return values.length;
+  }
+
+  /**
+   * Copies a derived variable at the given flat indices, computing it
+   * first if it isn't known for this version of the field.
+   *
+   * @param variable the variable, such as {@link #X_GRADIENT}
+   * @param version the version of the field
+   * @param field the temperature field
+   * @param dest the array to hold the values
+   * @param indices the indices of the values
+   */
+  synchronized void getAtIndices(int variable, long version, double[] field,
+      double[] dest, int[] indices) {
+    IndexRuns.gather(values(variable, version, field), dest, indices);
+  }
+
+  /**
+   * Gets the number of times a derived variable has been computed rather
+   * than copied from the last result.
+   *
+   * @return the number of computations
+   */
+  synchronized long getComputeCount() {
+    return computeCount;
+  }
+
+  private double[] values(int variable, long version, double[] field) {
+    switch (variable) {
+      case X_GRADIENT:
+        computeGradient(version, field);
+        return xGradient;
+      case Y_GRADIENT:
+        computeGradient(version, field);
+        return yGradient;
+      case FLUX_MAGNITUDE:
+        if (versions[FLUX_MAGNITUDE] != version) {
+          computeGradient(version, field);
+          computeFluxMagnitude();
+          versions[FLUX_MAGNITUDE] = version;
+        }
+        return fluxMagnitude;
+      case AREA_INTEGRAL:
+        if (versions[AREA_INTEGRAL] != version) {
+          areaIntegral[0] = integrate(field);
+          versions[AREA_INTEGRAL] = version;
+          computeCount++;
+        }
+        return areaIntegral;
+      default:
+        throw new IllegalArgumentException("Unknown variable: " + variable);
+    }
+  }
+
+  private void computeGradient(long version, double[] field) {
+    if (versions[X_GRADIENT] == version) {
+      return;
+    }
+    int nRows = model.getRowCount();
+    int nCols = model.getColumnCount();
+    if (xGradient == null || xGradient.length != field.length) {
+      xGradient = new double[field.length];
+      yGradient = new double[field.length];
+    }
+    difference(field, xGradient, nRows, nCols, nCols, 1, model.getDx());
+    difference(field, yGradient, nCols, 1, nRows, nCols, model.getDy());
+    versions[X_GRADIENT] = version;
+    versions[Y_GRADIENT] = version;
+    computeCount++;
+  }
+
+  /**
+   * Differentiates the field along lines of points a stride apart.
+   *
+   * @param field the temperature field
+   * @param derivative the array to hold the derivative
+   * @param nLines the number of lines
+   * @param lineStride the distance in the array between the first points
+   *     of neighboring lines
+   * @param lineLength the number of points on a line
+   * @param stride the distance in the array between points on a line
+   * @param spacing the distance on the grid between points on a line
+   */
+  private static void difference(double[] field, double[] derivative,
+      int nLines, int lineStride, int lineLength, int stride,
+      double spacing) {
+    for (int line = 0; line < nLines; line++) {
+      int first = line * lineStride;
+      int last = first + (lineLength - 1) * stride;
+      if (lineLength < 2) {
+        derivative[first] = 0.0;
+        continue;
+      }
+      derivative[first] = (field[first + stride] - field[first]) / spacing;
+      for (int k = first + stride; k < last; k += stride) {
+        derivative[k] = (field[k + stride] - field[k - stride])
+            / (2.0 * spacing);
+      }
+      derivative[last] = (field[last] - field[last - stride]) / spacing;
+    }
+  }
+
+  private void computeFluxMagnitude() {
+    if (fluxMagnitude == null || fluxMagnitude.length != xGradient.length) {
+      fluxMagnitude = new double[xGradient.length];
+    }
+    double alpha = model.getAlphaValue();
+    for (int k = 0; k < fluxMagnitude.length; k++) {
+      double dTdx = xGradient[k];
+      double dTdy = yGradient[k];
+      fluxMagnitude[k] = alpha * Math.sqrt(dTdx * dTdx + dTdy * dTdy);
+    }
+    computeCount++;
+  }
+
+  private double integrate(double[] field) {
+    int nRows = model.getRowCount();
+    int nCols = model.getColumnCount();
+    double sum = 0.0;
+    for (int i = 0; i < nRows; i++) {
+      double rowWeight = i == 0 || i == nRows - 1 ? 0.5 : 1.0;
+      int row = i * nCols;
+      double rowSum = 0.0;
+      for (int j = 0; j < nCols; j++) {
+        double weight = j == 0 || j == nCols - 1 ? 0.5 : 1.0;
+        rowSum += weight * field[row + j];
+      }
+      sum += rowWeight * rowSum;
+    }
+    return sum * model.getDx() * model.getDy();
+  }
+}
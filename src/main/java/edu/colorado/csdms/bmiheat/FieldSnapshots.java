@@ -0,0 +1,139 @@
+package edu.colorado.csdms.bmiheat;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes copies of a field so that other threads can read a complete
+ * one while the field is being changed.
+ * <p>
+ * One thread, the writer, publishes a copy of the field after each change.
+ * Any number of readers take the latest copy, read it, and release it.
+ * Copies are kept in a pool of buffers. A reader pins a buffer while it
+ * reads, and the writer only reuses buffers that are neither pinned nor
+ * the latest, so a reader never sees a buffer being written. If every
+ * other buffer is pinned, the writer adds one to the pool instead of
+ * waiting. Readers never wait for the writer, and the writer never waits
+ * for readers.
+ */
+final class FieldSnapshots {
+
+  /** The number of buffers made at the start. */
+  private static final int INITIAL_BUFFERS = 3;
+
+  /** Only the writer uses the pool. */
+  private final List<Buffer> pool = new ArrayList<Buffer>();
+  private volatile Buffer latest;
+
+  /**
+   * Makes the pool and publishes the first copy of the field.
+   *
+   * @param time the model time of the field
+   * @param version the version of the field, which changes with the field
+   * @param field the field
+   */
+  FieldSnapshots(double time, long version, double[] field) {
+    for (int i = 0; i < INITIAL_BUFFERS; i++) {
+      pool.add(new Buffer(field.length));
+    }
+    publish(time, version, field);
+  }
+
+  /**
+   * Publishes a copy of the field. Called only by the writer.
+   *
+   * @param time the model time of the field
+   * @param version the version of the field, which changes with the field
+   * @param field the field
+   */
+  void publish(double time, long version, double[] field) {
+    Buffer buffer = claim(field.length);
+    System.arraycopy(field, 0, buffer.values, 0, field.length);
+    buffer.time = time;
+    buffer.version = version;
+    buffer.pins.set(0);
+    latest = buffer;
+  }
+
+  /**
+   * Pins the latest copy of the field. The caller must pass it to
+   * {@link #release} after reading it, and must not change it.
+   *
+   * @return the latest copy
+   */
+  Buffer acquire() {
+    while (true) {
+      Buffer buffer = latest;
+      int pins = buffer.pins.get();
+      // A negative count means the writer has since claimed the buffer.
+      if (pins >= 0 && buffer.pins.compareAndSet(pins, pins + 1)) {
+        return buffer;
+      }
+    }
+  }
+
+  /**
+   * Unpins a copy of the field.
+   *
+   * @param buffer a copy from {@link #acquire}
+   */
+  void release(Buffer buffer) {
+    buffer.pins.decrementAndGet();
+  }
+
+  /**
+   * Gets the number of buffers in the pool.
+   *
+   * @return the number of buffers
+   */
+  int getBufferCount() {
+    return pool.size();
+  }
+
+  /**
+   * Takes a buffer that no reader holds for writing, or adds one to the
+   * pool. Buffers of the wrong size, left from before the grid changed,
+   * are dropped once no reader holds them.
+   */
+  private Buffer claim(int length) {
+    Buffer current = latest;
+    Buffer claimed = null;
+    for (Iterator<Buffer> it = pool.iterator(); it.hasNext();) {
+      Buffer buffer = it.next();
+      if (buffer == current) {
+        continue;
+      }
+      if (buffer.values.length != length) {
+        if (buffer.pins.compareAndSet(0, -1)) {
+          it.remove();
+        }
+      } else if (claimed == null && buffer.pins.compareAndSet(0, -1)) {
+        claimed = buffer;
+      }
+    }
+    if (claimed == null) {
+      claimed = new Buffer(length);
+      claimed.pins.set(-1);
+      pool.add(claimed);
+    }
+    return claimed;
+  }
+
+  /**
+   * A copy of the field, its model time and version, and the number of
+   * readers holding it.
+   */
+  static final class Buffer {
+
+    final double[] values;
+    double time;
+    long version;
+    final AtomicInteger pins = new AtomicInteger();
+
+    Buffer(int length) {
+      values = new double[length];
+    }
+  }
+}
@@ -0,0 +1,199 @@
+package edu.colorado.csdms.bmiheat;
+
+/**
+ * Copies values at a list of flat indices into or out of an array.
+ * <p>
+ * Runs of consecutive indices are copied with
+ * {@link System#arraycopy(Object, int, Object, int, int)}, and runs with a
+ * constant stride, like a column of a grid stored by rows, are copied
+ * without looking up each index. Exchanging the edges of a grid therefore
+ * costs time in proportion to the number of edge points.
+ */
+final class IndexRuns {
+
+  /** Runs shorter than this are copied one index at a time. */
+  static final int MIN_RUN_LENGTH = 4;
+
+  private IndexRuns() {
+  }
+
+  /**
+   * Copies the values for a list of indices, one run at a time.
+   */
+  abstract static class RunCopy {
+
+    /**
+     * Copies the value for one index.
+     *
+     * @param position the position of the index in the list
+     * @param index the index
+     */
+    abstract void copy(int position, int index);
+
+    /**
+     * Copies the values for a run of evenly spaced indices.
+     *
+     * @param position the position of the first index in the list
+     * @param start the first index
+     * @param stride the distance between indices; 1 if they're consecutive
+     * @param length the number of indices
+     */
+    abstract void copyRun(int position, int start, int stride, int length);
+  }
+
+  /**
+   * Splits a list of indices into runs and passes each to a copy. Runs
+   * shorter than {@link #MIN_RUN_LENGTH} are passed one index at a time.
+   *
+   * @param indices a list of indices
+   * @param copy the copy to make for each run
+   */
+  static void forEachRun(int[] indices, RunCopy copy) {
+    int i = 0;
+    while (i < indices.length) {
+      int start = indices[i];
+      int length = runLength(indices, i);
+      if (length < MIN_RUN_LENGTH) {
+        copy.copy(i, start);
+        i++;
+        continue;
+      }
+      copy.copyRun(i, start, indices[i + 1] - start, length);
+      i += length;
+    }
+  }
+
+  /**
+   * Copies <code>src[indices[i]]</code> to <code>dest[i]</code> for each i.
+   *
+   * @param src the array to read from
+   * @param dest the array to write to; at least as long as indices
+   * @param indices the indices into src
+   */
+  static void gather(final double[] src, final double[] dest,
+      int[] indices) {
+    forEachRun(indices, new RunCopy() {
+      @Override
+      void copy(int position, int index) {
+        dest[position] = src[index];
+      }
+
+      @Override
+      void copyRun(int position, int start, int stride, int length) {
+        if (stride == 1) {
+          System.arraycopy(src, start, dest, position, length);
+          return;
+        }
+        for (int k = 0, index = start; k < length; k++, index += stride) {
+          dest[position + k] = src[index];
+        }
+      }
+    });
+  }
+
+  /**
+   * Copies <code>src[i]</code> to <code>dest[indices[i]]</code> for each i.
+   *
+   * @param src the array to read from; at least as long as indices
+   * @param dest the array to write to
+   * @param indices the indices into dest
+   */
+  static void scatter(final double[] src, final double[] dest,
+      int[] indices) {
+    forEachRun(indices, new RunCopy() {
+      @Override
+      void copy(int position, int index) {
+        dest[index] = src[position];
+      }
+
+      @Override
+      void copyRun(int position, int start, int stride, int length) {
+        if (stride == 1) {
+          System.arraycopy(src, position, dest, start, length);
+          return;
+        }
+        for (int k = 0, index = start; k < length; k++, index += stride) {
+          dest[index] = src[position + k];
+        }
+      }
+    });
+  }
+
+  /**
+   * Copies <code>src[indices[i]]</code> to <code>dest[i]</code> for each i.
+   *
+   * @param src the array to read from
+   * @param dest the array to write to; at least as long as indices
+   * @param indices the indices into src
+   */
+  static void gather(final float[] src, final float[] dest, int[] indices) {
+    forEachRun(indices, new RunCopy() {
+      @Override
+      void copy(int position, int index) {
+        dest[position] = src[index];
+      }
+
+      @Override
+      void copyRun(int position, int start, int stride, int length) {
+        if (stride == 1) {
+          System.arraycopy(src, start, dest, position, length);
+          return;
+        }
+        for (int k = 0, index = start; k < length; k++, index += stride) {
+          dest[position + k] = src[index];
+        }
+      }
+    });
+  }
+
+  /**
+   * Copies <code>src[i]</code> to <code>dest[indices[i]]</code> for each i.
+   *
+   * @param src the array to read from; at least as long as indices
+   * @param dest the array to write to
+   * @param indices the indices into dest
+   */
+  static void scatter(final float[] src, final float[] dest,
+      int[] indices) {
+    forEachRun(indices, new RunCopy() {
+      @Override
+      void copy(int position, int index) {
+        dest[index] = src[position];
+      }
+
+      @Override
+      void copyRun(int position, int start, int stride, int length) {
+        if (stride == 1) {
+          System.arraycopy(src, position, dest, start, length);
+          return;
+        }
+        for (int k = 0, index = start; k < length; k++, index += stride) {
+          dest[index] = src[position + k];
+        }
+      }
+    });
+  }
+
+  /**
+   * Finds the number of indices, starting at position i, that are evenly
+   * spaced with a nonzero stride.
+   *
+   * @param indices a list of indices
+   * @param i the position of the first index in the run
+   * @return the length of the run; 1 if the run can't be extended
+   */
+  static int runLength(int[] indices, int i) {
+    if (i + 1 >= indices.length) {
+      return 1;
+    }
+    int stride = indices[i + 1] - indices[i];
+    if (stride == 0) {
+      return 1;
+    }
+    int end = i + 2;
+    while (end < indices.length && indices[end] - indices[end - 1] == stride) {
+      end++;
+    }
+    return end - i;
+  }
+}
@@ -0,0 +1,149 @@
+package edu.colorado.csdms.bmiheat;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies in nanoseconds, with buckets whose width grows
+ * with the latency so that every value is recorded within a fixed relative
+ * error.
+ * <p>
+ * Each power of two is divided into {@value #SUB_BUCKETS} buckets, so a
+ * percentile is accurate to within about 3%, from one nanosecond to the
+ * largest long. Recording a value updates two atomic counters, takes no
+ * locks, and allocates nothing, so many threads can record at once.
+ */
+public class LatencyHistogram {
+
+  /** The number of buckets in each power of two. */
+  public static final int SUB_BUCKETS = 32;
+
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1)
+      * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong totalCount = new AtomicLong();
+  private final AtomicLong totalNanos = new AtomicLong();
+  private final AtomicLong maxNanos = new AtomicLong();
+
+  /**
+   * Records a latency.
+   *
+   * @param nanos the latency in nanoseconds; negative values count as 0
+   */
+  public void record(long nanos) {
+    long value = Math.max(0L, nanos);
+    counts.incrementAndGet(bucketOf(value));
+    totalCount.incrementAndGet();
+    totalNanos.addAndGet(value);
+    long max = maxNanos.get();
+    while (value > max && !maxNanos.compareAndSet(max, value)) {
+      max = maxNanos.get();
+    }
+  }
+
+  /**
+   * Gets the number of latencies recorded.
+   *
+   * @return the count
+   */
+  public long getCount() {
+    return totalCount.get();
+  }
+
+  /**
+   * Gets the sum of the latencies recorded.
+   *
+   * @return the total in nanoseconds
+   */
+  public long getTotalNanos() {
+    return totalNanos.get();
+  }
+
+  /**
+   * Gets the largest latency recorded.
+   *
+   * @return the largest latency in nanoseconds, or 0 if none
+   */
+  public long getMaxNanos() {
+    return maxNanos.get();
+  }
+
+  /**
+   * Gets the mean latency.
+   *
+   * @return the mean in nanoseconds, or 0 if none were recorded
+   */
+  public double getMeanNanos() {
+    long count = totalCount.get();
+    return count == 0 ? 0.0 : (double) totalNanos.get() / count;
+  }
+
+  /**
+   * Gets a percentile of the latencies recorded.
+   *
+   * @param percentile the percentile, from 0 to 100
+   * @return the latency in nanoseconds at or below which that percentage
+   *     of the values fall, as the upper edge of its bucket, or 0 if none
+   *     were recorded
+   */
+  public long getPercentileNanos(double percentile) {
+    long count = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      count += counts.get(i);
+    }
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return Math.min(upperEdgeOf(i), maxNanos.get());
+      }
+    }
+    return maxNanos.get();
+  }
+
+  /**
+   * Clears the histogram.
+   */
+  public void reset() {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts.set(i, 0);
+    }
+    totalCount.set(0);
+    totalNanos.set(0);
+    maxNanos.set(0);
+  }
+
+  /**
+   * Gets the bucket of a value. Values below {@value #SUB_BUCKETS} have a
+   * bucket each; above that, the bucket is given by the position of the
+   * highest bit and the next {@value #SUB_BUCKET_BITS} bits.
+   */
+  static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int highBit = 63 - Long.numberOfLeadingZeros(value);
+    int shift = highBit - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+    return (shift + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * Gets the largest value that falls in a bucket.
+   */
+  static long upperEdgeOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKETS - 1;
+    long subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+    long upper = ((subBucket + 1) << shift) - 1;
+    return upper < 0 ? Long.MAX_VALUE : upper;
+  }
+}
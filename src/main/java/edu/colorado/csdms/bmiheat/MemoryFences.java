@@ -0,0 +1,67 @@
+package edu.colorado.csdms.bmiheat;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Memory fences that order reads and writes of memory shared with other
+ * processes, such as a mapped file.
+ * <p>
+ * On JDK 9 or later these are the fences of
+ * <code>java.lang.invoke.VarHandle</code>. On earlier JDKs they fall back
+ * to a write or read of a volatile field, which HotSpot implements with
+ * fences at least as strong.
+ */
+final class MemoryFences {
+
+  private static final MethodHandle RELEASE_FENCE = find("releaseFence");
+  private static final MethodHandle ACQUIRE_FENCE = find("acquireFence");
+
+  private static volatile int fallback;
+
+  private MemoryFences() {
+  }
+
+  private static MethodHandle find(String name) {
+    try {
+      return MethodHandles.lookup().findStatic(
+          Class.forName("java.lang.invoke.VarHandle"), name,
+          MethodType.methodType(void.class));
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Keeps reads and writes before the fence from moving after writes that
+   * follow it.
+   */
+  static void releaseFence() {
+    if (RELEASE_FENCE == null) {
+      fallback = 0;
+      return;
+    }
+    try {
+      RELEASE_FENCE.invokeExact();
+    } catch (Throwable e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * Keeps reads before the fence from moving after reads and writes that
+   * follow it.
+   */
+  static void acquireFence() {
+    if (ACQUIRE_FENCE == null) {
+      int unused = fallback;
+      return;
+    }
+    try {
+      ACQUIRE_FENCE.invokeExact();
+    } catch (Throwable e) {
+      throw new AssertionError(e);
+    }
+  }
+}
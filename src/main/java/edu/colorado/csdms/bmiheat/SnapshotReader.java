@@ -0,0 +1,135 @@
+package edu.colorado.csdms.bmiheat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads snapshots from a file written by {@link SnapshotWriter}.
+ * <p>
+ * Snapshots are numbered from zero in the order they were written, and
+ * any one can be read without reading the ones before it. Snapshots
+ * appended while the file is open are seen by
+ * {@link #getSnapshotCount()}.
+ */
+public class SnapshotReader implements Closeable {
+
+  private final String fileName;
+  private final FileChannel channel;
+  private final int nRows;
+  private final int nCols;
+  private final long recordSize;
+
+  /**
+   * Opens a snapshot file.
+   *
+   * @param fileName the path to the snapshot file
+   * @throws IOException if the file can't be read or isn't a snapshot file
+   */
+  public SnapshotReader(String fileName) throws IOException {
+    this.fileName = fileName;
+    channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+    try {
+      ByteBuffer header = read(0, SnapshotWriter.HEADER_SIZE);
+      if (header.getInt() != SnapshotWriter.MAGIC) {
+        throw new IOException(fileName + " is not a snapshot file");
+      }
+      int version = header.getInt();
+      if (version != SnapshotWriter.VERSION) {
+        throw new IOException(fileName
+            + " has unsupported snapshot version " + version);
+      }
+      nRows = header.getInt();
+      nCols = header.getInt();
+      recordSize = 8L * ((long) nRows * nCols + 1);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Gets the number of rows in the grid.
+   *
+   * @return the number of rows
+   */
+  public int getRowCount() {
+    return nRows;
+  }
+
+  /**
+   * Gets the number of columns in the grid.
+   *
+   * @return the number of columns
+   */
+  public int getColumnCount() {
+    return nCols;
+  }
+
+  /**
+   * Gets the number of complete snapshots in the file.
+   *
+   * @return the number of snapshots
+   * @throws IOException if the file size can't be read
+   */
+  public long getSnapshotCount() throws IOException {
+    return (channel.size() - SnapshotWriter.HEADER_SIZE) / recordSize;
+  }
+
+  /**
+   * Gets the model time of a snapshot.
+   *
+   * @param index the number of the snapshot, from zero
+   * @return the model time
+   * @throws IOException if the snapshot can't be read
+   */
+  public double getTime(long index) throws IOException {
+    return read(position(index), 8).getDouble();
+  }
+
+  /**
+   * Reads the field of a snapshot.
+   *
+   * @param index the number of the snapshot, from zero
+   * @param dest an array to hold the field, stored by rows
+   * @return the model time of the snapshot
+   * @throws IOException if the snapshot can't be read
+   */
+  public double read(long index, double[] dest) throws IOException {
+    long position = position(index);
+    ByteBuffer record = channel.map(FileChannel.MapMode.READ_ONLY, position,
+        recordSize).order(ByteOrder.LITTLE_ENDIAN);
+    double time = record.getDouble();
+    record.asDoubleBuffer().get(dest, 0, nRows * nCols);
+    return time;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private long position(long index) throws IOException {
+    if (index < 0 || index >= getSnapshotCount()) {
+      throw new IndexOutOfBoundsException("No snapshot " + index + " in "
+          + fileName);
+    }
+    return SnapshotWriter.HEADER_SIZE + index * recordSize;
+  }
+
+  private ByteBuffer read(long position, int size) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(size)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException(fileName + " is truncated");
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+}
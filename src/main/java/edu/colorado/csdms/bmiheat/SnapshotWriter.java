@@ -0,0 +1,358 @@
+package edu.colorado.csdms.bmiheat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Streams snapshots of a grid variable to an append-only binary file.
+ * <p>
+ * Snapshots are taken every so many time steps, every so much model time,
+ * or both. Taking a snapshot copies the field into one of a fixed set of
+ * buffers and queues it for a background thread, which writes it to disk,
+ * so the model doesn't wait on the file system. When all the buffers are
+ * in use, the {@link Overflow} policy decides whether the model waits or
+ * the snapshot is dropped.
+ * <p>
+ * The file starts with a {@value #HEADER_SIZE}-byte header holding a magic
+ * number, the format version, and the number of rows and columns. Each
+ * snapshot follows as a record of the model time and the field, stored by
+ * rows, all as little-endian doubles. Every record is the same size, so
+ * {@link SnapshotReader} can read any snapshot directly.
+ */
+public class SnapshotWriter implements Closeable {
+
+  /** Identifies a snapshot file: "HSNP" in ASCII. */
+  public static final int MAGIC = 0x48534e50;
+
+  /** The version of the file format. */
+  public static final int VERSION = 1;
+
+  /** The size of the header in bytes; the first record starts here. */
+  public static final int HEADER_SIZE = 16;
+
+  /** The default number of snapshots that can wait to be written. */
+  public static final int DEFAULT_QUEUE_CAPACITY = 4;
+
+  /**
+   * What to do with a snapshot when the queue is full.
+   */
+  public enum Overflow {
+    /** Wait until the writer thread frees a buffer. */
+    BLOCK,
+    /** Skip the snapshot and count it as dropped. */
+    DROP
+  }
+
+  private final int nRows;
+  private final int nCols;
+  private final Overflow overflow;
+  private final FileChannel channel;
+  private final BlockingQueue<double[]> freeBuffers;
+  private final BlockingQueue<Snapshot> queue;
+  private final Thread writerThread;
+
+  private int stepInterval;
+  private double timeInterval;
+  private long stepCount;
+  private double nextTime = Double.NaN;
+  private long snapshotCount;
+  private volatile long droppedCount;
+  private volatile IOException failure;
+  private boolean closed;
+
+  /**
+   * Makes a writer with the default queue capacity that blocks when the
+   * queue is full.
+   *
+   * @param fileName the path to the snapshot file, which is replaced
+   * @param nRows the number of rows in the grid
+   * @param nCols the number of columns in the grid
+   * @throws IOException if the file can't be created
+   */
+  public SnapshotWriter(String fileName, int nRows, int nCols)
+      throws IOException {
+    this(fileName, nRows, nCols, DEFAULT_QUEUE_CAPACITY, Overflow.BLOCK);
+  }
+
+  /**
+   * Makes a writer.
+   *
+   * @param fileName the path to the snapshot file, which is replaced
+   * @param nRows the number of rows in the grid
+   * @param nCols the number of columns in the grid
+   * @param queueCapacity the number of snapshots that can wait to be
+   *     written
+   * @param overflow what to do when the queue is full
+   * @throws IOException if the file can't be created
+   */
+  public SnapshotWriter(String fileName, int nRows, int nCols,
+      int queueCapacity, Overflow overflow) throws IOException {
+    if (queueCapacity < 1) {
+      throw new IllegalArgumentException("queueCapacity must be positive");
+    }
+    this.nRows = nRows;
+    this.nCols = nCols;
+    this.overflow = overflow;
+
+    // One buffer more than the queue holds, for the one being written.
+    freeBuffers = new ArrayBlockingQueue<double[]>(queueCapacity + 1);
+    for (int i = 0; i <= queueCapacity; i++) {
+      freeBuffers.add(new double[nRows * nCols]);
+    }
+    queue = new ArrayBlockingQueue<Snapshot>(queueCapacity + 2);
+
+    channel = FileChannel.open(Paths.get(fileName),
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.WRITE);
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(MAGIC).putInt(VERSION).putInt(nRows).putInt(nCols);
+    header.flip();
+    while (header.hasRemaining()) {
+      channel.write(header);
+    }
+
+    writerThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        writeSnapshots();
+      }
+    }, "SnapshotWriter-" + fileName);
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  /**
+   * Sets how often snapshots are taken, in time steps.
+   *
+   * @param stepInterval the number of steps between snapshots, or 0 to not
+   *     take snapshots by step
+   */
+  public void setStepInterval(int stepInterval) {
+    this.stepInterval = stepInterval;
+  }
+
+  /**
+   * Sets how often snapshots are taken, in model time. A snapshot is taken
+   * after the first step that reaches each multiple of the interval.
+   *
+   * @param timeInterval the model time between snapshots, or 0 to not take
+   *     snapshots by time
+   */
+  public void setTimeInterval(double timeInterval) {
+    this.timeInterval = timeInterval;
+    nextTime = Double.NaN;
+  }
+
+  /**
+   * Sets the model time from which snapshots by time are counted. The
+   * first one is taken at the first multiple of the time interval after
+   * this time. If it isn't set, the time passed to the first call to
+   * {@link #getStepsUntilNext} or {@link #onStep} is used.
+   *
+   * @param time the current model time
+   */
+  public void setStartTime(double time) {
+    nextTime = Double.NaN;
+    if (timeInterval > 0) {
+      startTimeInterval(time);
+    }
+  }
+
+  /**
+   * Gets the number of snapshots queued for writing so far.
+   *
+   * @return the number of snapshots taken
+   */
+  public long getSnapshotCount() {
+    return snapshotCount;
+  }
+
+  /**
+   * Gets the number of snapshots skipped because the queue was full.
+   *
+   * @return the number of snapshots dropped
+   */
+  public long getDroppedCount() {
+    return droppedCount;
+  }
+
+  /**
+   * Gets the number of time steps the model can take before a snapshot
+   * might be due. Models that take several steps at once use this to stop
+   * at each snapshot.
+   *
+   * @param time the current model time
+   * @param timeStep the model time step
+   * @return the number of steps to take before calling {@link #onStep}
+   */
+  public long getStepsUntilNext(double time, double timeStep) {
+    long nSteps = Long.MAX_VALUE;
+    if (stepInterval > 0) {
+      nSteps = stepInterval - stepCount % stepInterval;
+    }
+    if (timeInterval > 0) {
+      startTimeInterval(time);
+      long nTimeSteps = (long) Math.floor((nextTime - time) / timeStep);
+      nSteps = Math.min(nSteps, Math.max(1, nTimeSteps));
+    }
+    return nSteps;
+  }
+
+  /**
+   * Tells the writer that the model has taken one or more time steps, and
+   * takes a snapshot if one is due.
+   *
+   * @param nSteps the number of steps just taken
+   * @param time the model time after the steps
+   * @param field the field, stored by rows; copied if a snapshot is due
+   * @throws IllegalStateException if the writer thread failed or the
+   *     writer is closed
+   */
+  public void onStep(long nSteps, double time, double[] field) {
+    long previousCount = stepCount;
+    stepCount += nSteps;
+    boolean due = stepInterval > 0
+        && stepCount / stepInterval > previousCount / stepInterval;
+    if (timeInterval > 0) {
+      startTimeInterval(time);
+      if (time >= nextTime) {
+        due = true;
+        nextTime = (Math.floor(time / timeInterval) + 1) * timeInterval;
+      }
+    }
+    if (due) {
+      write(time, field);
+    }
+  }
+
+  /**
+   * Takes a snapshot now.
+   *
+   * @param time the model time
+   * @param field the field, stored by rows; copied before returning
+   * @throws IllegalStateException if the writer thread failed or the
+   *     writer is closed
+   */
+  public void write(double time, double[] field) {
+    checkState();
+    double[] buffer;
+    if (overflow == Overflow.BLOCK) {
+      try {
+        buffer = freeBuffers.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        droppedCount++;
+        return;
+      }
+    } else {
+      buffer = freeBuffers.poll();
+      if (buffer == null) {
+        droppedCount++;
+        return;
+      }
+    }
+    System.arraycopy(field, 0, buffer, 0, nRows * nCols);
+    queue.add(new Snapshot(time, buffer));
+    snapshotCount++;
+  }
+
+  /**
+   * Writes any queued snapshots, then stops the writer thread and closes
+   * the file.
+   *
+   * @throws IOException if a snapshot couldn't be written
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    queue.add(Snapshot.END);
+    try {
+      writerThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    channel.close();
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Sets the time of the first snapshot by time, if it isn't set yet, to
+   * the first multiple of the interval after the given time.
+   */
+  private void startTimeInterval(double time) {
+    if (Double.isNaN(nextTime)) {
+      nextTime = (Math.floor(time / timeInterval) + 1) * timeInterval;
+    }
+  }
+
+  private void checkState() {
+    if (closed) {
+      throw new IllegalStateException("The snapshot writer is closed");
+    }
+    if (failure != null) {
+      throw new IllegalStateException("Can't write snapshots", failure);
+    }
+  }
+
+  /**
+   * Runs on the writer thread, writing snapshots as they're queued.
+   */
+  private void writeSnapshots() {
+    ByteBuffer record = ByteBuffer.allocateDirect(8 * (nRows * nCols + 1))
+        .order(ByteOrder.LITTLE_ENDIAN);
+    while (true) {
+      Snapshot snapshot;
+      try {
+        snapshot = queue.take();
+      } catch (InterruptedException e) {
+        return;
+      }
+      if (snapshot == Snapshot.END) {
+        return;
+      }
+      if (failure == null) {
+        try {
+          record.clear();
+          record.putDouble(snapshot.time);
+          record.asDoubleBuffer().put(snapshot.field);
+          record.clear();
+          while (record.hasRemaining()) {
+            channel.write(record);
+          }
+        } catch (IOException e) {
+          failure = e;
+        }
+      }
+      freeBuffers.add(snapshot.field);
+    }
+  }
+
+  /**
+   * A field and its model time, waiting to be written.
+   */
+  private static class Snapshot {
+
+    static final Snapshot END = new Snapshot(Double.NaN, null);
+
+    final double time;
+    final double[] field;
+
+    Snapshot(double time, double[] field) {
+      this.time = time;
+      this.field = field;
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package edu.colorado.csdms.example;
+
+import java.util.Arrays;
+
+import edu.colorado.csdms.heat.DistributedSolve2D;
+import edu.colorado.csdms.heat.Heat;
+
+/**
+ * Measures how the speed of a Heat model grows with the number of worker
+ * processes that share its grid.
+ * <p>
+ * A model with an impulse at its center is advanced by a block of time
+ * steps in this process, then with 2, 3 and up to the given number of
+ * worker processes, and the steps per second of each run are printed. The
+ * arguments are the number of rows and columns (default 2048 each), the
+ * number of steps (default 200) and the largest number of processes
+ * (default the number of processors, at least 2).
+ */
+public class DistributedScaling {
+
+  public static void main(String[] args) throws Exception {
+    int nRows = args.length > 0 ? Integer.parseInt(args[0]) : 2048;
+    int nCols = args.length > 1 ? Integer.parseInt(args[1]) : 2048;
+    long nSteps = args.length > 2 ? Long.parseLong(args[2]) : 200;
+    int maxProcesses = args.length > 3 ? Integer.parseInt(args[3])
+        : Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    System.out.printf("%d x %d grid, %d steps, %d processors%n", nRows,
+        nCols, nSteps, Runtime.getRuntime().availableProcessors());
+    double[] reference = null;
+    double serialRate = 0.0;
+    for (int nProcesses = 1; nProcesses <= maxProcesses; nProcesses++) {
+      Heat heat = new Heat(nRows, nCols, 1.0, 1.0, 0.0, 0.0, 1.0);
+      heat.getTemperatureField()[nRows / 2 * nCols + nCols / 2] = 100.0;
+      if (nProcesses > 1) {
+        heat.setDistributedSolver(new DistributedSolve2D(nProcesses));
+      }
+      try {
+        // Warm up, then time the steps, including sending and reading
+        // back the grid.
+        heat.advanceInTime(nSteps / 10 + 1);
+        heat.temperatureChanged();
+        long start = System.nanoTime();
+        heat.advanceInTime(nSteps);
+        double rate = nSteps / ((System.nanoTime() - start) * 1e-9);
+
+        double[] field = heat.getTemperatureField();
+        if (reference == null) {
+          reference = field.clone();
+          serialRate = rate;
+        }
+        System.out.printf("%d process%s: %.1f steps/second,"
+            + " speedup %.2f, %s%n", nProcesses,
+            nProcesses == 1 ? "" : "es", rate, rate / serialRate,
+            Arrays.equals(reference, field) ? "identical"
+                : "DIFFERENT");
+      } finally {
+        heat.setDistributedSolver(null);
+      }
+    }
+  }
+}
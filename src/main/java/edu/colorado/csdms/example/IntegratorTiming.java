@@ -0,0 +1,69 @@
+package edu.colorado.csdms.example;
+
+import edu.colorado.csdms.heat.Heat;
+
+/**
+ * Measures the wall-clock time each integrator takes to advance a Heat
+ * model to the same time.
+ * <p>
+ * A model with an impulse at its center is advanced to the target time
+ * with the explicit integrator, at its default time step, and with the
+ * backward Euler and Crank-Nicolson integrators, at a longer one. Each
+ * run is made once to warm up and once to time. The seconds, the number
+ * of steps, the center temperature and the largest difference from the
+ * explicit field are printed. The arguments are the number of rows and
+ * columns (default 401 each), the target time (default 500) and the
+ * implicit time step (default 5).
+ */
+public class IntegratorTiming {
+
+  public static void main(String[] args) {
+    int nRows = args.length > 0 ? Integer.parseInt(args[0]) : 401;
+    int nCols = args.length > 1 ? Integer.parseInt(args[1]) : 401;
+    double targetTime = args.length > 2 ? Double.parseDouble(args[2]) : 500.0;
+    double implicitStep = args.length > 3 ? Double.parseDouble(args[3])
+        : 5.0;
+
+    System.out.printf("%d x %d grid, to time %.1f%n", nRows, nCols,
+        targetTime);
+    double[] reference = null;
+    for (Heat.Integrator integrator : Heat.Integrator.values()) {
+      run(nRows, nCols, integrator, implicitStep, targetTime);
+      long start = System.nanoTime();
+      Heat heat = run(nRows, nCols, integrator, implicitStep, targetTime);
+      double seconds = (System.nanoTime() - start) * 1e-9;
+
+      double[] field = heat.getTemperatureField();
+      if (reference == null) {
+        reference = field.clone();
+      }
+      double maxDifference = 0.0;
+      for (int k = 0; k < field.length; k++) {
+        maxDifference = Math.max(maxDifference,
+            Math.abs(field[k] - reference[k]));
+      }
+      System.out.printf("%-14s dt %-8.4g %7d steps %8.3f s,"
+          + " center %.6g, max difference %.3g%n", integrator,
+          heat.getTimeStepValue(),
+          Math.round(heat.getTimeValue() / heat.getTimeStepValue()), seconds,
+          field[nRows / 2 * nCols + nCols / 2], maxDifference);
+    }
+  }
+
+  /**
+   * Advances a model with an impulse at its center to the target time, in
+   * whole steps no longer than the integrator's time step.
+   */
+  private static Heat run(int nRows, int nCols, Heat.Integrator integrator,
+      double implicitStep, double targetTime) {
+    Heat heat = new Heat(nRows, nCols, 1.0, 1.0, 0.0, 0.0, 1.0);
+    heat.getTemperatureField()[nRows / 2 * nCols + nCols / 2] = 100.0;
+    heat.setIntegrator(integrator);
+    double timeStep = integrator == Heat.Integrator.EXPLICIT
+        ? heat.getTimeStepValue() : implicitStep;
+    long nSteps = (long) Math.ceil(targetTime / timeStep - 1e-9);
+    heat.setTimeStep(targetTime / nSteps);
+    heat.advanceInTime(nSteps);
+    return heat;
+  }
+}
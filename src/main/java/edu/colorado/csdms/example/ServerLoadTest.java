@@ -0,0 +1,85 @@
+package edu.colorado.csdms.example;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.colorado.csdms.bmiheat.BmiHeatClient;
+import edu.colorado.csdms.bmiheat.BmiHeatServer;
+
+/**
+ * Measures how many BmiHeat sessions per second a {@link BmiHeatServer}
+ * serves, and the latency of each session.
+ * <p>
+ * Each client repeatedly connects, sends one batch that initializes a
+ * model, sets an impulse, runs it to time 10 and reads the temperatures,
+ * then disconnects. The arguments are the number of concurrent clients
+ * (default 32) and the number of sessions each one runs (default 100).
+ */
+public class ServerLoadTest {
+
+  private static final List<String> BATCH = Arrays.asList(
+      "initialize",
+      "set_value_at_indices plate_surface__temperature 1 20 100.0",
+      "update_until 10.0",
+      "get_value plate_surface__temperature",
+      "finalize");
+
+  public static void main(String[] args) throws Exception {
+    int nClients = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+    final int nSessions = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+    final long[] latencies = new long[nClients * nSessions];
+    final AtomicLong failures = new AtomicLong();
+
+    try (final BmiHeatServer server = new BmiHeatServer(0)) {
+      ExecutorService clients = Executors.newFixedThreadPool(nClients);
+      long start = System.nanoTime();
+      for (int c = 0; c < nClients; c++) {
+        final int first = c * nSessions;
+        clients.execute(new Runnable() {
+          @Override
+          public void run() {
+            for (int s = 0; s < nSessions; s++) {
+              long sessionStart = System.nanoTime();
+              try (BmiHeatClient client =
+                  new BmiHeatClient(server.getPort())) {
+                for (String reply : client.send(BATCH)) {
+                  if (!BmiHeatClient.isOk(reply)) {
+                    failures.incrementAndGet();
+                  }
+                }
+              } catch (IOException e) {
+                failures.incrementAndGet();
+              }
+              latencies[first + s] = System.nanoTime() - sessionStart;
+            }
+          }
+        });
+      }
+      clients.shutdown();
+      clients.awaitTermination(1, TimeUnit.HOURS);
+      double seconds = (System.nanoTime() - start) * 1e-9;
+
+      Arrays.sort(latencies);
+      System.out.printf("%d clients, %d sessions, %s threads%n", nClients,
+          latencies.length,
+          server.isUsingVirtualThreads() ? "virtual" : "platform");
+      System.out.printf("sessions/second: %.1f%n", latencies.length / seconds);
+      System.out.printf("latency p50: %.3f ms%n", percentile(latencies, 50));
+      System.out.printf("latency p99: %.3f ms%n", percentile(latencies, 99));
+      System.out.printf("failures: %d%n", failures.get());
+    }
+  }
+
+  /**
+   * Gets a percentile of sorted latencies, in milliseconds.
+   */
+  private static double percentile(long[] sorted, double percent) {
+    int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+    return sorted[Math.max(0, index)] * 1e-6;
+  }
+}
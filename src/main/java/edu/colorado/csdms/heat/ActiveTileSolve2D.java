@@ -0,0 +1,256 @@
+package edu.colorado.csdms.heat;
+
+import java.util.Arrays;
+
+/**
+ * A solver for the 2D heat equation that updates only the parts of the
+ * grid where there is heat.
+ * <p>
+ * The grid is divided into square tiles. A tile is active if any of its
+ * temperatures is above the threshold in magnitude. Each step updates the
+ * active tiles and the tiles next to them, since the stencil spreads heat
+ * one point per step, and leaves every other tile at zero. The cost of a
+ * step therefore grows with the area that holds heat, not with the size of
+ * the grid.
+ * <p>
+ * With the default threshold of zero, a skipped tile and all its
+ * neighbors hold only zeros, so the stencil would leave it at zero anyway,
+ * and the results are identical to {@link Solve2D}. With a positive
+ * threshold, tiles in which every value is at or below the threshold are
+ * set to zero after each step, trading a loss of at most the threshold per
+ * point for fewer active tiles.
+ * <p>
+ * The solver remembers which tiles are active between calls, as long as
+ * each call's input is the previous call's output. If the field is changed
+ * in any other way, call {@link #invalidate()} so the next step scans the
+ * whole grid.
+ */
+public class ActiveTileSolve2D {
+
+  /** Default number of rows and columns in a tile. */
+  public static final int DEFAULT_TILE_SIZE = 32;
+
+  private final int tileSize;
+  private final double threshold;
+
+  private int nRows = -1;
+  private int nCols = -1;
+  private int nTileRows;
+  private int nTileCols;
+  private double[] lastInput;
+  private double[] lastOutput;
+  private boolean valid;
+
+  /** Tiles of the last output that are active. */
+  private boolean[] outputActive = new boolean[0];
+  /** Tiles of the last output that may hold nonzero values. */
+  private boolean[] outputDirty = new boolean[0];
+  /** Tiles of the last input that may hold nonzero values. */
+  private boolean[] inputDirty = new boolean[0];
+  private boolean[] needed = new boolean[0];
+  private int updatedTileCount;
+
+  /**
+   * Makes a solver with the default tile size and a threshold of zero,
+   * which gives results identical to {@link Solve2D}.
+   */
+  public ActiveTileSolve2D() {
+    this(DEFAULT_TILE_SIZE, 0.0);
+  }
+
+  /**
+   * Makes a solver.
+   *
+   * @param tileSize the number of rows and columns in a tile
+   * @param threshold the magnitude at or below which a temperature counts
+   *     as zero
+   */
+  public ActiveTileSolve2D(int tileSize, double threshold) {
+    if (tileSize < 1 || !(threshold >= 0.0)) {
+      throw new IllegalArgumentException(
+          "tileSize must be positive and threshold must not be negative");
+    }
+    this.tileSize = tileSize;
+    this.threshold = threshold;
+  }
+
+  /**
+   * Gets the threshold.
+   *
+   * @return the magnitude at or below which a temperature counts as zero
+   */
+  public double getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Gets the number of tiles in the grid of the last step.
+   *
+   * @return the number of tiles
+   */
+  public int getTileCount() {
+    return nTileRows * nTileCols;
+  }
+
+  /**
+   * Gets the number of tiles updated in the last step.
+   *
+   * @return the number of tiles updated
+   */
+  public int getUpdatedTileCount() {
+    return updatedTileCount;
+  }
+
+  /**
+   * Forgets which tiles are active, so that the next step scans the whole
+   * grid. Call it after changing the field between steps.
+   */
+  public void invalidate() {
+    valid = false;
+  }
+
+  /**
+   * Solve the 2D heat equation on a uniform grid, writing the result into
+   * a preallocated array.
+   *
+   * @param temperature an array of temperatures stored by rows
+   * @param newTemperature the array to hold the temperatures after
+   *     timeStep; must not be the same array as temperature
+   * @param nRows the number of rows in the grid
+   * @param nCols the number of columns in the grid
+   * @param dx distance between columns in grid
+   * @param dy distance between rows in grid
+   * @param alpha parameter in heat equation
+   * @param timeStep current time step
+   */
+  public void solve(double[] temperature, double[] newTemperature,
+      int nRows, int nCols, double dx, double dy, double alpha,
+      double timeStep) {
+    boolean[] active;
+    boolean[] dirty;
+    if (valid && nRows == this.nRows && nCols == this.nCols
+        && temperature == lastOutput && newTemperature == lastInput) {
+      active = outputActive;
+      dirty = inputDirty;
+      inputDirty = outputDirty;
+    } else {
+      resize(nRows, nCols);
+      active = outputActive;
+      scanAll(temperature, active);
+      dirty = inputDirty;
+      Arrays.fill(dirty, true);
+      // With a threshold of zero, quiet tiles of the input hold only zeros.
+      for (int t = 0; t < active.length; t++) {
+        outputDirty[t] = active[t] || threshold > 0.0;
+      }
+      inputDirty = outputDirty;
+    }
+
+    // Update the active tiles and their neighbors.
+    updatedTileCount = 0;
+    for (int ti = 0; ti < nTileRows; ti++) {
+      for (int tj = 0; tj < nTileCols; tj++) {
+        needed[ti * nTileCols + tj] = isNearActive(active, ti, tj);
+      }
+    }
+    for (int t = 0; t < needed.length; t++) {
+      int ti = t / nTileCols;
+      int tj = t % nTileCols;
+      if (needed[t]) {
+        Solve2D.solveBlock(temperature, newTemperature, nCols,
+            Math.max(1, ti * tileSize),
+            Math.min(nRows - 1, (ti + 1) * tileSize),
+            Math.max(1, tj * tileSize),
+            Math.min(nCols - 1, (tj + 1) * tileSize), dx, dy, alpha,
+            timeStep);
+        dirty[t] = true;
+        updatedTileCount++;
+      } else if (dirty[t]) {
+        fillTile(newTemperature, ti, tj);
+        dirty[t] = false;
+      }
+    }
+    Solve2D.setBoundaries(newTemperature, nRows, nCols);
+
+    // Find the active tiles of the output.
+    for (int t = 0; t < needed.length; t++) {
+      boolean isActive = needed[t]
+          && scanTile(newTemperature, t / nTileCols, t % nTileCols);
+      if (needed[t] && !isActive && threshold > 0.0) {
+        fillTile(newTemperature, t / nTileCols, t % nTileCols);
+        dirty[t] = false;
+      }
+      active[t] = isActive;
+    }
+
+    outputActive = active;
+    outputDirty = dirty;
+    lastInput = temperature;
+    lastOutput = newTemperature;
+    valid = true;
+  }
+
+  /**
+   * Makes the tile arrays for a grid size.
+   */
+  private void resize(int nRows, int nCols) {
+    this.nRows = nRows;
+    this.nCols = nCols;
+    nTileRows = (nRows + tileSize - 1) / tileSize;
+    nTileCols = (nCols + tileSize - 1) / tileSize;
+    int nTiles = nTileRows * nTileCols;
+    if (needed.length != nTiles) {
+      outputActive = new boolean[nTiles];
+      outputDirty = new boolean[nTiles];
+      inputDirty = new boolean[nTiles];
+      needed = new boolean[nTiles];
+    }
+  }
+
+  private boolean isNearActive(boolean[] active, int ti, int tj) {
+    for (int i = Math.max(0, ti - 1); i <= Math.min(nTileRows - 1, ti + 1);
+        i++) {
+      for (int j = Math.max(0, tj - 1); j <= Math.min(nTileCols - 1, tj + 1);
+          j++) {
+        if (active[i * nTileCols + j]) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private void scanAll(double[] field, boolean[] active) {
+    for (int t = 0; t < active.length; t++) {
+      active[t] = scanTile(field, t / nTileCols, t % nTileCols);
+    }
+  }
+
+  /**
+   * Tells whether any value in a tile is above the threshold in magnitude,
+   * or is NaN.
+   */
+  private boolean scanTile(double[] field, int ti, int tj) {
+    int endRow = Math.min(nRows, (ti + 1) * tileSize);
+    int firstCol = tj * tileSize;
+    int endCol = Math.min(nCols, firstCol + tileSize);
+    for (int i = ti * tileSize; i < endRow; i++) {
+      int row = i * nCols;
+      for (int k = row + firstCol; k < row + endCol; k++) {
+        if (!(Math.abs(field[k]) <= threshold)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private void fillTile(double[] field, int ti, int tj) {
+    int endRow = Math.min(nRows, (ti + 1) * tileSize);
+    int firstCol = tj * tileSize;
+    int endCol = Math.min(nCols, firstCol + tileSize);
+    for (int i = ti * tileSize; i < endRow; i++) {
+      Arrays.fill(field, i * nCols + firstCol, i * nCols + endCol, 0.0);
+    }
+  }
+}
@@ -0,0 +1,182 @@
+package edu.colorado.csdms.heat;
+
+/**
+ * Advances a Heat model to a given time with steps whose length adapts to
+ * keep the local error within a tolerance.
+ * <p>
+ * The error of each step is estimated by step doubling: the step is taken
+ * once at full length and once as two half steps, with the model's
+ * integrator, and the difference between the two results, scaled by the
+ * order of the integrator, estimates the error of the more accurate
+ * two-half-step result. The error is measured relative to the largest
+ * temperature in the field. A step within the tolerance is kept and the
+ * next one is made longer; a step outside it is taken again, shorter.
+ * As the field smooths out the steps grow, so far fewer are needed than
+ * with a fixed step. The last step is shortened to end exactly at the
+ * requested time.
+ * <p>
+ * With the explicit integrator, steps are kept within its stability limit
+ * of <code>1 / (2 * alpha)</code>; the implicit integrators allow steps
+ * of any length.
+ */
+public class AdaptiveStepper {
+
+  /** Default relative tolerance on the local error of a step. */
+  public static final double DEFAULT_TOLERANCE = 1e-4;
+
+  /** The fraction of the predicted step length that is tried. */
+  private static final double SAFETY = 0.9;
+
+  /** The most a step can grow from one to the next. */
+  private static final double MAX_GROWTH = 4.0;
+
+  /** The most a rejected step can shrink. */
+  private static final double MAX_SHRINK = 0.1;
+
+  private final double tolerance;
+  private final double minStep;
+  private final double maxStep;
+  private double step = Double.NaN;
+  private long acceptedCount;
+  private long rejectedCount;
+  private double[] startField = new double[0];
+  private double[] fullStep = new double[0];
+  private double[] halfStep = new double[0];
+  private double[] twoHalfSteps = new double[0];
+
+  /**
+   * Makes a stepper with the default tolerance and no limits on the step
+   * length beyond those of the integrator.
+   */
+  public AdaptiveStepper() {
+    this(DEFAULT_TOLERANCE, 0.0, Double.POSITIVE_INFINITY);
+  }
+
+  /**
+   * Makes a stepper.
+   *
+   * @param tolerance the relative tolerance on the local error of a step
+   * @param minStep the shortest step; a step this short is kept even if
+   *     its error is outside the tolerance
+   * @param maxStep the longest step
+   */
+  public AdaptiveStepper(double tolerance, double minStep, double maxStep) {
+    if (!(tolerance > 0.0) || minStep < 0.0 || !(maxStep > minStep)) {
+      throw new IllegalArgumentException(
+          "tolerance must be positive, and 0 <= minStep < maxStep");
+    }
+    this.tolerance = tolerance;
+    this.minStep = minStep;
+    this.maxStep = maxStep;
+  }
+
+  /**
+   * Advances a model to a time. The model's time step is used for the
+   * first step, and is not changed.
+   *
+   * @param heat the model
+   * @param then the time to advance to
+   * @return the number of steps kept
+   */
+  public long advance(Heat heat, double then) {
+    int order = heat.getIntegrator() == Heat.Integrator.CRANK_NICOLSON
+        ? 2 : 1;
+    double errorScale = 1.0 / ((1 << order) - 1);
+    double longestStep = maxStep;
+    if (heat.getIntegrator() == Heat.Integrator.EXPLICIT) {
+      longestStep = Math.min(longestStep, 0.5 / heat.getAlphaValue());
+    }
+    if (Double.isNaN(step)) {
+      step = heat.getTimeStepValue();
+    }
+    step = Math.max(minStep, Math.min(step, longestStep));
+
+    double time = heat.getTimeValue();
+    long nAccepted = 0;
+    while (time < then) {
+      double[] field = heat.getTemperatureField();
+      allocate(field.length);
+      System.arraycopy(field, 0, startField, 0, field.length);
+
+      boolean isLast = step >= then - time;
+      double dt = isLast ? then - time : step;
+      heat.solveStep(startField, fullStep, dt);
+      heat.solveStep(startField, halfStep, 0.5 * dt);
+      heat.solveStep(halfStep, twoHalfSteps, 0.5 * dt);
+      double error = errorScale * relativeDifference(fullStep, twoHalfSteps);
+
+      boolean accepted = error <= tolerance || dt <= minStep;
+      if (accepted) {
+        System.arraycopy(twoHalfSteps, 0, field, 0, field.length);
+        heat.temperatureChanged();
+        time = isLast ? then : time + dt;
+        heat.setTime(time);
+        acceptedCount++;
+        nAccepted++;
+      } else {
+        rejectedCount++;
+      }
+
+      // Don't let a step shortened to land on then shorten the next one.
+      if (!(accepted && isLast)) {
+        double factor = error == 0.0 ? MAX_GROWTH
+            : SAFETY * Math.pow(tolerance / error, 1.0 / (order + 1));
+        factor = Math.max(MAX_SHRINK, Math.min(MAX_GROWTH, factor));
+        step = Math.max(minStep, Math.min(dt * factor, longestStep));
+      }
+    }
+    return nAccepted;
+  }
+
+  /**
+   * Gets the length of the next step to be tried.
+   *
+   * @return the step length, or NaN before the first call to
+   *     {@link #advance}
+   */
+  public double getStep() {
+    return step;
+  }
+
+  /**
+   * Gets the number of steps kept over all calls to {@link #advance}.
+   *
+   * @return the number of accepted steps
+   */
+  public long getAcceptedStepCount() {
+    return acceptedCount;
+  }
+
+  /**
+   * Gets the number of steps taken again because their error was outside
+   * the tolerance, over all calls to {@link #advance}.
+   *
+   * @return the number of rejected steps
+   */
+  public long getRejectedStepCount() {
+    return rejectedCount;
+  }
+
+  private void allocate(int length) {
+    if (startField.length != length) {
+      startField = new double[length];
+      fullStep = new double[length];
+      halfStep = new double[length];
+      twoHalfSteps = new double[length];
+    }
+  }
+
+  /**
+   * Gets the largest difference between two fields, relative to the
+   * largest value in the second.
+   */
+  private static double relativeDifference(double[] a, double[] b) {
+    double maxDifference = 0.0;
+    double maxValue = 0.0;
+    for (int i = 0; i < a.length; i++) {
+      maxDifference = Math.max(maxDifference, Math.abs(a[i] - b[i]));
+      maxValue = Math.max(maxValue, Math.abs(b[i]));
+    }
+    return maxValue == 0.0 ? maxDifference : maxDifference / maxValue;
+  }
+}
@@ -0,0 +1,187 @@
+package edu.colorado.csdms.heat;
+
+/**
+ * A solver that advances the 2D heat equation several time steps at a
+ * time, one tile of the grid at a time.
+ * <p>
+ * Each tile is copied, with a halo as wide as the number of steps, into a
+ * small work area that fits in cache. All the steps are taken there before
+ * the tile is written back, so the grid is read and written once per block
+ * of steps instead of once per step. The halos of neighboring tiles
+ * overlap, and the points in them are computed more than once. Every point
+ * is computed exactly as in {@link Solve2D}, so the results are identical
+ * to taking the steps one at a time.
+ */
+public class BlockedSolve2D {
+
+  /** Default number of rows in a tile. */
+  public static final int DEFAULT_TILE_ROWS = 64;
+
+  /** Default number of columns in a tile. */
+  public static final int DEFAULT_TILE_COLS = 1024;
+
+  /** Default number of time steps taken on a tile before writing it back. */
+  public static final int DEFAULT_STEPS_PER_BLOCK = 8;
+
+  private final int tileRows;
+  private final int tileCols;
+  private final int stepsPerBlock;
+  private double[] work;
+  private double[] nextWork;
+
+  /**
+   * Makes a solver with the default tile size and steps per block.
+   */
+  public BlockedSolve2D() {
+    this(DEFAULT_TILE_ROWS, DEFAULT_TILE_COLS, DEFAULT_STEPS_PER_BLOCK);
+  }
+
+  /**
+   * Makes a solver.
+   *
+   * @param tileRows the number of rows in a tile
+   * @param tileCols the number of columns in a tile
+   * @param stepsPerBlock the number of time steps taken on a tile before
+   *     writing it back
+   */
+  public BlockedSolve2D(int tileRows, int tileCols, int stepsPerBlock) {
+    if (tileRows < 1 || tileCols < 1 || stepsPerBlock < 1) {
+      throw new IllegalArgumentException(
+          "Tile size and steps per block must be positive");
+    }
+    this.tileRows = tileRows;
+    this.tileCols = tileCols;
+    this.stepsPerBlock = stepsPerBlock;
+    int workSize =
+        (tileRows + 2 * stepsPerBlock) * (tileCols + 2 * stepsPerBlock);
+    work = new double[workSize];
+    nextWork = new double[workSize];
+  }
+
+  /**
+   * Tells whether a grid is larger than one tile. Smaller grids fit in
+   * cache already and gain nothing from blocking.
+   *
+   * @param nRows the number of rows in the grid
+   * @param nCols the number of columns in the grid
+   * @return true if the grid spans more than one tile
+   */
+  public boolean isBlocked(int nRows, int nCols) {
+    return nRows > tileRows || nCols > tileCols;
+  }
+
+  /**
+   * Advance the 2D heat equation on a uniform grid by several time steps.
+   * <p>
+   * The two arrays are used in turn to hold the temperatures after each
+   * block of steps.
+   *
+   * @param temperature an array of temperatures stored by rows
+   * @param newTemperature a second array of the same size
+   * @param nRows the number of rows in the grid
+   * @param nCols the number of columns in the grid
+   * @param dx distance between columns in grid
+   * @param dy distance between rows in grid
+   * @param alpha parameter in heat equation
+   * @param timeStep current time step
+   * @param nSteps the number of time steps to take
+   * @return whichever of the two arrays holds the final temperatures
+   */
+  public double[] solve(double[] temperature, double[] newTemperature,
+      int nRows, int nCols, double dx, double dy, double alpha,
+      double timeStep, long nSteps) {
+    double[] source = temperature;
+    double[] target = newTemperature;
+    for (long step = 0; step < nSteps; step += stepsPerBlock) {
+      int blockSteps = (int) Math.min(stepsPerBlock, nSteps - step);
+      for (int firstRow = 0; firstRow < nRows; firstRow += tileRows) {
+        for (int firstCol = 0; firstCol < nCols; firstCol += tileCols) {
+          solveTile(source, target, nRows, nCols, firstRow,
+              Math.min(firstRow + tileRows, nRows), firstCol,
+              Math.min(firstCol + tileCols, nCols), dx, dy, alpha,
+              timeStep, blockSteps);
+        }
+      }
+      double[] swap = source;
+      source = target;
+      target = swap;
+    }
+    return source;
+  }
+
+  /**
+   * Advance one tile by a block of time steps in the work area.
+   */
+  private void solveTile(double[] source, double[] target, int nRows,
+      int nCols, int firstRow, int endRow, int firstCol, int endCol,
+      double dx, double dy, double alpha, double timeStep, int nSteps) {
+
+    // The tile and its halo, in grid coordinates.
+    int haloFirstRow = Math.max(0, firstRow - nSteps);
+    int haloEndRow = Math.min(nRows, endRow + nSteps);
+    int haloFirstCol = Math.max(0, firstCol - nSteps);
+    int haloEndCol = Math.min(nCols, endCol + nSteps);
+    int height = haloEndRow - haloFirstRow;
+    int width = haloEndCol - haloFirstCol;
+
+    for (int i = 0; i < height; i++) {
+      System.arraycopy(source, (haloFirstRow + i) * nCols + haloFirstCol,
+          work, i * width, width);
+    }
+
+    // The region of the work area holding values for the current step.
+    int validFirstRow = 0;
+    int validEndRow = height;
+    int validFirstCol = 0;
+    int validEndCol = width;
+
+    double[] in = work;
+    double[] out = nextWork;
+    for (int step = 0; step < nSteps; step++) {
+      int rowLo = Math.max(validFirstRow + 1, 1 - haloFirstRow);
+      int rowHi = Math.min(validEndRow - 1, nRows - 1 - haloFirstRow);
+      int colLo = Math.max(validFirstCol + 1, 1 - haloFirstCol);
+      int colHi = Math.min(validEndCol - 1, nCols - 1 - haloFirstCol);
+      Solve2D.solveBlock(in, out, width, rowLo, rowHi, colLo, colHi, dx, dy,
+          alpha, timeStep);
+
+      // Hold the edges of the plate at zero.
+      if (haloFirstCol == 0) {
+        for (int i = rowLo; i < rowHi; i++) {
+          out[i * width] = 0.0;
+        }
+      }
+      if (haloEndCol == nCols) {
+        for (int i = rowLo; i < rowHi; i++) {
+          out[i * width + width - 1] = 0.0;
+        }
+      }
+      if (haloFirstRow == 0) {
+        for (int j = 0; j < width; j++) {
+          out[j] = 0.0;
+        }
+      }
+      if (haloEndRow == nRows) {
+        for (int j = 0; j < width; j++) {
+          out[(height - 1) * width + j] = 0.0;
+        }
+      }
+
+      validFirstRow = haloFirstRow == 0 ? 0 : rowLo;
+      validEndRow = haloEndRow == nRows ? height : rowHi;
+      validFirstCol = haloFirstCol == 0 ? 0 : colLo;
+      validEndCol = haloEndCol == nCols ? width : colHi;
+
+      double[] swap = in;
+      in = out;
+      out = swap;
+    }
+
+    int tileWidth = endCol - firstCol;
+    for (int i = firstRow; i < endRow; i++) {
+      System.arraycopy(in,
+          (i - haloFirstRow) * width + (firstCol - haloFirstCol), target,
+          i * nCols + firstCol, tileWidth);
+    }
+  }
+}
@@ -0,0 +1,383 @@
+package edu.colorado.csdms.heat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A process-parallel solver for the 2D heat equation that splits the work
+ * of each time step across several local JVM processes. It speeds up
+ * steps on a grid that already fits in this JVM; it doesn't let a model
+ * hold a grid that doesn't.
+ * <p>
+ * The rows of the grid are divided into bands, one per worker process
+ * ({@link HeatWorker}). Each worker holds its band and one halo row on
+ * each side, and before each time step trades its first and last rows
+ * with the workers above and below it over loopback sockets. Every point
+ * is computed exactly as in {@link Solve2D}, so the results are identical
+ * to the single-process solver.
+ * <p>
+ * The workers keep their bands between calls, so a call that continues
+ * from the result of the previous one sends the grid to them only once,
+ * at the start. Each call reads the whole grid back. If the field is
+ * changed in any other way between calls, call {@link #invalidate()}.
+ * Grids with fewer than two rows per worker are solved in this process.
+ * <p>
+ * The workers share the computation, not the memory. This process still
+ * holds the whole grid, in the two arrays of the {@link Heat} model, and
+ * every call copies it back from the workers. Advance in long blocks of
+ * steps to make the copy infrequent.
+ * <p>
+ * The workers are started with the same Java runtime and class path as
+ * this process, and exit when {@link #close()} is called or this process
+ * ends.
+ */
+public class DistributedSolve2D implements Closeable {
+
+  /** Command that takes time steps. */
+  static final int SOLVE = 1;
+
+  /** Command that makes a worker exit. */
+  static final int CLOSE = 2;
+
+  /** Reply to a command that succeeded. */
+  static final int OK = 0;
+
+  /** Reply to a command that failed, followed by a message. */
+  static final int FAILED = 1;
+
+  /** How long to wait for the workers to start, in milliseconds. */
+  private static final int START_TIMEOUT = 60000;
+
+  private final List<Process> processes = new ArrayList<Process>();
+  private final List<Socket> sockets = new ArrayList<Socket>();
+  private final List<DataInputStream> inputs =
+      new ArrayList<DataInputStream>();
+  private final List<DataOutputStream> outputs =
+      new ArrayList<DataOutputStream>();
+  private ByteBuffer rowBuffer = ByteBuffer.allocate(0);
+  private double[] lastResult;
+  private int lastRows = -1;
+  private int lastCols = -1;
+  private boolean valid;
+  private boolean closed;
+
+  /**
+   * Starts worker processes with no extra JVM options.
+   *
+   * @param nProcesses the number of worker processes
+   * @throws IOException if the workers can't be started
+   */
+  public DistributedSolve2D(int nProcesses) throws IOException {
+    this(nProcesses, Collections.<String>emptyList());
+  }
+
+  /**
+   * Starts worker processes.
+   *
+   * @param nProcesses the number of worker processes
+   * @param jvmOptions options for the worker JVMs, such as "-Xmx8g"
+   * @throws IOException if the workers can't be started
+   */
+  public DistributedSolve2D(int nProcesses, List<String> jvmOptions)
+      throws IOException {
+    if (nProcesses < 1) {
+      throw new IllegalArgumentException("nProcesses must be positive");
+    }
+    try (ServerSocket server =
+        new ServerSocket(0, nProcesses, InetAddress.getLoopbackAddress())) {
+      server.setSoTimeout(START_TIMEOUT);
+      try {
+        start(server, nProcesses, jvmOptions);
+      } catch (IOException e) {
+        for (Process process : processes) {
+          process.destroy();
+        }
+        close();
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Launches the workers, waits for each to connect, and tells each one
+   * where to find the worker above it.
+   */
+  private void start(ServerSocket server, int nProcesses,
+      List<String> jvmOptions) throws IOException {
+    String java = System.getProperty("java.home") + File.separator + "bin"
+        + File.separator + "java";
+    for (int rank = 0; rank < nProcesses; rank++) {
+      List<String> command = new ArrayList<String>();
+      command.add(java);
+      command.addAll(jvmOptions);
+      command.add("-cp");
+      command.add(System.getProperty("java.class.path"));
+      command.add(HeatWorker.class.getName());
+      command.add(Integer.toString(server.getLocalPort()));
+      command.add(Integer.toString(rank));
+      processes.add(new ProcessBuilder(command)
+          .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+          .redirectError(ProcessBuilder.Redirect.INHERIT).start());
+      sockets.add(null);
+      inputs.add(null);
+      outputs.add(null);
+    }
+
+    int[] haloPorts = new int[nProcesses];
+    for (int i = 0; i < nProcesses; i++) {
+      Socket socket = server.accept();
+      socket.setTcpNoDelay(true);
+      DataInputStream in = new DataInputStream(
+          new BufferedInputStream(socket.getInputStream(), 1 << 16));
+      int rank = in.readInt();
+      haloPorts[rank] = in.readInt();
+      sockets.set(rank, socket);
+      inputs.set(rank, in);
+      outputs.set(rank, new DataOutputStream(
+          new BufferedOutputStream(socket.getOutputStream(), 1 << 16)));
+    }
+    for (int rank = 0; rank < nProcesses; rank++) {
+      DataOutputStream out = outputs.get(rank);
+      out.writeInt(rank > 0 ? haloPorts[rank - 1] : -1);
+      out.writeBoolean(rank < nProcesses - 1);
+      out.flush();
+    }
+    for (int rank = 0; rank < nProcesses; rank++) {
+      checkReply(rank);
+    }
+  }
+
+  /**
+   * Gets the number of worker processes.
+   *
+   * @return the number of workers
+   */
+  public int getProcessCount() {
+    return processes.size();
+  }
+
+  /**
+   * Gets the first row of a worker's band.
+   *
+   * @param rank the worker, from 0
+   * @param nProcesses the number of workers
+   * @param nRows the number of rows in the grid
+   * @return the first row of the band; the band of the next worker starts
+   *     where it ends
+   */
+  static int firstRow(int rank, int nProcesses, int nRows) {
+    return (int) ((long) rank * nRows / nProcesses);
+  }
+
+  /**
+   * Forgets the field held by the workers, so that the next call sends
+   * them the whole grid. Call it after changing the field between calls.
+   */
+  public void invalidate() {
+    valid = false;
+  }
+
+  /**
+   * Advance the 2D heat equation on a uniform grid by several time steps.
+   *
+   * @param temperature an array of temperatures stored by rows
+   * @param newTemperature a second array of the same size, which may be
+   *     used to hold the result
+   * @param nRows the number of rows in the grid
+   * @param nCols the number of columns in the grid
+   * @param dx distance between columns in grid
+   * @param dy distance between rows in grid
+   * @param alpha parameter in heat equation
+   * @param timeStep current time step
+   * @param nSteps the number of time steps to take
+   * @return whichever of the two arrays holds the final temperatures
+   * @throws IllegalStateException if a worker fails or can't be reached,
+   *     after which the workers are closed
+   */
+  public double[] solve(double[] temperature, double[] newTemperature,
+      int nRows, int nCols, double dx, double dy, double alpha,
+      double timeStep, long nSteps) {
+    if (closed) {
+      throw new IllegalStateException("The worker processes are closed");
+    }
+    int nProcesses = processes.size();
+    if (nRows < 2 * nProcesses) {
+      return solveLocally(temperature, newTemperature, nRows, nCols, dx, dy,
+          alpha, timeStep, nSteps);
+    }
+
+    boolean send = !(valid && temperature == lastResult
+        && nRows == lastRows && nCols == lastCols);
+    valid = false;
+    try {
+      for (int rank = 0; rank < nProcesses; rank++) {
+        int firstRow = firstRow(rank, nProcesses, nRows);
+        int endRow = firstRow(rank + 1, nProcesses, nRows);
+        DataOutputStream out = outputs.get(rank);
+        out.writeInt(SOLVE);
+        out.writeInt(nRows);
+        out.writeInt(nCols);
+        out.writeInt(firstRow);
+        out.writeInt(endRow);
+        out.writeDouble(dx);
+        out.writeDouble(dy);
+        out.writeDouble(alpha);
+        out.writeDouble(timeStep);
+        out.writeLong(nSteps);
+        out.writeBoolean(send);
+        if (send) {
+          writeDoubles(out, temperature, firstRow * nCols,
+              (endRow - firstRow) * nCols);
+        }
+        out.flush();
+      }
+      for (int rank = 0; rank < nProcesses; rank++) {
+        int firstRow = firstRow(rank, nProcesses, nRows);
+        int endRow = firstRow(rank + 1, nProcesses, nRows);
+        checkReply(rank);
+        readDoubles(inputs.get(rank), newTemperature, firstRow * nCols,
+            (endRow - firstRow) * nCols);
+      }
+    } catch (IOException e) {
+      close();
+      throw new IllegalStateException(
+          "Lost contact with a worker process: " + e.getMessage(), e);
+    } catch (IllegalStateException e) {
+      close();
+      throw e;
+    }
+    lastResult = newTemperature;
+    lastRows = nRows;
+    lastCols = nCols;
+    valid = true;
+    return newTemperature;
+  }
+
+  private static double[] solveLocally(double[] temperature,
+      double[] newTemperature, int nRows, int nCols, double dx, double dy,
+      double alpha, double timeStep, long nSteps) {
+    double[] source = temperature;
+    double[] target = newTemperature;
+    for (long step = 0; step < nSteps; step++) {
+      Solve2D.solve(source, target, nRows, nCols, dx, dy, alpha, timeStep);
+      double[] swap = source;
+      source = target;
+      target = swap;
+    }
+    return source;
+  }
+
+  /**
+   * Reads a worker's reply, throwing if it reports a failure.
+   */
+  private void checkReply(int rank) throws IOException {
+    DataInputStream in = inputs.get(rank);
+    if (in.readInt() != OK) {
+      throw new IllegalStateException(
+          "Worker process " + rank + " failed: " + in.readUTF());
+    }
+  }
+
+  /**
+   * Writes values in bulk.
+   */
+  private void writeDoubles(DataOutputStream out, double[] values, int offset,
+      int length) throws IOException {
+    rowBuffer = write(out, values, offset, length, rowBuffer);
+  }
+
+  /**
+   * Reads values in bulk.
+   */
+  private void readDoubles(DataInputStream in, double[] values, int offset,
+      int length) throws IOException {
+    rowBuffer = read(in, values, offset, length, rowBuffer);
+  }
+
+  /**
+   * Writes values in bulk through a buffer, which is returned, grown if
+   * needed.
+   */
+  static ByteBuffer write(DataOutputStream out, double[] values, int offset,
+      int length, ByteBuffer buffer) throws IOException {
+    int chunk = Math.min(length, 1 << 16);
+    if (buffer.capacity() < 8 * chunk) {
+      buffer = ByteBuffer.allocate(8 * chunk);
+    }
+    for (int start = 0; start < length; start += chunk) {
+      int count = Math.min(chunk, length - start);
+      buffer.clear();
+      buffer.asDoubleBuffer().put(values, offset + start, count);
+      out.write(buffer.array(), 0, 8 * count);
+    }
+    return buffer;
+  }
+
+  /**
+   * Reads values in bulk through a buffer, which is returned, grown if
+   * needed.
+   */
+  static ByteBuffer read(DataInputStream in, double[] values, int offset,
+      int length, ByteBuffer buffer) throws IOException {
+    int chunk = Math.min(length, 1 << 16);
+    if (buffer.capacity() < 8 * chunk) {
+      buffer = ByteBuffer.allocate(8 * chunk);
+    }
+    for (int start = 0; start < length; start += chunk) {
+      int count = Math.min(chunk, length - start);
+      in.readFully(buffer.array(), 0, 8 * count);
+      buffer.clear();
+      buffer.asDoubleBuffer().get(values, offset + start, count);
+    }
+    return buffer;
+  }
+
+  /**
+   * Stops the worker processes.
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    valid = false;
+    for (int rank = 0; rank < sockets.size(); rank++) {
+      try {
+        if (outputs.get(rank) != null) {
+          outputs.get(rank).writeInt(CLOSE);
+          outputs.get(rank).flush();
+        }
+      } catch (IOException e) {
+        // The worker is already gone.
+      }
+      try {
+        if (sockets.get(rank) != null) {
+          sockets.get(rank).close();
+        }
+      } catch (IOException e) {
+        // Nothing more to do.
+      }
+    }
+    for (Process process : processes) {
+      try {
+        process.waitFor();
+      } catch (InterruptedException e) {
+        process.destroy();
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
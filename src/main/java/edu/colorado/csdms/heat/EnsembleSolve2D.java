@@ -0,0 +1,107 @@
+package edu.colorado.csdms.heat;
+
+/**
+ * A solver for the 2D heat equation that advances several models on the
+ * same grid at once.
+ * <p>
+ * The temperatures of the models are interleaved in one block, stored by
+ * grid point and then by model, so the value for model m at (row, column)
+ * is at index <code>(row * nCols + column) * nMembers + m</code>. The
+ * innermost loop runs over the models at one grid point, reading and
+ * writing consecutive elements, so the JIT compiler can vectorize it
+ * whatever the grid size. Each model has its own spacing, alpha and time
+ * step, and every value is computed exactly as in {@link Solve2D}.
+ */
+final class EnsembleSolve2D {
+
+  private EnsembleSolve2D() {
+  }
+
+  /**
+   * Copies the temperatures of several models into a block.
+   *
+   * @param fields the temperature arrays of the models, stored by rows
+   * @param block the block, with room for every model's temperatures
+   */
+  static void pack(double[][] fields, double[] block) {
+    int nMembers = fields.length;
+    for (int m = 0; m < nMembers; m++) {
+      double[] field = fields[m];
+      for (int k = 0, b = m; k < field.length; k++, b += nMembers) {
+        block[b] = field[k];
+      }
+    }
+  }
+
+  /**
+   * Copies the temperatures of several models out of a block.
+   *
+   * @param block the block
+   * @param fields the temperature arrays of the models, stored by rows
+   */
+  static void unpack(double[] block, double[][] fields) {
+    int nMembers = fields.length;
+    for (int m = 0; m < nMembers; m++) {
+      double[] field = fields[m];
+      for (int k = 0, b = m; k < field.length; k++, b += nMembers) {
+        field[k] = block[b];
+      }
+    }
+  }
+
+  /**
+   * Advance every model in a block by one time step, writing the result
+   * into a second block.
+   *
+   * @param block the temperatures of the models
+   * @param newBlock the block to hold the temperatures after the time
+   *     step; must not be the same array as block
+   * @param nMembers the number of models in the block
+   * @param nRows the number of rows in the grid
+   * @param nCols the number of columns in the grid
+   * @param dx2 the square of each model's column spacing
+   * @param dy2 the square of each model's row spacing
+   * @param c each model's alpha * timeStep / (dx2 + dy2)
+   */
+  static void solve(double[] block, double[] newBlock, int nMembers,
+      int nRows, int nCols, double[] dx2, double[] dy2, double[] c) {
+    int rowStride = nCols * nMembers;
+    for (int i = 1; i < nRows - 1; i++) {
+      for (int j = 1; j < nCols - 1; j++) {
+        int base = (i * nCols + j) * nMembers;
+        for (int m = 0; m < nMembers; m++) {
+          int k = base + m;
+          double rowOp = dx2[m] * (block[k - nMembers] + block[k + nMembers]);
+          double colOp =
+              dy2[m] * (block[k - rowStride] + block[k + rowStride]);
+          newBlock[k] =
+              c[m] * (rowOp + colOp - 2.0 * (dx2[m] + dy2[m]) * block[k])
+              + block[k];
+        }
+      }
+    }
+    setBoundaries(newBlock, nMembers, nRows, nCols);
+  }
+
+  /**
+   * Set the temperature on the edges of the grid to zero for every model
+   * in a block.
+   */
+  private static void setBoundaries(double[] block, int nMembers, int nRows,
+      int nCols) {
+    int rowStride = nCols * nMembers;
+    int topRowStart = (nRows - 1) * rowStride;
+    for (int b = 0; b < rowStride; b++) {
+      block[b] = 0.0;
+      block[topRowStart + b] = 0.0;
+    }
+    for (int i = 0; i < nRows; i++) {
+      int left = i * rowStride;
+      int right = left + rowStride - nMembers;
+      for (int m = 0; m < nMembers; m++) {
+        block[left + m] = 0.0;
+        block[right + m] = 0.0;
+      }
+    }
+  }
+}
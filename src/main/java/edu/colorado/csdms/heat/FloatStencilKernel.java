@@ -0,0 +1,30 @@
+package edu.colorado.csdms.heat;
+
+/**
+ * Calculates new temperatures, stored as float, for a rectangular block of
+ * grid points. Implementations must give the same results as
+ * {@link Solve2DFloat#solveBlockScalar}.
+ */
+interface FloatStencilKernel {
+
+  /**
+   * Calculate new temperatures for a rectangular block of points in float
+   * arithmetic. Every point in the block must have neighbors on all four
+   * sides.
+   *
+   * @param temperature an array of temperatures stored by rows
+   * @param newTemperature the array to hold the new temperatures
+   * @param nCols the number of columns in the arrays
+   * @param firstRow the first row to update; at least 1
+   * @param endRow one past the last row to update
+   * @param firstCol the first column to update; at least 1
+   * @param endCol one past the last column to update; at most nCols - 1
+   * @param dx distance between columns in grid
+   * @param dy distance between rows in grid
+   * @param alpha parameter in heat equation
+   * @param timeStep current time step
+   */
+  void solveBlock(float[] temperature, float[] newTemperature, int nCols,
+      int firstRow, int endRow, int firstCol, int endCol, double dx,
+      double dy, double alpha, double timeStep);
+}
@@ -3,10 +3,11 @@
  */
 package edu.colorado.csdms.heat;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Solve the heat equation on a grid.
@@ -16,13 +17,57 @@ import java.util.List;
  */
 public class Heat {
 
-  private List<Integer> shape;
-  private List<Double> spacing;
-  private List<Double> origin;
-  private Double alpha;
-  private Double time;
-  private Double timeStep;
-  private double[][] temperature;
+  /**
+   * The ways a time step can be taken.
+   */
+  public enum Integrator {
+    /** The explicit scheme of {@link Solve2D}, stable only for short steps. */
+    EXPLICIT,
+    /** Backward Euler with ADI line solves; stable for any step. */
+    BACKWARD_EULER,
+    /** Crank-Nicolson with ADI line solves; stable for any step. */
+    CRANK_NICOLSON
+  }
+
+  /**
+   * The ways the temperature field can be stored and stepped.
+   */
+  public enum Precision {
+    /** Stored as double and stepped in double arithmetic, the default. */
+    DOUBLE,
+    /** Stored as float and stepped in float arithmetic. */
+    SINGLE,
+    /**
+     * Stored as float and stepped in double arithmetic, rounding each new
+     * temperature to float once.
+     */
+    MIXED
+  }
+
+  private int nRows;
+  private int nCols;
+  private double dy;
+  private double dx;
+  private double yStart;
+  private double xStart;
+  private double alpha;
+  private double time;
+  private double timeStep;
+  private double[] temperature;
+  private double[] nextTemperature;
+  private ParallelSolve2D parallelSolver;
+  private BlockedSolve2D blockedSolver;
+  private Integrator integrator = Integrator.EXPLICIT;
+  private ImplicitSolve2D implicitSolver;
+  private ActiveTileSolve2D activeTileSolver;
+  private TiledSolve2D tiledSolver;
+  private DistributedSolve2D distributedSolver;
+  private Precision precision = Precision.DOUBLE;
+  private float[] floatTemperature;
+  private float[] nextFloatTemperature;
+  private double[] mixedRows;
+  private boolean widened;
+  private long modificationCount;
 
   /**
    * Create a new Heat model.
@@ -38,17 +83,21 @@ public class Heat {
   public Heat(Integer nRows, Integer nCols, Double dx, Double dy,
       Double xStart, Double yStart, Double alpha) {
 
-    shape = new ArrayList<Integer>(Arrays.asList(nRows, nCols));
-    spacing = new ArrayList<Double>(Arrays.asList(dy, dx));
-    origin = new ArrayList<Double>(Arrays.asList(yStart, xStart));
+    this.nRows = nRows;
+    this.nCols = nCols;
+    this.dy = dy;
+    this.dx = dx;
+    this.yStart = yStart;
+    this.xStart = xStart;
     this.alpha = alpha;
     time = 0.0;
 
-    Double minSpacing = Math.min(dy, dx);
+    double minSpacing = Math.min(dy, dx);
     timeStep = Math.pow(minSpacing, 2.0) / (4.0 * this.alpha);
 
-    // Initialize plate temperature.
-    temperature = new double[nRows][nCols];
+    // Initialize plate temperature, stored by rows in a single array.
+    temperature = new double[nRows * nCols];
+    nextTemperature = new double[nRows * nCols];
   }
 
   /**
@@ -62,15 +111,35 @@ public class Heat {
    * Create a Heat model from settings in a file.
    *
    * @param fileName an XML file with Heat model settings
+   * @throws IllegalArgumentException if the file can't be read, can't be
+   *     parsed, or is missing a parameter
    */
   public Heat(String fileName) {
-    this(config(fileName).get("nRows").intValue(),
-        config(fileName).get("nCols").intValue(),
-        config(fileName).get("dx"),
-        config(fileName).get("dy"),
-        config(fileName).get("xStart"),
-        config(fileName).get("yStart"),
-        config(fileName).get("alpha"));
+    this(config(fileName));
+  }
+
+  /**
+   * Create a Heat model from parameters read from a configuration file.
+   * The optional "nThreads" parameter sets the number of threads used by
+   * the solver, and the optional "nProcesses" parameter the number of
+   * worker processes.
+   *
+   * @param parameters the parameter names and values
+   */
+  private Heat(Map<String, Double> parameters) {
+    this(parameter(parameters, "nRows").intValue(),
+        parameter(parameters, "nCols").intValue(),
+        parameter(parameters, "dx"),
+        parameter(parameters, "dy"),
+        parameter(parameters, "xStart"),
+        parameter(parameters, "yStart"),
+        parameter(parameters, "alpha"));
+    if (parameters.containsKey("nThreads")) {
+      setThreadCount(parameters.get("nThreads").intValue());
+    }
+    if (parameters.containsKey("nProcesses")) {
+      setProcessCount(parameters.get("nProcesses").intValue());
+    }
   }
 
   /**
@@ -78,27 +147,76 @@ public class Heat {
    * file. This is a workaround for requiring "this()" to be the first statement
    * in a constructor.
    */
-  private static HashMap<String, Double> config(String fileName) {
-    HeatConfigFile h = new HeatConfigFile(fileName);
-    return h.load();
+  private static Map<String, Double> config(String fileName) {
+    return HeatConfigFile.parameters(fileName);
+  }
+
+  /**
+   * Gets a required parameter from a model configuration.
+   */
+  private static Double parameter(Map<String, Double> parameters,
+      String name) {
+    Double value = parameters.get(name);
+    if (value == null) {
+      throw new IllegalArgumentException(
+          "Missing model parameter: " + name);
+    }
+    return value;
   }
 
   /**
    * <p>Getter for the field <code>shape</code>.</p>
    *
-   * @return a {@link java.util.List} object.
+   * @return a {@link java.util.List} object with the number of rows and
+   *     columns in the grid.
    */
   public List<Integer> getShape() {
-    return shape;
+    return new ArrayList<Integer>(Arrays.asList(nRows, nCols));
   }
 
   /**
    * <p>Setter for the field <code>shape</code>.</p>
+   * <p>
+   * If the number of grid points changes, the temperature field is
+   * reallocated and set to zero.
    *
    * @param shape a {@link java.util.List} object.
    */
   public void setShape(List<Integer> shape) {
-    this.shape = shape;
+    int newRows = shape.get(0);
+    int newCols = shape.get(1);
+    if (floatTemperature != null) {
+      if (newRows * newCols != floatTemperature.length) {
+        floatTemperature = new float[newRows * newCols];
+        nextFloatTemperature = new float[newRows * newCols];
+        temperature = null;
+        widened = false;
+      }
+    } else if (newRows * newCols != temperature.length) {
+      temperature = new double[newRows * newCols];
+      nextTemperature = new double[newRows * newCols];
+    }
+    nRows = newRows;
+    nCols = newCols;
+    temperatureChanged();
+  }
+
+  /**
+   * Gets the number of rows in the grid.
+   *
+   * @return the number of rows
+   */
+  public int getRowCount() {
+    return nRows;
+  }
+
+  /**
+   * Gets the number of columns in the grid.
+   *
+   * @return the number of columns
+   */
+  public int getColumnCount() {
+    return nCols;
   }
 
   /**
@@ -107,7 +225,7 @@ public class Heat {
    * @return a {@link java.util.List} object.
    */
   public List<Double> getSpacing() {
-    return spacing;
+    return new ArrayList<Double>(Arrays.asList(dy, dx));
   }
 
   /**
@@ -116,7 +234,26 @@ public class Heat {
    * @param spacing a {@link java.util.List} object.
    */
   public void setSpacing(List<Double> spacing) {
-    this.spacing = spacing;
+    dy = spacing.get(0);
+    dx = spacing.get(1);
+  }
+
+  /**
+   * Gets the distance between columns in the grid.
+   *
+   * @return the column spacing
+   */
+  public double getDx() {
+    return dx;
+  }
+
+  /**
+   * Gets the distance between rows in the grid.
+   *
+   * @return the row spacing
+   */
+  public double getDy() {
+    return dy;
   }
 
   /**
@@ -125,7 +262,7 @@ public class Heat {
    * @return a {@link java.util.List} object.
    */
   public List<Double> getOrigin() {
-    return origin;
+    return new ArrayList<Double>(Arrays.asList(yStart, xStart));
   }
 
   /**
@@ -134,24 +271,53 @@ public class Heat {
    * @param origin a {@link java.util.List} object.
    */
   public void setOrigin(List<Double> origin) {
-    this.origin = origin;
+    yStart = origin.get(0);
+    xStart = origin.get(1);
+  }
+
+  /**
+   * Gets the x-coordinate of the lower left corner of the grid.
+   *
+   * @return the x-coordinate of the grid origin
+   */
+  public double getXStart() {
+    return xStart;
+  }
+
+  /**
+   * Gets the y-coordinate of the lower left corner of the grid.
+   *
+   * @return the y-coordinate of the grid origin
+   */
+  public double getYStart() {
+    return yStart;
   }
 
   /**
    * <p>Getter for the field <code>alpha</code>.</p>
    *
    * @return a {@link java.lang.Double} object.
+   * @see #getAlphaValue()
    */
   public Double getAlpha() {
     return alpha;
   }
 
+  /**
+   * <p>Getter for the field <code>alpha</code>, without boxing.</p>
+   *
+   * @return a double.
+   */
+  public double getAlphaValue() {
+    return alpha;
+  }
+
   /**
    * <p>Setter for the field <code>alpha</code>.</p>
    *
-   * @param alpha a {@link java.lang.Double} object.
+   * @param alpha a double.
    */
-  public void setAlpha(Double alpha) {
+  public void setAlpha(double alpha) {
     this.alpha = alpha;
   }
 
@@ -159,79 +325,642 @@ public class Heat {
    * <p>Getter for the field <code>time</code>.</p>
    *
    * @return a {@link java.lang.Double} object.
+   * @see #getTimeValue()
    */
   public Double getTime() {
     return time;
   }
 
+  /**
+   * <p>Getter for the field <code>time</code>, without boxing.</p>
+   *
+   * @return a double.
+   */
+  public double getTimeValue() {
+    return time;
+  }
+
   /**
    * <p>Setter for the field <code>time</code>.</p>
    *
-   * @param time a {@link java.lang.Double} object.
+   * @param time a double.
    */
-  public void setTime(Double time) {
+  public void setTime(double time) {
     this.time = time;
+    modificationCount++;
   }
 
   /**
    * <p>Getter for the field <code>timeStep</code>.</p>
    *
    * @return a {@link java.lang.Double} object.
+   * @see #getTimeStepValue()
    */
   public Double getTimeStep() {
     return timeStep;
   }
 
+  /**
+   * <p>Getter for the field <code>timeStep</code>, without boxing.</p>
+   *
+   * @return a double.
+   */
+  public double getTimeStepValue() {
+    return timeStep;
+  }
+
   /**
    * <p>Setter for the field <code>timeStep</code>.</p>
    *
-   * @param timeStep a {@link java.lang.Double} object.
+   * @param timeStep a double.
    */
-  public void setTimeStep(Double timeStep) {
+  public void setTimeStep(double timeStep) {
     this.timeStep = timeStep;
   }
 
   /**
-   * <p>Getter for the field <code>temperature</code>.</p>
+   * Gets a copy of the temperature field as a 2D array.
+   * <p>
+   * Use {@link #getTemperatureField()} to work on the model state
+   * directly.
    *
-   * @return an array of double.
+   * @return an array of double, indexed by (row, column).
    */
   public double[][] getTemperature() {
-    return temperature;
+    double[] field = getTemperatureField();
+    double[][] copy = new double[nRows][nCols];
+    for (int i = 0; i < nRows; i++) {
+      System.arraycopy(field, i * nCols, copy[i], 0, nCols);
+    }
+    return copy;
   }
 
   /**
-   * <p>Setter for the field <code>temperature</code>.</p>
+   * Sets the temperature field from a 2D array.
    *
-   * @param temperature an array of double.
+   * @param temperature an array of double, indexed by (row, column).
    */
   public void setTemperature(double[][] temperature) {
+    double[] field = getTemperatureField();
+    for (int i = 0; i < nRows; i++) {
+      System.arraycopy(temperature[i], 0, field, i * nCols, nCols);
+    }
+    temperatureChanged();
+  }
+
+  /**
+   * Gets the temperature field. The values are stored by rows in a single
+   * array, so the temperature at (row, column) is at index
+   * <code>row * nCols + column</code>.
+   * <p>
+   * The model keeps two arrays that swap roles on each call to
+   * {@link #advanceInTime()}, so the array returned here holds the current
+   * temperatures only until the next time step.
+   * <p>
+   * When the field is stored as float, the array returned is a copy of it
+   * widened to double, which is kept until the next time step. Changes
+   * made through the copy are rounded into the model's field by
+   * {@link #temperatureChanged()}.
+   *
+   * @return the model's temperature array (not a copy)
+   * @see #setPrecision(Precision)
+   */
+  public double[] getTemperatureField() {
+    if (floatTemperature != null && !widened) {
+      if (temperature == null) {
+        temperature = new double[floatTemperature.length];
+      }
+      Solve2DFloat.widen(floatTemperature, temperature);
+      widened = true;
+    }
+    return temperature;
+  }
+
+  /**
+   * Sets the temperature field from an array stored by rows. When the
+   * field is stored as float, the values are rounded into it.
+   *
+   * @param temperature an array of double with nRows * nCols elements
+   */
+  public void setTemperatureField(double[] temperature) {
+    if (floatTemperature != null) {
+      Solve2DFloat.narrow(temperature, floatTemperature);
+      widened = false;
+      temperatureChanged();
+      return;
+    }
+    temperatureChanged();
     this.temperature = temperature;
+    if (nextTemperature.length != temperature.length
+        || nextTemperature == temperature) {
+      nextTemperature = new double[temperature.length];
+    }
+  }
+
+  /**
+   * Gets the temperature field when it's stored as float. The array is
+   * laid out like the one from {@link #getTemperatureField()}, and is
+   * likewise replaced on each time step. Call
+   * {@link #temperatureChanged()} after changing it.
+   *
+   * @return the model's float temperature array (not a copy), or null if
+   *     the field is stored as double
+   * @see #readFloatTemperatureField()
+   */
+  public float[] getFloatTemperatureField() {
+    // The caller may change the floats, so the widened copy can't be kept.
+    widened = false;
+    return floatTemperature;
   }
 
   /**
-   * Clones a 2D double array.
+   * Gets the temperature field when it's stored as float, for reading
+   * only. Unlike {@link #getFloatTemperatureField()}, it leaves the
+   * widened copy from {@link #getTemperatureField()} in place, so it
+   * doesn't change the model and can be called while another thread
+   * reads the field.
+   *
+   * @return the model's float temperature array (not a copy), or null if
+   *     the field is stored as double
+   */
+  public float[] readFloatTemperatureField() {
+    return floatTemperature;
+  }
+
+  /**
+   * Gets how the temperature field is stored and stepped.
+   *
+   * @return the precision
+   */
+  public Precision getPrecision() {
+    return precision;
+  }
+
+  /**
+   * Sets how the temperature field is stored and stepped. The current
+   * field is converted, rounding it to float if it was stored as double.
    * <p>
-   * See http://stackoverflow.com/a/1686523/1563298
-   * 
-   * @param array a 2d array of type double
-   * @return a clone of the input array
+   * A field stored as float takes half the memory, and a time step reads
+   * and writes half the bytes, which is where the explicit scheme spends
+   * its time on large grids. Its steps are taken on the calling thread by
+   * {@link Solve2DFloat}, whatever the thread count, worker processes, or
+   * tiled and active-tile solvers set for the model. Only the explicit
+   * integrator can be used. Adaptive steps are still taken in double and
+   * rounded to float after each step. Members of a {@link HeatEnsemble}
+   * are stepped in double and rounded to float once per call to
+   * {@link HeatEnsemble#advanceInTime(long)}, not after each step.
+   * Checkpoints are written in double, and restored with this precision.
+   *
+   * @param precision the precision
+   * @throws IllegalStateException if the field is to be stored as float
+   *     and the integrator isn't explicit
+   */
+  public void setPrecision(Precision precision) {
+    if (precision != Precision.DOUBLE && integrator != Integrator.EXPLICIT) {
+      throw new IllegalStateException(
+          "A field stored as float needs the explicit integrator");
+    }
+    if (precision == Precision.DOUBLE && floatTemperature != null) {
+      double[] field = new double[nRows * nCols];
+      Solve2DFloat.widen(floatTemperature, field);
+      temperature = field;
+      nextTemperature = new double[field.length];
+      floatTemperature = null;
+      nextFloatTemperature = null;
+    } else if (precision != Precision.DOUBLE && floatTemperature == null) {
+      floatTemperature = new float[nRows * nCols];
+      nextFloatTemperature = new float[floatTemperature.length];
+      Solve2DFloat.narrow(temperature, floatTemperature);
+      temperature = null;
+      nextTemperature = null;
+      widened = false;
+    }
+    this.precision = precision;
+    temperatureChanged();
+  }
+
+  /**
+   * Gets the number of threads used to calculate a time step.
+   *
+   * @return the number of solver threads
+   */
+  public int getThreadCount() {
+    return parallelSolver == null ? 1 : parallelSolver.getThreadCount();
+  }
+
+  /**
+   * Sets the number of threads used to calculate a time step. With more
+   * than one thread, time steps are calculated with a
+   * {@link ParallelSolve2D}, which gives the same results as the serial
+   * solver.
+   *
+   * @param nThreads the number of solver threads
+   */
+  public void setThreadCount(int nThreads) {
+    if (nThreads < 1) {
+      throw new IllegalArgumentException("nThreads must be positive");
+    }
+    if (parallelSolver != null) {
+      parallelSolver.shutdown();
+      parallelSolver = null;
+    }
+    if (nThreads > 1) {
+      parallelSolver = new ParallelSolve2D(nThreads,
+          ParallelSolve2D.DEFAULT_SEQUENTIAL_CUTOFF);
+    }
+  }
+
+  /**
+   * Releases the solver threads and worker processes started for the
+   * model. It can still be stepped afterward, in this process on the
+   * calling thread.
+   */
+  public void close() {
+    if (parallelSolver != null) {
+      parallelSolver.shutdown();
+      parallelSolver = null;
+    }
+    setDistributedSolver(null);
+  }
+
+  /**
+   * Gets a count that changes whenever the temperature field or the time
+   * changes: on each time step, and on each call to
+   * {@link #setTemperatureField(double[])}, {@link #temperatureChanged()}
+   * or {@link #setTime(double)}. Results computed from the field can be
+   * kept until it changes. Changes made through the field array are
+   * counted only when {@link #temperatureChanged()} is called.
+   *
+   * @return the modification count
+   */
+  public long getModificationCount() {
+    return modificationCount;
+  }
+
+  /**
+   * Tells the model that the temperature field was changed through the
+   * array returned by {@link #getTemperatureField()}. Only needed when an
+   * {@link ActiveTileSolve2D} is in use, so that it looks for heat in the
+   * whole field again, a {@link DistributedSolve2D}, so that it sends
+   * the field to its workers again, or when the field is stored as float,
+   * so that the changes are rounded into it, and the widened copy is
+   * replaced by the rounded values.
+   */
+  public void temperatureChanged() {
+    modificationCount++;
+    if (floatTemperature != null && widened) {
+      Solve2DFloat.narrow(temperature, floatTemperature);
+      Solve2DFloat.widen(floatTemperature, temperature);
+    }
+    if (activeTileSolver != null) {
+      activeTileSolver.invalidate();
+    }
+    if (distributedSolver != null) {
+      distributedSolver.invalidate();
+    }
+  }
+
+  /**
+   * Gets the number of processes used to calculate time steps.
+   *
+   * @return the number of worker processes, or 1 if steps are calculated
+   *     in this process
+   */
+  public int getProcessCount() {
+    return distributedSolver == null ? 1
+        : distributedSolver.getProcessCount();
+  }
+
+  /**
+   * Sets the number of processes used to calculate time steps. With more
+   * than one, the grid is split across worker processes with a
+   * {@link DistributedSolve2D}, which gives the same results as the serial
+   * solver. The whole field is still held in this process.
+   *
+   * @param nProcesses the number of worker processes
+   * @throws IllegalStateException if the workers can't be started
+   */
+  public void setProcessCount(int nProcesses) {
+    if (nProcesses < 1) {
+      throw new IllegalArgumentException("nProcesses must be positive");
+    }
+    DistributedSolve2D solver = null;
+    if (nProcesses > 1) {
+      try {
+        solver = new DistributedSolve2D(nProcesses);
+      } catch (IOException e) {
+        throw new IllegalStateException(
+            "Can't start worker processes: " + e.getMessage(), e);
+      }
+    }
+    setDistributedSolver(solver);
+  }
+
+  /**
+   * Gets the distributed solver.
+   *
+   * @return the distributed solver, or null if steps are calculated in
+   *     this process
+   */
+  public DistributedSolve2D getDistributedSolver() {
+    return distributedSolver;
+  }
+
+  /**
+   * Sets a solver that splits the grid across worker processes. It's used
+   * with the explicit integrator, in place of the other solvers. Any
+   * distributed solver set before is closed.
+   *
+   * @param solver the distributed solver, or null to calculate steps in
+   *     this process
+   */
+  public void setDistributedSolver(DistributedSolve2D solver) {
+    if (distributedSolver != null && distributedSolver != solver) {
+      distributedSolver.close();
+    }
+    distributedSolver = solver;
+    temperatureChanged();
+  }
+
+  /**
+   * Gets the active-tile solver.
+   *
+   * @return the active-tile solver, or null if every point is updated on
+   *     each step
+   */
+  public ActiveTileSolve2D getActiveTileSolver() {
+    return activeTileSolver;
+  }
+
+  /**
+   * Sets a solver that updates only the parts of the grid holding heat,
+   * for plates with a few small sources on a large cold domain. It's used
+   * with the explicit integrator on the calling thread, in place of the
+   * parallel and blocked solvers.
+   *
+   * @param solver the active-tile solver, or null to update every point
+   */
+  public void setActiveTileSolver(ActiveTileSolve2D solver) {
+    activeTileSolver = solver;
+    temperatureChanged();
+  }
+
+  /**
+   * Gets the tiled solver.
+   *
+   * @return the tiled solver, or null if the grid is swept by whole rows
+   */
+  public TiledSolve2D getTiledSolver() {
+    return tiledSolver;
+  }
+
+  /**
+   * Sets a solver that sweeps the grid one tile at a time on each explicit
+   * step, for grids whose rows are too long to fit three in cache. The
+   * results are the same. Steps taken in blocks by
+   * {@link #advanceInTime(long)}, and steps with the parallel solver, don't
+   * use it.
+   *
+   * @param solver the tiled solver, or null to sweep by whole rows
+   * @see TileTuner
+   */
+  public void setTiledSolver(TiledSolve2D solver) {
+    tiledSolver = solver;
+  }
+
+  /**
+   * Gets the time integrator.
+   *
+   * @return the integrator
+   */
+  public Integrator getIntegrator() {
+    return integrator;
+  }
+
+  /**
+   * Sets the time integrator. The implicit integrators are stable for any
+   * time step, so the time step can be set well above the default, which
+   * is chosen for the explicit scheme; see {@link ImplicitSolve2D}. Steps
+   * with an implicit integrator are taken on the calling thread.
+   *
+   * @param integrator the integrator
+   * @throws IllegalStateException if the integrator is implicit and the
+   *     field is stored as float
    */
-  private double[][] cloneArray2D(double[][] array) {
-    double [][] clone = new double[array.length][];
-    for (int i = 0; i < array.length; i++) {
-      clone[i] = array[i].clone();
+  public void setIntegrator(Integrator integrator) {
+    if (integrator != Integrator.EXPLICIT && floatTemperature != null) {
+      throw new IllegalStateException(
+          "A field stored as float needs the explicit integrator");
+    }
+    this.integrator = integrator;
+    switch (integrator) {
+      case BACKWARD_EULER:
+        implicitSolver = new ImplicitSolve2D(false);
+        break;
+      case CRANK_NICOLSON:
+        implicitSolver = new ImplicitSolve2D(true);
+        break;
+      default:
+        implicitSolver = null;
+        break;
     }
-    return clone;
   }
 
   /**
    * Calculate new temperatures for the next time step.
+   * <p>
+   * The new temperatures are written into a second, preallocated array,
+   * which then becomes the temperature field. No memory is allocated.
    */
   public void advanceInTime() {
-    double[][] copy = cloneArray2D(temperature);
-    temperature = Solve2D.solve(copy, shape, spacing, alpha, timeStep);
+    if (floatTemperature != null) {
+      advanceFloat();
+      return;
+    }
+    if (distributedSolver != null && implicitSolver == null) {
+      advanceDistributed(1);
+      return;
+    }
+    if (activeTileSolver != null && implicitSolver == null) {
+      activeTileSolver.solve(temperature, nextTemperature, nRows, nCols, dx,
+          dy, alpha, timeStep);
+    } else {
+      solveStep(temperature, nextTemperature, timeStep);
+    }
+    swapFields();
+    time += timeStep;
+    modificationCount++;
+  }
+
+  /**
+   * Take one time step of a given length from one field into another with
+   * the current integrator, without changing the model.
+   *
+   * @param field the temperatures before the step
+   * @param newField the array to hold the temperatures after the step
+   * @param step the length of the step
+   */
+  void solveStep(double[] field, double[] newField, double step) {
+    if (implicitSolver != null) {
+      implicitSolver.solve(field, newField, nRows, nCols, dx, dy, alpha,
+          step);
+    } else if (parallelSolver != null) {
+      parallelSolver.solve(field, newField, nRows, nCols, dx, dy, alpha,
+          step);
+    } else if (tiledSolver != null) {
+      tiledSolver.solve(field, newField, nRows, nCols, dx, dy, alpha, step);
+    } else {
+      Solve2D.solve(field, newField, nRows, nCols, dx, dy, alpha, step);
+    }
+  }
+
+  /**
+   * Calculate new temperatures after several time steps.
+   * <p>
+   * On grids larger than a cache-sized tile, the steps are taken in blocks
+   * with a {@link BlockedSolve2D}, which reads and writes the grid once per
+   * block instead of once per step. With a {@link DistributedSolve2D},
+   * the worker processes take all the steps, and the grid is read back
+   * from them once. The results, including the model time, are identical
+   * to calling {@link #advanceInTime()} nSteps times.
+   *
+   * @param nSteps the number of time steps to take
+   */
+  public void advanceInTime(long nSteps) {
+    if (floatTemperature != null) {
+      for (long i = 0; i < nSteps; i++) {
+        advanceFloat();
+      }
+      return;
+    }
+    if (distributedSolver != null && implicitSolver == null) {
+      advanceDistributed(nSteps);
+      return;
+    }
+    if (nSteps > 1 && parallelSolver == null && implicitSolver == null
+        && activeTileSolver == null) {
+      if (blockedSolver == null) {
+        blockedSolver = new BlockedSolve2D();
+      }
+      if (blockedSolver.isBlocked(nRows, nCols)) {
+        double[] result = blockedSolver.solve(temperature, nextTemperature,
+            nRows, nCols, dx, dy, alpha, timeStep, nSteps);
+        if (result != temperature) {
+          swapFields();
+        }
+        for (long i = 0; i < nSteps; i++) {
+          time += timeStep;
+        }
+        modificationCount++;
+        return;
+      }
+    }
+    for (long i = 0; i < nSteps; i++) {
+      advanceInTime();
+    }
+  }
+
+  /**
+   * Takes a time step with the field stored as float.
+   */
+  private void advanceFloat() {
+    if (precision == Precision.MIXED) {
+      if (mixedRows == null || mixedRows.length < 3 * nCols) {
+        mixedRows = new double[3 * nCols];
+      }
+      Solve2DFloat.solveMixed(floatTemperature, nextFloatTemperature, nRows,
+          nCols, dx, dy, alpha, timeStep, mixedRows);
+    } else {
+      Solve2DFloat.solve(floatTemperature, nextFloatTemperature, nRows,
+          nCols, dx, dy, alpha, timeStep);
+    }
+    float[] swap = floatTemperature;
+    floatTemperature = nextFloatTemperature;
+    nextFloatTemperature = swap;
+    widened = false;
     time += timeStep;
+    modificationCount++;
+  }
+
+  /**
+   * Takes time steps with the distributed solver.
+   *
+   * @param nSteps the number of time steps to take
+   */
+  private void advanceDistributed(long nSteps) {
+    if (nSteps < 1) {
+      return;
+    }
+    double[] result = distributedSolver.solve(temperature, nextTemperature,
+        nRows, nCols, dx, dy, alpha, timeStep, nSteps);
+    if (result != temperature) {
+      swapFields();
+    }
+    for (long i = 0; i < nSteps; i++) {
+      time += timeStep;
+    }
+    modificationCount++;
+  }
+
+  /**
+   * Replace the temperature field with the steady state, the field that
+   * further time steps leave unchanged, using a {@link SteadyState2D}
+   * solver with the default tolerance. The temperatures on the edges of
+   * the plate are held at their current values. The model time is not
+   * changed.
+   *
+   * @return the number of iterations taken
+   */
+  public int solveSteadyState() {
+    return solveSteadyState(new SteadyState2D());
+  }
+
+  /**
+   * Replace the temperature field with the steady state, using the given
+   * solver. Its residual and whether it converged can be read from it
+   * afterward.
+   *
+   * @param solver the steady-state solver
+   * @return the number of iterations taken
+   */
+  public int solveSteadyState(SteadyState2D solver) {
+    int nIterations = solver.solve(getTemperatureField(), nRows, nCols, dx,
+        dy);
+    temperatureChanged();
+    return nIterations;
+  }
+
+  /**
+   * Saves the state of the model to a binary checkpoint file.
+   *
+   * @param fileName the path to the checkpoint file
+   * @throws IOException if the file can't be written
+   * @see HeatCheckpoint
+   */
+  public void checkpoint(String fileName) throws IOException {
+    HeatCheckpoint.write(this, fileName);
+  }
+
+  /**
+   * Create a Heat model from the state saved in a checkpoint file.
+   *
+   * @param fileName the path to the checkpoint file
+   * @return a new model in the saved state
+   * @throws IOException if the file can't be read or is corrupt
+   * @see HeatCheckpoint
+   */
+  public static Heat restart(String fileName) throws IOException {
+    return HeatCheckpoint.read(fileName);
+  }
+
+  /**
+   * Makes the array holding the newly computed temperatures the current
+   * temperature field.
+   */
+  private void swapFields() {
+    double[] swap = temperature;
+    temperature = nextTemperature;
+    nextTemperature = swap;
   }
 
   /**
@@ -247,24 +976,24 @@ public class Heat {
     System.out.println("origin: " + heat.getOrigin().toString());
 
     // Place impulse in termperature field.
-    double[][] temp0 = heat.getTemperature();
-    temp0[3][2] = 100.0;
-    heat.setTemperature(temp0);
+    int nCols = heat.getColumnCount();
+    double[] temp0 = heat.getTemperatureField();
+    temp0[3 * nCols + 2] = 100.0;
 
     // Advance model over several time steps.
-    Double currentTime = heat.getTime();
+    double currentTime = heat.getTimeValue();
     while (currentTime < 1.0) {
-      System.out.println("time = " + currentTime.toString());
+      System.out.println("time = " + currentTime);
       System.out.println("temperature =");
-      double[][] temp = heat.getTemperature();
-      for (int j = 0; j < heat.getShape().get(0); j++) {
-        for (int i = 0; i < heat.getShape().get(1); i++) {
-          System.out.format("%7.2f", temp[j][i]);
+      double[] temp = heat.getTemperatureField();
+      for (int j = 0; j < heat.getRowCount(); j++) {
+        for (int i = 0; i < nCols; i++) {
+          System.out.format("%7.2f", temp[j * nCols + i]);
         }
         System.out.print("\n");
       }
       heat.advanceInTime();
-      currentTime = heat.getTime();
+      currentTime = heat.getTimeValue();
     }
   }
 
@@ -0,0 +1,216 @@
+package edu.colorado.csdms.heat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Saves and restores the state of a Heat model in a binary checkpoint
+ * file.
+ * <p>
+ * The file holds a fixed-size header followed by the temperature field as
+ * little-endian doubles, stored by rows. The header holds the grid shape,
+ * spacing and origin, alpha, the time and time step, the integrator and
+ * precision, and a checksum of the header and field. Files written before
+ * the integrator or precision was saved hold zero there, and are read as
+ * explicit and double. The field is copied in bulk through a direct
+ * buffer, a chunk at a time, with no formatting or parsing. The file isn't
+ * memory-mapped, so it can be replaced or deleted as soon as a call
+ * returns, on any platform. A checkpoint is written to a temporary file
+ * that replaces the target only once it's complete, so a failure while
+ * writing leaves any earlier checkpoint intact.
+ */
+public class HeatCheckpoint {
+
+  /** Identifies a Heat checkpoint file: "HEAT" in ASCII. */
+  public static final int MAGIC = 0x48454154;
+
+  /** The version of the file format. */
+  public static final int VERSION = 1;
+
+  /** The size of the header in bytes; the field starts here. */
+  public static final int HEADER_SIZE = 96;
+
+  /** The largest number of doubles copied through the buffer at once. */
+  private static final int CHUNK_SIZE = 1 << 17;
+
+  private static final int CHECKSUM_POSITION = 88;
+
+  private HeatCheckpoint() {
+  }
+
+  /**
+   * Writes the state of a model to a checkpoint file.
+   *
+   * @param heat the model
+   * @param fileName the path to the checkpoint file
+   * @throws IOException if the file can't be written
+   */
+  public static void write(Heat heat, String fileName) throws IOException {
+    Path path = Paths.get(fileName).toAbsolutePath();
+    Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+    double[] field = heat.getTemperatureField();
+
+    try (FileChannel channel = FileChannel.open(tempPath,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.WRITE)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+          .order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC);
+      header.putInt(VERSION);
+      header.putInt(heat.getRowCount());
+      header.putInt(heat.getColumnCount());
+      header.putDouble(heat.getTimeValue());
+      header.putDouble(heat.getTimeStepValue());
+      header.putDouble(heat.getAlphaValue());
+      header.putDouble(heat.getDy());
+      header.putDouble(heat.getDx());
+      header.putDouble(heat.getYStart());
+      header.putDouble(heat.getXStart());
+      header.putInt(heat.getIntegrator().ordinal());
+      header.putInt(heat.getPrecision().ordinal());
+      header.putLong(CHECKSUM_POSITION, checksum(header, field));
+      header.clear();
+      writeFully(channel, header, 0);
+
+      ByteBuffer buffer = chunkBuffer(field.length);
+      for (int start = 0; start < field.length; start += CHUNK_SIZE) {
+        int length = Math.min(CHUNK_SIZE, field.length - start);
+        buffer.clear();
+        buffer.asDoubleBuffer().put(field, start, length);
+        buffer.limit(8 * length);
+        writeFully(channel, buffer, HEADER_SIZE + 8L * start);
+      }
+      channel.force(true);
+    }
+    Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Makes a model from the state saved in a checkpoint file.
+   *
+   * @param fileName the path to the checkpoint file
+   * @return a new model in the saved state
+   * @throws IOException if the file can't be read, isn't a checkpoint
+   *     file, or fails its checksum
+   */
+  public static Heat read(String fileName) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+        StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_SIZE) {
+        throw new IOException(fileName + " is not a Heat checkpoint file");
+      }
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+          .order(ByteOrder.LITTLE_ENDIAN);
+      readFully(channel, header, 0);
+      header.flip();
+      if (header.getInt() != MAGIC) {
+        throw new IOException(fileName + " is not a Heat checkpoint file");
+      }
+      int version = header.getInt();
+      if (version != VERSION) {
+        throw new IOException(fileName
+            + " has unsupported checkpoint version " + version);
+      }
+      int nRows = header.getInt();
+      int nCols = header.getInt();
+      double time = header.getDouble();
+      double timeStep = header.getDouble();
+      double alpha = header.getDouble();
+      double dy = header.getDouble();
+      double dx = header.getDouble();
+      double yStart = header.getDouble();
+      double xStart = header.getDouble();
+      int integrator = header.getInt();
+      int precision = header.getInt();
+      long expectedChecksum = header.getLong(CHECKSUM_POSITION);
+
+      long nPoints = (long) nRows * nCols;
+      if (nRows < 0 || nCols < 0 || nPoints > Integer.MAX_VALUE
+          || channel.size() != HEADER_SIZE + 8 * nPoints
+          || integrator < 0
+          || integrator >= Heat.Integrator.values().length
+          || precision < 0 || precision >= Heat.Precision.values().length
+          || precision != Heat.Precision.DOUBLE.ordinal()
+              && integrator != Heat.Integrator.EXPLICIT.ordinal()) {
+        throw new IOException(fileName + " is truncated or corrupt");
+      }
+
+      double[] field = new double[(int) nPoints];
+      ByteBuffer buffer = chunkBuffer(field.length);
+      for (int start = 0; start < field.length; start += CHUNK_SIZE) {
+        int length = Math.min(CHUNK_SIZE, field.length - start);
+        buffer.clear();
+        buffer.limit(8 * length);
+        readFully(channel, buffer, HEADER_SIZE + 8L * start);
+        buffer.flip();
+        buffer.asDoubleBuffer().get(field, start, length);
+      }
+      if (checksum(header, field) != expectedChecksum) {
+        throw new IOException(fileName + " failed its checksum");
+      }
+
+      Heat heat = new Heat(nRows, nCols, dx, dy, xStart, yStart, alpha);
+      heat.setTime(time);
+      heat.setIntegrator(Heat.Integrator.values()[integrator]);
+      heat.setTimeStep(timeStep);
+      heat.setTemperatureField(field);
+      heat.setPrecision(Heat.Precision.values()[precision]);
+      return heat;
+    }
+  }
+
+  /**
+   * Makes a direct buffer for copying the field a chunk at a time.
+   */
+  private static ByteBuffer chunkBuffer(int nValues) {
+    return ByteBuffer.allocateDirect(8 * Math.max(1,
+        Math.min(CHUNK_SIZE, nValues))).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Writes the remaining bytes of a buffer to a file at a position.
+   */
+  private static void writeFully(FileChannel channel, ByteBuffer buffer,
+      long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  /**
+   * Fills the remaining bytes of a buffer from a file at a position.
+   */
+  private static void readFully(FileChannel channel, ByteBuffer buffer,
+      long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int nBytes = channel.read(buffer, position);
+      if (nBytes < 0) {
+        throw new IOException("Unexpected end of checkpoint file");
+      }
+      position += nBytes;
+    }
+  }
+
+  /**
+   * Calculates a 64-bit checksum of the header fields before the checksum,
+   * and of the bits of every value in the field.
+   */
+  private static long checksum(ByteBuffer header, double[] field) {
+    long sum = 1;
+    for (int i = 0; i < CHECKSUM_POSITION; i += 8) {
+      sum = 31 * sum + header.getLong(i);
+    }
+    for (int i = 0; i < field.length; i++) {
+      sum = 31 * sum + Double.doubleToRawLongBits(field[i]);
+    }
+    return sum;
+  }
+}
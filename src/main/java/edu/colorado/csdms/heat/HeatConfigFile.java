@@ -1,28 +1,50 @@
 package edu.colorado.csdms.heat;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 /**
  * Represents a model configuration file containing parameter values for the
  * heat model.
+ * <p>
+ * Files are read with a streaming XML parser. The parameters of each file
+ * are kept in a cache, keyed by path, and the file is read again only if
+ * its modification time or size changes, so many models can be made from
+ * the same file at little cost.
  *
  * @author mpiper
  * @version $Id: $Id
  */
 public class HeatConfigFile {
-  
+
+  private static final ConcurrentHashMap<String, CachedConfig> CACHE =
+      new ConcurrentHashMap<String, CachedConfig>();
+
+  private static final ThreadLocal<XMLInputFactory> FACTORY =
+      new ThreadLocal<XMLInputFactory>() {
+        @Override
+        protected XMLInputFactory initialValue() {
+          XMLInputFactory factory = XMLInputFactory.newInstance();
+          factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+          factory.setProperty(
+              XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+          return factory;
+        }
+      };
+
   private String fileName;
-  private Document doc = null;
-  private HashMap<String, Double> parameters;
 
   /**
    * Makes an instance of HeatConfigFile.
@@ -31,53 +53,126 @@ public class HeatConfigFile {
    */
   public HeatConfigFile(String fileName) {
     this.fileName = fileName;
-    this.parameters = new HashMap<String, Double>();
   }
-  
+
   /**
    * Extracts parameter names and values from the file.
    *
    * @return a {@link java.util.HashMap} with parameter names and values
+   * @throws IllegalArgumentException if the file can't be read or parsed
    */
   public HashMap<String, Double> load() {
-    loadFile();
-    parseParameters();
-    return parameters;
+    return new HashMap<String, Double>(parameters(fileName));
   }
 
   /**
-   * Load the contents of an XML file.
-   * 
-   * @param fileName the name of the XML file
-   * @return the file contents as a Document
+   * Gets the parameter names and values from a configuration file. The
+   * file is parsed only if it hasn't been parsed before or has changed
+   * since.
+   *
+   * @param fileName the path to the configuration file
+   * @return an unmodifiable map of parameter names and values
+   * @throws IllegalArgumentException if the file can't be read or parsed
    */
-  private void loadFile() {
-    DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-    DocumentBuilder db;
-    
-    try {
-      db = dbf.newDocumentBuilder();
-      doc = db.parse(new File(fileName));
-    } catch (Exception e) {
-      e.printStackTrace();
+  public static Map<String, Double> parameters(String fileName) {
+    File file = new File(fileName);
+    String key = file.getAbsolutePath();
+    long lastModified = file.lastModified();
+    long length = file.length();
+
+    CachedConfig cached = CACHE.get(key);
+    if (cached != null && cached.lastModified == lastModified
+        && cached.length == length) {
+      return cached.parameters;
     }
+
+    Map<String, Double> parameters =
+        Collections.unmodifiableMap(parse(file));
+    CACHE.put(key, new CachedConfig(lastModified, length, parameters));
+    return parameters;
+  }
+
+  /**
+   * Empties the cache of parsed configuration files.
+   */
+  public static void clearCache() {
+    CACHE.clear();
   }
 
   /**
-   * Parse parameter names and values from the XML document.
+   * Parse parameter names and values from the "parameter" elements of an
+   * XML file.
+   *
+   * @param file the XML file
+   * @return the parameter names and values
    */
-  private void parseParameters() {
-    Node modelNode = doc.getLastChild();
-    NodeList list = modelNode.getChildNodes();
-    
-    for (int i = 0; i < list.getLength(); i++) {
-      Node node = list.item(i);
-      if (node.getNodeName().equals("parameter")) {
-        NamedNodeMap attr = node.getAttributes();
-        String key = attr.item(0).getNodeValue();
-        Double value = Double.valueOf(attr.item(1).getNodeValue());
-        parameters.put(key, value);
+  private static HashMap<String, Double> parse(File file) {
+    HashMap<String, Double> parameters = new HashMap<String, Double>();
+    XMLStreamReader reader = null;
+    try (InputStream in = new FileInputStream(file)) {
+      reader = FACTORY.get().createXMLStreamReader(in);
+      while (reader.hasNext()) {
+        if (reader.next() == XMLStreamConstants.START_ELEMENT
+            && reader.getLocalName().equals("parameter")) {
+          String name = reader.getAttributeValue(null, "name");
+          String value = reader.getAttributeValue(null, "value");
+          if (name == null || value == null) {
+            throw error(file, reader.getLocation(),
+                "a parameter needs a name and a value", null);
+          }
+          try {
+            parameters.put(name, Double.valueOf(value));
+          } catch (NumberFormatException e) {
+            throw error(file, reader.getLocation(),
+                "the value of " + name + " is not a number: " + value, e);
+          }
+        }
+      }
+    } catch (XMLStreamException e) {
+      throw error(file, e.getLocation(), e.getMessage(), e);
+    } catch (IOException e) {
+      throw new IllegalArgumentException(
+          "Can't read configuration file " + file, e);
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (XMLStreamException e) {
+          // Nothing more can be done; the file itself is already closed.
+        }
       }
     }
+    return parameters;
+  }
+
+  /**
+   * Makes an exception for a problem in a configuration file.
+   */
+  private static IllegalArgumentException error(File file, Location location,
+      String message, Throwable cause) {
+    String where = file.toString();
+    if (location != null && location.getLineNumber() > 0) {
+      where += ", line " + location.getLineNumber();
+    }
+    return new IllegalArgumentException(
+        "Error in configuration file " + where + ": " + message, cause);
+  }
+
+  /**
+   * The parameters parsed from a file, and the file's modification time and
+   * size when it was parsed.
+   */
+  private static class CachedConfig {
+
+    final long lastModified;
+    final long length;
+    final Map<String, Double> parameters;
+
+    CachedConfig(long lastModified, long length,
+        Map<String, Double> parameters) {
+      this.lastModified = lastModified;
+      this.length = length;
+      this.parameters = parameters;
+    }
   }
 }
@@ -0,0 +1,268 @@
+package edu.colorado.csdms.heat;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Advances many Heat models together on a pool of worker threads.
+ * <p>
+ * The members are ordinary {@link Heat} instances; they can differ in
+ * alpha, spacing, time step and initial temperatures, and can still be
+ * read, changed, or wrapped in a BMI interface between calls to
+ * {@link #advanceInTime(long)}. Members on small grids of the same shape
+ * are packed, a few at a time, into a block where their temperatures are
+ * interleaved, and are stepped together with one loop that the JIT
+ * compiler can vectorize across members with the explicit scheme.
+ * Members on larger grids, and members with an implicit
+ * {@link Heat.Integrator}, are stepped on their own. Either way, the
+ * results are identical to stepping each member by itself, except that a
+ * packed member whose field is stored as float is stepped in double and
+ * rounded to float once per call, rather than after each step.
+ */
+public class HeatEnsemble {
+
+  /**
+   * Default largest number of grid points for which members are packed
+   * into blocks.
+   */
+  public static final int DEFAULT_PACKING_CUTOFF = 1 << 14;
+
+  /** Default largest number of members packed into one block. */
+  public static final int DEFAULT_MEMBERS_PER_BLOCK = 16;
+
+  private final ForkJoinPool pool;
+  private final int packingCutoff;
+  private final int membersPerBlock;
+  private final List<Heat> members = new ArrayList<Heat>();
+  private long memberStepCount;
+  private long elapsedNanos;
+
+  /**
+   * Makes an ensemble that uses all available processors.
+   */
+  public HeatEnsemble() {
+    this(Runtime.getRuntime().availableProcessors(), DEFAULT_PACKING_CUTOFF,
+        DEFAULT_MEMBERS_PER_BLOCK);
+  }
+
+  /**
+   * Makes an ensemble.
+   *
+   * @param nThreads the number of worker threads
+   * @param packingCutoff the largest number of grid points for which
+   *     members are packed into blocks, or 0 to never pack them
+   * @param membersPerBlock the largest number of members packed into one
+   *     block
+   */
+  public HeatEnsemble(int nThreads, int packingCutoff, int membersPerBlock) {
+    if (nThreads < 1) {
+      throw new IllegalArgumentException("nThreads must be positive");
+    }
+    if (membersPerBlock < 1) {
+      throw new IllegalArgumentException("membersPerBlock must be positive");
+    }
+    this.pool = new ForkJoinPool(nThreads);
+    this.packingCutoff = packingCutoff;
+    this.membersPerBlock = membersPerBlock;
+  }
+
+  /**
+   * Adds a member to the ensemble.
+   *
+   * @param member a Heat model
+   * @return the index of the member
+   * @throws IllegalArgumentException if the model is already a member
+   */
+  public int add(Heat member) {
+    if (members.contains(member)) {
+      throw new IllegalArgumentException("The model is already a member");
+    }
+    members.add(member);
+    return members.size() - 1;
+  }
+
+  /**
+   * Gets a member of the ensemble.
+   *
+   * @param index the index of the member
+   * @return the member
+   */
+  public Heat getMember(int index) {
+    return members.get(index);
+  }
+
+  /**
+   * Gets the number of members in the ensemble.
+   *
+   * @return the number of members
+   */
+  public int getMemberCount() {
+    return members.size();
+  }
+
+  /**
+   * Gets the number of worker threads.
+   *
+   * @return the number of worker threads
+   */
+  public int getThreadCount() {
+    return pool.getParallelism();
+  }
+
+  /**
+   * Advances every member by the same number of its own time steps.
+   *
+   * @param nSteps the number of time steps to take
+   */
+  public void advanceInTime(long nSteps) {
+    if (nSteps < 1 || members.isEmpty()) {
+      return;
+    }
+    long start = System.nanoTime();
+    List<Future<Void>> results = pool.invokeAll(makeTasks(nSteps));
+    try {
+      for (Future<Void> result : results) {
+        result.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while advancing", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Can't advance a member", e.getCause());
+    }
+    elapsedNanos += System.nanoTime() - start;
+    memberStepCount += nSteps * members.size();
+  }
+
+  /**
+   * Gets the total number of time steps taken by all members.
+   *
+   * @return the number of member-steps
+   */
+  public long getMemberStepCount() {
+    return memberStepCount;
+  }
+
+  /**
+   * Gets the rate at which the ensemble has advanced, over all calls to
+   * {@link #advanceInTime(long)}.
+   *
+   * @return the number of member-steps per second of wall-clock time
+   */
+  public double getMemberStepsPerSecond() {
+    if (elapsedNanos == 0) {
+      return 0.0;
+    }
+    return memberStepCount / (elapsedNanos * 1e-9);
+  }
+
+  /**
+   * Stops the worker threads. The ensemble can't be advanced afterward.
+   */
+  public void shutdown() {
+    pool.shutdown();
+  }
+
+  /**
+   * Splits the members into tasks: blocks of explicit members on the same
+   * small grid, and single members on larger grids or with an implicit
+   * integrator.
+   */
+  private List<Callable<Void>> makeTasks(final long nSteps) {
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    Map<List<Integer>, List<Heat>> byShape =
+        new LinkedHashMap<List<Integer>, List<Heat>>();
+    for (final Heat member : members) {
+      if (member.getIntegrator() == Heat.Integrator.EXPLICIT
+          && (long) member.getRowCount() * member.getColumnCount()
+          <= packingCutoff) {
+        List<Heat> sameShape = byShape.get(member.getShape());
+        if (sameShape == null) {
+          sameShape = new ArrayList<Heat>();
+          byShape.put(member.getShape(), sameShape);
+        }
+        sameShape.add(member);
+      } else {
+        tasks.add(new Callable<Void>() {
+          @Override
+          public Void call() {
+            member.advanceInTime(nSteps);
+            return null;
+          }
+        });
+      }
+    }
+
+    // Use smaller blocks if there aren't enough to keep every thread busy.
+    for (List<Heat> sameShape : byShape.values()) {
+      int nThreads = getThreadCount();
+      int blockSize = Math.min(membersPerBlock,
+          (sameShape.size() + nThreads - 1) / nThreads);
+      for (int first = 0; first < sameShape.size(); first += blockSize) {
+        final List<Heat> block = sameShape.subList(first,
+            Math.min(first + blockSize, sameShape.size()));
+        tasks.add(new Callable<Void>() {
+          @Override
+          public Void call() {
+            advanceBlock(block, nSteps);
+            return null;
+          }
+        });
+      }
+    }
+    return tasks;
+  }
+
+  /**
+   * Packs members on the same grid into a block, advances them, and copies
+   * the results back.
+   */
+  private static void advanceBlock(List<Heat> block, long nSteps) {
+    int nMembers = block.size();
+    int nRows = block.get(0).getRowCount();
+    int nCols = block.get(0).getColumnCount();
+    double[][] fields = new double[nMembers][];
+    double[] dx2 = new double[nMembers];
+    double[] dy2 = new double[nMembers];
+    double[] c = new double[nMembers];
+    for (int m = 0; m < nMembers; m++) {
+      Heat member = block.get(m);
+      fields[m] = member.getTemperatureField();
+      dx2[m] = Math.pow(member.getDx(), 2.0);
+      dy2[m] = Math.pow(member.getDy(), 2.0);
+      c[m] = member.getAlphaValue() * member.getTimeStepValue()
+          / (dx2[m] + dy2[m]);
+    }
+
+    double[] packed = new double[nMembers * nRows * nCols];
+    double[] nextPacked = new double[packed.length];
+    EnsembleSolve2D.pack(fields, packed);
+    for (long step = 0; step < nSteps; step++) {
+      EnsembleSolve2D.solve(packed, nextPacked, nMembers, nRows, nCols, dx2,
+          dy2, c);
+      double[] swap = packed;
+      packed = nextPacked;
+      nextPacked = swap;
+    }
+    EnsembleSolve2D.unpack(packed, fields);
+
+    for (Heat member : block) {
+      member.temperatureChanged();
+      double time = member.getTimeValue();
+      double timeStep = member.getTimeStepValue();
+      for (long step = 0; step < nSteps; step++) {
+        time += timeStep;
+      }
+      member.setTime(time);
+    }
+  }
+}
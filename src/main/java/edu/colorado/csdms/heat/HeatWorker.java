@@ -0,0 +1,242 @@
+package edu.colorado.csdms.heat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+/**
+ * A worker process of a {@link DistributedSolve2D}, which holds one band
+ * of rows of the grid and advances it in time.
+ * <p>
+ * The band is stored with one halo row above it and one below it, except
+ * at the edges of the grid. Before each time step the worker sends its
+ * first row to the worker above and its last row to the worker below, and
+ * receives their rows into its halo. The exchanges go down the chain of
+ * workers in turn, so that no two workers wait on each other.
+ */
+public class HeatWorker {
+
+  private final int rank;
+  private final DataInputStream coordinatorIn;
+  private final DataOutputStream coordinatorOut;
+  private DataInputStream upperIn;
+  private DataOutputStream upperOut;
+  private DataInputStream lowerIn;
+  private DataOutputStream lowerOut;
+  private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+  private int nRows = -1;
+  private int nCols = -1;
+  private int firstRow = -1;
+  private int endRow = -1;
+  /** The first row of the grid held, including the halo. */
+  private int localFirstRow;
+  private double[] band = new double[0];
+  private double[] nextBand = new double[0];
+
+  /**
+   * Connects to the coordinator and to the neighboring workers.
+   *
+   * @param port the coordinator's port on the loopback address
+   * @param rank the position of this worker, from 0 at the top of the grid
+   * @throws IOException if a connection fails
+   */
+  HeatWorker(int port, int rank) throws IOException {
+    this.rank = rank;
+    InetAddress loopback = InetAddress.getLoopbackAddress();
+    Socket coordinator = new Socket(loopback, port);
+    coordinator.setTcpNoDelay(true);
+    coordinatorIn = new DataInputStream(
+        new BufferedInputStream(coordinator.getInputStream(), 1 << 16));
+    coordinatorOut = new DataOutputStream(
+        new BufferedOutputStream(coordinator.getOutputStream(), 1 << 16));
+
+    try (ServerSocket haloServer = new ServerSocket(0, 1, loopback)) {
+      coordinatorOut.writeInt(rank);
+      coordinatorOut.writeInt(haloServer.getLocalPort());
+      coordinatorOut.flush();
+
+      int upperPort = coordinatorIn.readInt();
+      boolean hasLower = coordinatorIn.readBoolean();
+      if (upperPort >= 0) {
+        Socket upper = new Socket(loopback, upperPort);
+        upper.setTcpNoDelay(true);
+        upperIn = new DataInputStream(
+            new BufferedInputStream(upper.getInputStream(), 1 << 16));
+        upperOut = new DataOutputStream(
+            new BufferedOutputStream(upper.getOutputStream(), 1 << 16));
+      }
+      if (hasLower) {
+        Socket lower = haloServer.accept();
+        lower.setTcpNoDelay(true);
+        lowerIn = new DataInputStream(
+            new BufferedInputStream(lower.getInputStream(), 1 << 16));
+        lowerOut = new DataOutputStream(
+            new BufferedOutputStream(lower.getOutputStream(), 1 << 16));
+      }
+    }
+    coordinatorOut.writeInt(DistributedSolve2D.OK);
+    coordinatorOut.flush();
+  }
+
+  /**
+   * Runs commands from the coordinator until it closes the connection.
+   *
+   * @throws IOException if a connection fails
+   */
+  void run() throws IOException {
+    while (true) {
+      int command;
+      try {
+        command = coordinatorIn.readInt();
+      } catch (EOFException e) {
+        return;
+      }
+      if (command == DistributedSolve2D.CLOSE) {
+        return;
+      }
+      solve();
+    }
+  }
+
+  /**
+   * Takes time steps on the band, as told by the coordinator, and sends
+   * back the rows of the band.
+   */
+  private void solve() throws IOException {
+    int newRows = coordinatorIn.readInt();
+    int newCols = coordinatorIn.readInt();
+    int newFirstRow = coordinatorIn.readInt();
+    int newEndRow = coordinatorIn.readInt();
+    double dx = coordinatorIn.readDouble();
+    double dy = coordinatorIn.readDouble();
+    double alpha = coordinatorIn.readDouble();
+    double timeStep = coordinatorIn.readDouble();
+    long nSteps = coordinatorIn.readLong();
+    boolean receive = coordinatorIn.readBoolean();
+
+    String error = null;
+    if (newRows != nRows || newCols != nCols || newFirstRow != firstRow
+        || newEndRow != endRow) {
+      if (!receive) {
+        error = "The band changed without new values";
+      }
+      resize(newRows, newCols, newFirstRow, newEndRow);
+    }
+    int bandOffset = (firstRow - localFirstRow) * nCols;
+    int bandLength = (endRow - firstRow) * nCols;
+    if (receive) {
+      buffer = DistributedSolve2D.read(coordinatorIn, band, bandOffset,
+          bandLength, buffer);
+    }
+    if (error == null) {
+      try {
+        for (long step = 0; step < nSteps; step++) {
+          exchangeHalos();
+          step(dx, dy, alpha, timeStep);
+        }
+      } catch (RuntimeException e) {
+        error = e.toString();
+      }
+    }
+
+    if (error != null) {
+      coordinatorOut.writeInt(DistributedSolve2D.FAILED);
+      coordinatorOut.writeUTF(error);
+      coordinatorOut.flush();
+      throw new IOException(error);
+    }
+    coordinatorOut.writeInt(DistributedSolve2D.OK);
+    buffer = DistributedSolve2D.write(coordinatorOut, band, bandOffset,
+        bandLength, buffer);
+    coordinatorOut.flush();
+  }
+
+  /**
+   * Makes the arrays for a new band.
+   */
+  private void resize(int newRows, int newCols, int newFirstRow,
+      int newEndRow) {
+    nRows = newRows;
+    nCols = newCols;
+    firstRow = newFirstRow;
+    endRow = newEndRow;
+    localFirstRow = Math.max(0, firstRow - 1);
+    int localEndRow = Math.min(nRows, endRow + 1);
+    int size = (localEndRow - localFirstRow) * nCols;
+    if (band.length != size) {
+      band = new double[size];
+      nextBand = new double[size];
+    }
+  }
+
+  /**
+   * Trades edge rows with the neighbors. The worker above sends first and
+   * then receives on each link, so the exchange runs down the chain.
+   */
+  private void exchangeHalos() throws IOException {
+    if (upperIn != null) {
+      buffer = DistributedSolve2D.read(upperIn, band,
+          (firstRow - 1 - localFirstRow) * nCols, nCols, buffer);
+      buffer = DistributedSolve2D.write(upperOut, band,
+          (firstRow - localFirstRow) * nCols, nCols, buffer);
+      upperOut.flush();
+    }
+    if (lowerOut != null) {
+      buffer = DistributedSolve2D.write(lowerOut, band,
+          (endRow - 1 - localFirstRow) * nCols, nCols, buffer);
+      lowerOut.flush();
+      buffer = DistributedSolve2D.read(lowerIn, band,
+          (endRow - localFirstRow) * nCols, nCols, buffer);
+    }
+  }
+
+  /**
+   * Takes one time step on the rows of the band, as {@link Solve2D} does
+   * on the whole grid.
+   */
+  private void step(double dx, double dy, double alpha, double timeStep) {
+    int computeFirst = Math.max(firstRow, 1);
+    int computeEnd = Math.min(endRow, nRows - 1);
+    if (computeFirst < computeEnd) {
+      Solve2D.solveBlock(band, nextBand, nCols,
+          computeFirst - localFirstRow, computeEnd - localFirstRow, 1,
+          nCols - 1, dx, dy, alpha, timeStep);
+    }
+
+    // Hold the edges of the plate at zero.
+    for (int i = firstRow; i < endRow; i++) {
+      int row = (i - localFirstRow) * nCols;
+      nextBand[row] = 0.0;
+      nextBand[row + nCols - 1] = 0.0;
+      if (i == 0 || i == nRows - 1) {
+        for (int j = 0; j < nCols; j++) {
+          nextBand[row + j] = 0.0;
+        }
+      }
+    }
+
+    double[] swap = band;
+    band = nextBand;
+    nextBand = swap;
+  }
+
+  /**
+   * Runs a worker.
+   *
+   * @param args the coordinator's port and the worker's rank
+   * @throws IOException if a connection fails
+   */
+  public static void main(String[] args) throws IOException {
+    HeatWorker worker = new HeatWorker(Integer.parseInt(args[0]),
+        Integer.parseInt(args[1]));
+    worker.run();
+  }
+}
@@ -0,0 +1,202 @@
+package edu.colorado.csdms.heat;
+
+/**
+ * An implicit solver for the 2D heat equation on a uniform grid, stable for
+ * any time step.
+ * <p>
+ * The solver uses the same spatial operator as {@link Solve2D}, split into
+ * a part along the rows, with weight <code>alpha * dx2 / (dx2 + dy2)</code>
+ * on the west and east neighbors, and a part along the columns, with
+ * weight <code>alpha * dy2 / (dx2 + dy2)</code> on the south and north
+ * neighbors. Each time step is taken as two alternating-direction
+ * implicit (ADI) half-steps, each solving one tridiagonal system per row
+ * or per column with the Thomas algorithm, so a step costs time
+ * proportional to the number of grid points.
+ * <p>
+ * Two schemes are available. Backward Euler, split into a row solve
+ * followed by a column solve, is first-order accurate in time and damps
+ * every mode. Crank-Nicolson, in the Peaceman-Rachford form, is
+ * second-order accurate, but damps the shortest waves only weakly when the
+ * time step is very large. As in {@link Solve2D}, the temperatures on the
+ * edges of the grid are used as given during the step and are zero
+ * afterward.
+ */
+public class ImplicitSolve2D {
+
+  private final boolean crankNicolson;
+  private double[] intermediate = new double[0];
+  private final Thomas rowSystem = new Thomas();
+  private final Thomas columnSystem = new Thomas();
+
+  /**
+   * Makes an implicit solver.
+   *
+   * @param crankNicolson true for Crank-Nicolson, false for backward Euler
+   */
+  public ImplicitSolve2D(boolean crankNicolson) {
+    this.crankNicolson = crankNicolson;
+  }
+
+  /**
+   * Tells which scheme the solver uses.
+   *
+   * @return true for Crank-Nicolson, false for backward Euler
+   */
+  public boolean isCrankNicolson() {
+    return crankNicolson;
+  }
+
+  /**
+   * Solve the 2D heat equation on a uniform grid, writing the result into
+   * a preallocated array.
+   *
+   * @param temperature an array of temperatures stored by rows
+   * @param newTemperature the array to hold the temperatures after
+   *     timeStep; must not be the same array as temperature
+   * @param nRows the number of rows in the grid
+   * @param nCols the number of columns in the grid
+   * @param dx distance between columns in grid
+   * @param dy distance between rows in grid
+   * @param alpha parameter in heat equation
+   * @param timeStep current time step
+   */
+  public void solve(double[] temperature, double[] newTemperature,
+      int nRows, int nCols, double dx, double dy, double alpha,
+      double timeStep) {
+    double dx2 = Math.pow(dx, 2.0);
+    double dy2 = Math.pow(dy, 2.0);
+    double rowWeight = alpha * dx2 / (dx2 + dy2);
+    double columnWeight = alpha * dy2 / (dx2 + dy2);
+
+    // The implicit and explicit parts of each half-step.
+    double implicitFraction = crankNicolson ? 0.5 : 1.0;
+    double rx = implicitFraction * timeStep * rowWeight;
+    double ry = implicitFraction * timeStep * columnWeight;
+    double explicitRx = crankNicolson ? rx : 0.0;
+    double explicitRy = crankNicolson ? ry : 0.0;
+
+    if (nRows >= 3 && nCols >= 3) {
+      if (intermediate.length != temperature.length) {
+        intermediate = new double[temperature.length];
+      }
+      System.arraycopy(temperature, 0, intermediate, 0, temperature.length);
+      solveRows(temperature, intermediate, nRows, nCols, rx, explicitRy);
+      solveColumns(intermediate, newTemperature, nRows, nCols, ry,
+          explicitRx);
+    }
+    Solve2D.setBoundaries(newTemperature, nRows, nCols);
+  }
+
+  /**
+   * Solve <code>(1 - rx Lx) out = (1 + ry Ly) in</code> along each interior
+   * row, where Lx and Ly are second differences along rows and columns.
+   * The edges of out must already hold the edge values.
+   */
+  private void solveRows(double[] in, double[] out, int nRows, int nCols,
+      double rx, double ry) {
+    int n = nCols - 2;
+    rowSystem.prepare(n, rx);
+    double[] inverse = rowSystem.inverse;
+    double[] upper = rowSystem.upper;
+    for (int i = 1; i < nRows - 1; i++) {
+      int row = i * nCols;
+
+      // Forward sweep, with the edge values moved to the right side.
+      double previous = rx * in[row];
+      for (int j = 1; j <= n; j++) {
+        int k = row + j;
+        double rhs = in[k];
+        if (ry != 0.0) {
+          rhs += ry * (in[k - nCols] + in[k + nCols] - 2.0 * in[k]);
+        }
+        if (j == n) {
+          rhs += rx * in[row + nCols - 1];
+        }
+        out[k] = (rhs + previous) * inverse[j - 1];
+        previous = rx * out[k];
+      }
+
+      // Back substitution.
+      for (int j = n - 1; j >= 1; j--) {
+        int k = row + j;
+        out[k] += upper[j - 1] * out[k + 1];
+      }
+    }
+  }
+
+  /**
+   * Solve <code>(1 - ry Ly) out = (1 + rx Lx) in</code> along each interior
+   * column. The columns are swept together, a row at a time, so memory is
+   * read in order.
+   */
+  private void solveColumns(double[] in, double[] out, int nRows, int nCols,
+      double ry, double rx) {
+    int n = nRows - 2;
+    columnSystem.prepare(n, ry);
+    double[] inverse = columnSystem.inverse;
+    double[] upper = columnSystem.upper;
+
+    // Forward sweep, with the edge values moved to the right side.
+    for (int i = 1; i <= n; i++) {
+      int row = i * nCols;
+      double factor = inverse[i - 1];
+      for (int j = 1; j < nCols - 1; j++) {
+        int k = row + j;
+        double rhs = in[k];
+        if (rx != 0.0) {
+          rhs += rx * (in[k - 1] + in[k + 1] - 2.0 * in[k]);
+        }
+        if (i == n) {
+          rhs += ry * in[k + nCols];
+        }
+        double previous = i == 1 ? in[k - nCols] : out[k - nCols];
+        out[k] = (rhs + ry * previous) * factor;
+      }
+    }
+
+    // Back substitution.
+    for (int i = n - 1; i >= 1; i--) {
+      int row = i * nCols;
+      double factor = upper[i - 1];
+      for (int j = 1; j < nCols - 1; j++) {
+        int k = row + j;
+        out[k] += factor * out[k + nCols];
+      }
+    }
+  }
+
+  /**
+   * The factors of the tridiagonal matrix with 1 + 2r on the diagonal and
+   * -r beside it, which is the same for every row or every column, so it
+   * is factored once and kept until the size or r changes.
+   */
+  private static class Thomas {
+
+    int n = -1;
+    double r = Double.NaN;
+    /** The reciprocal of each pivot. */
+    double[] inverse = new double[0];
+    /** r times the reciprocal of each pivot. */
+    double[] upper = new double[0];
+
+    void prepare(int n, double r) {
+      if (n == this.n && r == this.r) {
+        return;
+      }
+      this.n = n;
+      this.r = r;
+      if (inverse.length < n) {
+        inverse = new double[n];
+        upper = new double[n];
+      }
+      double pivot = 1.0 + 2.0 * r;
+      for (int i = 0; i < n; i++) {
+        if (i > 0) {
+          pivot = 1.0 + 2.0 * r - r * upper[i - 1];
+        }
+        inverse[i] = 1.0 / pivot;
+        upper[i] = r * inverse[i];
+      }
+    }
+  }
+}
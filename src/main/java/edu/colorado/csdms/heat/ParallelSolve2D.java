@@ -0,0 +1,150 @@
+package edu.colorado.csdms.heat;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A multithreaded solver for the 2D heat equation on a uniform grid.
+ * <p>
+ * The interior rows of the grid are split into bands that are updated in
+ * parallel on a {@link java.util.concurrent.ForkJoinPool}. Each grid point
+ * is computed exactly as in {@link Solve2D}, so the results are identical
+ * to the serial solver. Grids with fewer interior points than the
+ * sequential cutoff are solved on the calling thread.
+ */
+public class ParallelSolve2D {
+
+  /** Default number of interior grid points below which no tasks are forked. */
+  public static final int DEFAULT_SEQUENTIAL_CUTOFF = 1 << 16;
+
+  private final ForkJoinPool pool;
+  private final int sequentialCutoff;
+
+  /**
+   * Makes a parallel solver that uses all available processors.
+   */
+  public ParallelSolve2D() {
+    this(Runtime.getRuntime().availableProcessors(),
+        DEFAULT_SEQUENTIAL_CUTOFF);
+  }
+
+  /**
+   * Makes a parallel solver.
+   *
+   * @param nThreads the number of worker threads
+   * @param sequentialCutoff the number of grid points in a band below which
+   *     the band is not split further
+   */
+  public ParallelSolve2D(int nThreads, int sequentialCutoff) {
+    if (nThreads < 1) {
+      throw new IllegalArgumentException("nThreads must be positive");
+    }
+    this.pool = new ForkJoinPool(nThreads);
+    this.sequentialCutoff = Math.max(1, sequentialCutoff);
+  }
+
+  /**
+   * Gets the number of worker threads.
+   *
+   * @return the number of worker threads
+   */
+  public int getThreadCount() {
+    return pool.getParallelism();
+  }
+
+  /**
+   * Gets the sequential cutoff.
+   *
+   * @return the number of grid points below which work is not split
+   */
+  public int getSequentialCutoff() {
+    return sequentialCutoff;
+  }
+
+  /**
+   * Solve the 2D heat equation on a uniform grid, writing the result into
+   * a preallocated array.
+   *
+   * @param temperature an array of temperatures stored by rows
+   * @param newTemperature the array to hold the temperatures after
+   *     timeStep; must not be the same array as temperature
+   * @param nRows the number of rows in the grid
+   * @param nCols the number of columns in the grid
+   * @param dx distance between columns in grid
+   * @param dy distance between rows in grid
+   * @param alpha parameter in heat equation
+   * @param timeStep current time step
+   */
+  public void solve(double[] temperature, double[] newTemperature,
+      int nRows, int nCols, double dx, double dy, double alpha,
+      double timeStep) {
+    Band band = new Band(temperature, newTemperature, nCols, 1, nRows - 1,
+        dx, dy, alpha, timeStep);
+    if (band.isSmall()) {
+      band.compute();
+    } else {
+      pool.invoke(band);
+    }
+    Solve2D.setBoundaries(newTemperature, nRows, nCols);
+  }
+
+  /**
+   * Stops the worker threads. The solver can't be used afterward.
+   */
+  public void shutdown() {
+    pool.shutdown();
+  }
+
+  /**
+   * A band of interior rows, split in half until it's below the
+   * sequential cutoff.
+   */
+  private class Band extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final double[] temperature;
+    private final double[] newTemperature;
+    private final int nCols;
+    private final int firstRow;
+    private final int endRow;
+    private final double dx;
+    private final double dy;
+    private final double alpha;
+    private final double timeStep;
+
+    Band(double[] temperature, double[] newTemperature, int nCols,
+        int firstRow, int endRow, double dx, double dy, double alpha,
+        double timeStep) {
+      this.temperature = temperature;
+      this.newTemperature = newTemperature;
+      this.nCols = nCols;
+      this.firstRow = firstRow;
+      this.endRow = endRow;
+      this.dx = dx;
+      this.dy = dy;
+      this.alpha = alpha;
+      this.timeStep = timeStep;
+    }
+
+    boolean isSmall() {
+      int nBandRows = endRow - firstRow;
+      return nBandRows < 2 || (long) nBandRows * nCols <= sequentialCutoff;
+    }
+
+    @Override
+    protected void compute() {
+      if (isSmall()) {
+        Solve2D.solveRows(temperature, newTemperature, nCols, firstRow,
+            endRow, dx, dy, alpha, timeStep);
+      } else {
+        int middleRow = (firstRow + endRow) >>> 1;
+        invokeAll(
+            new Band(temperature, newTemperature, nCols, firstRow,
+                middleRow, dx, dy, alpha, timeStep),
+            new Band(temperature, newTemperature, nCols, middleRow,
+                endRow, dx, dy, alpha, timeStep));
+      }
+    }
+  }
+}
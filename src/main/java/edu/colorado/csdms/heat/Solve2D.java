@@ -4,12 +4,204 @@ import java.util.List;
 
 /**
  * A solver for the 2D heat equation on a uniform grid.
+ * <p>
+ * Temperatures are stored by rows in a single array, so the value at
+ * (row, column) is at index <code>row * nCols + column</code>.
  *
  * @author mpiper
  * @version $Id: $Id
  */
 public class Solve2D {
 
+  /**
+   * The name of the system property that, when set to "false", turns off
+   * the vectorized kernel.
+   */
+  public static final String VECTOR_PROPERTY = "edu.colorado.csdms.heat.vector";
+
+  private static final StencilKernel VECTOR_KERNEL = loadVectorKernel(
+      StencilKernel.class, "jdk.incubator.vector.DoubleVector",
+      "edu.colorado.csdms.heat.VectorSolve2D");
+
+  /**
+   * Loads a kernel that uses the Java Vector API, unless the system
+   * property {@value #VECTOR_PROPERTY} is "false". It's only available on
+   * JDK 17 or later, when the jdk.incubator.vector module has been added
+   * to the JVM with <code>--add-modules jdk.incubator.vector</code>.
+   *
+   * @param type the interface the kernel implements
+   * @param vectorClass a Vector API class the kernel needs
+   * @param kernelClass the name of the kernel class
+   * @return the vectorized kernel, or null if it can't be used
+   */
+  static <T> T loadVectorKernel(Class<T> type, String vectorClass,
+      String kernelClass) {
+    if ("false".equalsIgnoreCase(System.getProperty(VECTOR_PROPERTY))) {
+      return null;
+    }
+    try {
+      Class.forName(vectorClass);
+      return type.cast(Class.forName(kernelClass).getDeclaredConstructor()
+          .newInstance());
+    } catch (Exception | LinkageError e) {
+      return null;
+    }
+  }
+
+  /**
+   * Tells whether the stencil is computed with the Java Vector API.
+   * <p>
+   * The vectorized kernel performs the same IEEE 754 operations, in the
+   * same order, as the scalar kernel, and does not fuse multiplies and
+   * adds, so its results are identical to the scalar results (a
+   * tolerance of 0 ULP).
+   *
+   * @return true if the vectorized kernel is in use
+   */
+  public static boolean isVectorized() {
+    return VECTOR_KERNEL != null;
+  }
+
+  /**
+   * Solve the 2D heat equation on a uniform grid.
+   *
+   * @param temperature an array of temperatures stored by rows
+   * @param nRows the number of rows in the grid
+   * @param nCols the number of columns in the grid
+   * @param dx distance between columns in grid
+   * @param dy distance between rows in grid
+   * @param alpha parameter in heat equation
+   * @param timeStep current time step
+   * @return the temperatures after timeStep
+   */
+  public static double[] solve(double[] temperature, int nRows, int nCols,
+      double dx, double dy, double alpha, double timeStep) {
+    double[] newTemperature = new double[nRows * nCols];
+    solve(temperature, newTemperature, nRows, nCols, dx, dy, alpha,
+        timeStep);
+    return newTemperature;
+  }
+
+  /**
+   * Solve the 2D heat equation on a uniform grid, writing the result into
+   * a preallocated array.
+   *
+   * @param temperature an array of temperatures stored by rows
+   * @param newTemperature the array to hold the temperatures after
+   *     timeStep; must not be the same array as temperature
+   * @param nRows the number of rows in the grid
+   * @param nCols the number of columns in the grid
+   * @param dx distance between columns in grid
+   * @param dy distance between rows in grid
+   * @param alpha parameter in heat equation
+   * @param timeStep current time step
+   */
+  public static void solve(double[] temperature, double[] newTemperature,
+      int nRows, int nCols, double dx, double dy, double alpha,
+      double timeStep) {
+
+    solveRows(temperature, newTemperature, nCols, 1, nRows - 1, dx, dy,
+        alpha, timeStep);
+    setBoundaries(newTemperature, nRows, nCols);
+  }
+
+  /**
+   * Calculate new temperatures for a band of interior rows. The edges of
+   * the grid are not touched.
+   *
+   * @param temperature an array of temperatures stored by rows
+   * @param newTemperature the array to hold the new temperatures
+   * @param nCols the number of columns in the grid
+   * @param firstRow the first row to update; at least 1
+   * @param endRow one past the last row to update; at most nRows - 1
+   * @param dx distance between columns in grid
+   * @param dy distance between rows in grid
+   * @param alpha parameter in heat equation
+   * @param timeStep current time step
+   */
+  static void solveRows(double[] temperature, double[] newTemperature,
+      int nCols, int firstRow, int endRow, double dx, double dy,
+      double alpha, double timeStep) {
+    solveBlock(temperature, newTemperature, nCols, firstRow, endRow, 1,
+        nCols - 1, dx, dy, alpha, timeStep);
+  }
+
+  /**
+   * Calculate new temperatures for a rectangular block of points. Every
+   * point in the block must have neighbors on all four sides.
+   *
+   * @param temperature an array of temperatures stored by rows
+   * @param newTemperature the array to hold the new temperatures
+   * @param nCols the number of columns in the arrays
+   * @param firstRow the first row to update; at least 1
+   * @param endRow one past the last row to update
+   * @param firstCol the first column to update; at least 1
+   * @param endCol one past the last column to update; at most nCols - 1
+   * @param dx distance between columns in grid
+   * @param dy distance between rows in grid
+   * @param alpha parameter in heat equation
+   * @param timeStep current time step
+   */
+  static void solveBlock(double[] temperature, double[] newTemperature,
+      int nCols, int firstRow, int endRow, int firstCol, int endCol,
+      double dx, double dy, double alpha, double timeStep) {
+    if (VECTOR_KERNEL != null) {
+      VECTOR_KERNEL.solveBlock(temperature, newTemperature, nCols, firstRow,
+          endRow, firstCol, endCol, dx, dy, alpha, timeStep);
+    } else {
+      solveBlockScalar(temperature, newTemperature, nCols, firstRow, endRow,
+          firstCol, endCol, dx, dy, alpha, timeStep);
+    }
+  }
+
+  /**
+   * Calculate new temperatures for a rectangular block of points, one
+   * point at a time. The arguments are the same as for
+   * {@link #solveBlock(double[], double[], int, int, int, int, int, double,
+   * double, double, double)}.
+   */
+  static void solveBlockScalar(double[] temperature,
+      double[] newTemperature, int nCols, int firstRow, int endRow,
+      int firstCol, int endCol, double dx, double dy, double alpha,
+      double timeStep) {
+
+    double dx2 = Math.pow(dx, 2.0);
+    double dy2 = Math.pow(dy, 2.0);
+    double c = alpha * timeStep / (dx2 + dy2);
+
+    for (int i = firstRow; i < endRow; i++) {
+      int row = i * nCols;
+      for (int j = firstCol; j < endCol; j++) {
+        int k = row + j;
+        double rowOp = dx2 * (temperature[k - 1] + temperature[k + 1]);
+        double colOp =
+            dy2 * (temperature[k - nCols] + temperature[k + nCols]);
+        newTemperature[k] =
+            c * (rowOp + colOp - 2.0 * (dx2 + dy2) * temperature[k])
+            + temperature[k];
+      }
+    }
+  }
+
+  /**
+   * Set the temperature on the edges of the grid to zero.
+   *
+   * @param temperature an array of temperatures stored by rows
+   * @param nRows the number of rows in the grid
+   * @param nCols the number of columns in the grid
+   */
+  static void setBoundaries(double[] temperature, int nRows, int nCols) {
+    int topRowStart = (nRows - 1) * nCols;
+    for (int j = 0; j < nCols; j++) {
+      temperature[j] = 0.0;
+      temperature[topRowStart + j] = 0.0;
+    }
+    for (int i = 0; i < nRows; i++) {
+      temperature[i * nCols] = 0.0;
+      temperature[i * nCols + nCols - 1] = 0.0;
+    }
+  }
+
   /**
    * Solve the 2D heat equation on a uniform grid.
    *
@@ -19,42 +211,27 @@ public class Solve2D {
    * @param alpha parameter in heat equation
    * @param timeStep current time step
    * @return the temperatures after timeStep
+   * @deprecated Use {@link #solve(double[], int, int, double, double,
+   *     double, double)}, which works on a field stored by rows.
    */
+  @Deprecated
   public static double[][] solve(double[][] temperature, List<Integer> shape,
       List<Double> spacing, Double alpha, Double timeStep) {
 
-    Integer topRowIndex = shape.get(0) - 1;
-    Integer topColIndex = shape.get(1) - 1;
-    Double dx2 = Math.pow(spacing.get(1), 2.0);
-    Double dy2 = Math.pow(spacing.get(0), 2.0);
-    Double c = alpha * timeStep / (dx2 + dy2);
-    double[][] newTemperature = new double[shape.get(0)][shape.get(1)];
-    
-    for (int i = 1; i < topRowIndex; i++) {
-      for (int j = 1; j < topColIndex; j++) {
-        Double rowOp = dx2 * (temperature[i][j - 1] + temperature[i][j + 1]);
-        Double colOp = dy2 * (temperature[i - 1][j] + temperature[i + 1][j]);
-        newTemperature[i][j] =
-            c * (rowOp + colOp - 2.0 * (dx2 + dy2) * temperature[i][j]);
-      }
-    }
-
-    for (int j = 0; j < shape.get(1); j++) {
-      newTemperature[0][j] = 0.0;
-      newTemperature[topRowIndex][j] = 0.0;
+    int nRows = shape.get(0);
+    int nCols = shape.get(1);
+    double[] field = new double[nRows * nCols];
+    for (int i = 0; i < nRows; i++) {
+      System.arraycopy(temperature[i], 0, field, i * nCols, nCols);
     }
 
-    for (int i = 0; i < shape.get(0); i++) {
-      newTemperature[i][0] = 0.0;
-      newTemperature[i][topColIndex] = 0.0;
-    }
+    field = solve(field, nRows, nCols, spacing.get(1), spacing.get(0),
+        alpha, timeStep);
 
-    for (int i = 1; i < topRowIndex; i++) {
-      for (int j = 1; j < topColIndex; j++) {
-        newTemperature[i][j] += temperature[i][j];
-      }
+    double[][] newTemperature = new double[nRows][nCols];
+    for (int i = 0; i < nRows; i++) {
+      System.arraycopy(field, i * nCols, newTemperature[i], 0, nCols);
     }
-    
     return newTemperature;
   }
 }
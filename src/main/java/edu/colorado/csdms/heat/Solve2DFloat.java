@@ -0,0 +1,235 @@
+package edu.colorado.csdms.heat;
+
+/**
+ * A solver for the 2D heat equation on a uniform grid whose temperatures
+ * are stored as float, half the bytes of {@link Solve2D}.
+ * <p>
+ * The stencil is the same as in {@link Solve2D}. {@link #solve} computes
+ * it in float arithmetic; {@link #solveMixed} reads the floats into double
+ * arithmetic and rounds each new temperature to float once, so the error
+ * added per step is only that of float storage. Temperatures are stored
+ * by rows in a single array, so the value at (row, column) is at index
+ * <code>row * nCols + column</code>.
+ * <p>
+ * New temperatures smaller in magnitude than {@link Float#MIN_NORMAL},
+ * about 1.2e-38, are set to zero. The tail of a diffusing impulse falls
+ * below it after a few dozen grid points, and arithmetic on subnormal
+ * floats is many times slower than on normal ones.
+ * <p>
+ * Like {@link Solve2D}, the float stencil uses the Java Vector API when
+ * it's available, with results identical to the scalar kernel.
+ */
+public class Solve2DFloat {
+
+  private static final FloatStencilKernel VECTOR_KERNEL =
+      Solve2D.loadVectorKernel(FloatStencilKernel.class,
+          "jdk.incubator.vector.FloatVector",
+          "edu.colorado.csdms.heat.VectorSolve2DFloat");
+
+  /**
+   * Tells whether the float stencil is computed with the Java Vector API.
+   *
+   * @return true if the vectorized kernel is in use
+   */
+  public static boolean isVectorized() {
+    return VECTOR_KERNEL != null;
+  }
+
+  /**
+   * Solve the 2D heat equation on a uniform grid in float arithmetic,
+   * writing the result into a preallocated array.
+   *
+   * @param temperature an array of temperatures stored by rows
+   * @param newTemperature the array to hold the temperatures after
+   *     timeStep; must not be the same array as temperature
+   * @param nRows the number of rows in the grid
+   * @param nCols the number of columns in the grid
+   * @param dx distance between columns in grid
+   * @param dy distance between rows in grid
+   * @param alpha parameter in heat equation
+   * @param timeStep current time step
+   */
+  public static void solve(float[] temperature, float[] newTemperature,
+      int nRows, int nCols, double dx, double dy, double alpha,
+      double timeStep) {
+
+    solveBlock(temperature, newTemperature, nCols, 1, nRows - 1, 1,
+        nCols - 1, dx, dy, alpha, timeStep);
+    setBoundaries(newTemperature, nRows, nCols);
+  }
+
+  /**
+   * Calculate new temperatures for a rectangular block of points in float
+   * arithmetic. Every point in the block must have neighbors on all four
+   * sides.
+   *
+   * @param temperature an array of temperatures stored by rows
+   * @param newTemperature the array to hold the new temperatures
+   * @param nCols the number of columns in the arrays
+   * @param firstRow the first row to update; at least 1
+   * @param endRow one past the last row to update
+   * @param firstCol the first column to update; at least 1
+   * @param endCol one past the last column to update; at most nCols - 1
+   * @param dx distance between columns in grid
+   * @param dy distance between rows in grid
+   * @param alpha parameter in heat equation
+   * @param timeStep current time step
+   */
+  static void solveBlock(float[] temperature, float[] newTemperature,
+      int nCols, int firstRow, int endRow, int firstCol, int endCol,
+      double dx, double dy, double alpha, double timeStep) {
+    if (VECTOR_KERNEL != null) {
+      VECTOR_KERNEL.solveBlock(temperature, newTemperature, nCols, firstRow,
+          endRow, firstCol, endCol, dx, dy, alpha, timeStep);
+    } else {
+      solveBlockScalar(temperature, newTemperature, nCols, firstRow, endRow,
+          firstCol, endCol, dx, dy, alpha, timeStep);
+    }
+  }
+
+  /**
+   * Calculate new temperatures for a rectangular block of points in float
+   * arithmetic, one point at a time. The arguments are the same as for
+   * {@link #solveBlock(float[], float[], int, int, int, int, int, double,
+   * double, double, double)}.
+   */
+  static void solveBlockScalar(float[] temperature, float[] newTemperature,
+      int nCols, int firstRow, int endRow, int firstCol, int endCol,
+      double dx, double dy, double alpha, double timeStep) {
+
+    double dx2 = Math.pow(dx, 2.0);
+    double dy2 = Math.pow(dy, 2.0);
+    float fdx2 = (float) dx2;
+    float fdy2 = (float) dy2;
+    float c = (float) (alpha * timeStep / (dx2 + dy2));
+    float center = (float) (2.0 * (dx2 + dy2));
+
+    for (int i = firstRow; i < endRow; i++) {
+      int row = i * nCols;
+      for (int j = firstCol; j < endCol; j++) {
+        int k = row + j;
+        float rowOp = fdx2 * (temperature[k - 1] + temperature[k + 1]);
+        float colOp =
+            fdy2 * (temperature[k - nCols] + temperature[k + nCols]);
+        float value =
+            c * (rowOp + colOp - center * temperature[k]) + temperature[k];
+        newTemperature[k] = Math.abs(value) < Float.MIN_NORMAL ? 0.0f : value;
+      }
+    }
+  }
+
+  /**
+   * Solve the 2D heat equation on a uniform grid in double arithmetic,
+   * writing the result, rounded to float, into a preallocated array. The
+   * arguments are the same as for {@link #solve}.
+   *
+   * @param temperature an array of temperatures stored by rows
+   * @param newTemperature the array to hold the temperatures after
+   *     timeStep; must not be the same array as temperature
+   * @param nRows the number of rows in the grid
+   * @param nCols the number of columns in the grid
+   * @param dx distance between columns in grid
+   * @param dy distance between rows in grid
+   * @param alpha parameter in heat equation
+   * @param timeStep current time step
+   */
+  public static void solveMixed(float[] temperature, float[] newTemperature,
+      int nRows, int nCols, double dx, double dy, double alpha,
+      double timeStep) {
+    solveMixed(temperature, newTemperature, nRows, nCols, dx, dy, alpha,
+        timeStep, new double[3 * nCols]);
+  }
+
+  /**
+   * Solve the 2D heat equation in double arithmetic, using a scratch array
+   * to hold three rows widened to double, so that each temperature is
+   * widened once rather than once for each point whose stencil reads it.
+   *
+   * @param rows a scratch array with at least 3 * nCols elements
+   */
+  static void solveMixed(float[] temperature, float[] newTemperature,
+      int nRows, int nCols, double dx, double dy, double alpha,
+      double timeStep, double[] rows) {
+
+    double dx2 = Math.pow(dx, 2.0);
+    double dy2 = Math.pow(dy, 2.0);
+    double c = alpha * timeStep / (dx2 + dy2);
+
+    int above = 0;
+    int here = nCols;
+    int below = 2 * nCols;
+    widenRow(temperature, 0, rows, above, nCols);
+    widenRow(temperature, nCols, rows, here, nCols);
+    for (int i = 1; i < nRows - 1; i++) {
+      widenRow(temperature, (i + 1) * nCols, rows, below, nCols);
+      int row = i * nCols;
+      for (int j = 1; j < nCols - 1; j++) {
+        double value = rows[here + j];
+        double rowOp = dx2 * (rows[here + j - 1] + rows[here + j + 1]);
+        double colOp = dy2 * (rows[above + j] + rows[below + j]);
+        double newValue =
+            c * (rowOp + colOp - 2.0 * (dx2 + dy2) * value) + value;
+        newTemperature[row + j] =
+            Math.abs(newValue) < Float.MIN_NORMAL ? 0.0f : (float) newValue;
+      }
+      int swap = above;
+      above = here;
+      here = below;
+      below = swap;
+    }
+    setBoundaries(newTemperature, nRows, nCols);
+  }
+
+  /**
+   * Widens one row of a float array into a double array.
+   */
+  private static void widenRow(float[] src, int srcStart, double[] dest,
+      int destStart, int length) {
+    for (int j = 0; j < length; j++) {
+      dest[destStart + j] = src[srcStart + j];
+    }
+  }
+
+  /**
+   * Set the temperature on the edges of the grid to zero.
+   *
+   * @param temperature an array of temperatures stored by rows
+   * @param nRows the number of rows in the grid
+   * @param nCols the number of columns in the grid
+   */
+  static void setBoundaries(float[] temperature, int nRows, int nCols) {
+    int topRowStart = (nRows - 1) * nCols;
+    for (int j = 0; j < nCols; j++) {
+      temperature[j] = 0.0f;
+      temperature[topRowStart + j] = 0.0f;
+    }
+    for (int i = 0; i < nRows; i++) {
+      temperature[i * nCols] = 0.0f;
+      temperature[i * nCols + nCols - 1] = 0.0f;
+    }
+  }
+
+  /**
+   * Rounds an array of double to float.
+   *
+   * @param src the array to read from
+   * @param dest the array to write to, at least as long as src
+   */
+  static void narrow(double[] src, float[] dest) {
+    for (int k = 0; k < src.length; k++) {
+      dest[k] = (float) src[k];
+    }
+  }
+
+  /**
+   * Widens an array of float to double, exactly.
+   *
+   * @param src the array to read from
+   * @param dest the array to write to, at least as long as src
+   */
+  static void widen(float[] src, double[] dest) {
+    for (int k = 0; k < src.length; k++) {
+      dest[k] = src[k];
+    }
+  }
+}
@@ -0,0 +1,176 @@
+package edu.colorado.csdms.heat;
+
+/**
+ * A solver for the steady state of the 2D heat equation on a uniform grid.
+ * <p>
+ * The steady state is the field that {@link Solve2D} leaves unchanged: at
+ * each interior point, <code>dx2 * (west + east) + dy2 * (south + north)
+ * - 2 * (dx2 + dy2) * t = 0</code>. The temperatures on the edges of the
+ * grid are held at their current values, which are zero after any time
+ * step. The system is solved in place by successive over-relaxation with
+ * red-black ordering: the points where row + column is even are updated,
+ * then the points where it's odd, each from its neighbors' newest values.
+ * The relaxation factor is chosen from the grid size, which makes the
+ * number of iterations grow with the width of the grid rather than with
+ * its square, as the number of time steps does.
+ * <p>
+ * Iterations stop when the root-mean-square residual falls below the
+ * tolerance times its value before the first iteration. The residual at a
+ * point is the change that a Gauss-Seidel update would make there,
+ * measured as the point is updated.
+ */
+public class SteadyState2D {
+
+  /** Default relative tolerance on the residual. */
+  public static final double DEFAULT_TOLERANCE = 1e-10;
+
+  /** Default largest number of iterations. */
+  public static final int DEFAULT_MAX_ITERATIONS = 100000;
+
+  private final double tolerance;
+  private final int maxIterations;
+  private double residual;
+  private int iterationCount;
+  private boolean converged;
+
+  /**
+   * Makes a solver with the default tolerance and largest number of
+   * iterations.
+   */
+  public SteadyState2D() {
+    this(DEFAULT_TOLERANCE, DEFAULT_MAX_ITERATIONS);
+  }
+
+  /**
+   * Makes a solver.
+   *
+   * @param tolerance the relative tolerance on the residual
+   * @param maxIterations the largest number of iterations
+   */
+  public SteadyState2D(double tolerance, int maxIterations) {
+    if (!(tolerance >= 0.0) || maxIterations < 1) {
+      throw new IllegalArgumentException(
+          "tolerance must not be negative and maxIterations must be"
+          + " positive");
+    }
+    this.tolerance = tolerance;
+    this.maxIterations = maxIterations;
+  }
+
+  /**
+   * Replace a field with the steady state, keeping the values on the edges
+   * of the grid.
+   *
+   * @param temperature an array of temperatures stored by rows; the
+   *     starting guess, and the steady state on return
+   * @param nRows the number of rows in the grid
+   * @param nCols the number of columns in the grid
+   * @param dx distance between columns in grid
+   * @param dy distance between rows in grid
+   * @return the number of iterations taken
+   */
+  public int solve(double[] temperature, int nRows, int nCols, double dx,
+      double dy) {
+    double dx2 = Math.pow(dx, 2.0);
+    double dy2 = Math.pow(dy, 2.0);
+    double omega = getRelaxationFactor(nRows, nCols, dx, dy);
+
+    iterationCount = 0;
+    residual = 0.0;
+    converged = true;
+    if (nRows < 3 || nCols < 3) {
+      return 0;
+    }
+    double nInterior = (double) (nRows - 2) * (nCols - 2);
+    double initialResidual = Math.sqrt(
+        sweep(temperature, nRows, nCols, dx2, dy2, 0.0, 0)
+        + sweep(temperature, nRows, nCols, dx2, dy2, 0.0, 1));
+    residual = initialResidual / Math.sqrt(nInterior);
+    double target = tolerance * initialResidual;
+
+    converged = initialResidual == 0.0;
+    while (!converged && iterationCount < maxIterations) {
+      double sumOfSquares =
+          sweep(temperature, nRows, nCols, dx2, dy2, omega, 0)
+          + sweep(temperature, nRows, nCols, dx2, dy2, omega, 1);
+      iterationCount++;
+      residual = Math.sqrt(sumOfSquares / nInterior);
+      converged = Math.sqrt(sumOfSquares) <= target;
+    }
+    return iterationCount;
+  }
+
+  /**
+   * Gets the number of iterations taken by the last solve.
+   *
+   * @return the number of iterations
+   */
+  public int getIterationCount() {
+    return iterationCount;
+  }
+
+  /**
+   * Gets the root-mean-square residual at the end of the last solve.
+   *
+   * @return the residual, in units of temperature
+   */
+  public double getResidual() {
+    return residual;
+  }
+
+  /**
+   * Tells whether the last solve met the tolerance before reaching the
+   * largest number of iterations.
+   *
+   * @return true if the solve converged
+   */
+  public boolean isConverged() {
+    return converged;
+  }
+
+  /**
+   * Gets the relaxation factor that gives the fastest convergence for a
+   * grid, from the spectral radius of the Jacobi iteration.
+   *
+   * @param nRows the number of rows in the grid
+   * @param nCols the number of columns in the grid
+   * @param dx distance between columns in grid
+   * @param dy distance between rows in grid
+   * @return the relaxation factor, between 1 and 2
+   */
+  public static double getRelaxationFactor(int nRows, int nCols, double dx,
+      double dy) {
+    double dx2 = Math.pow(dx, 2.0);
+    double dy2 = Math.pow(dy, 2.0);
+    double rho = (dx2 * Math.cos(Math.PI / Math.max(1, nCols - 1))
+        + dy2 * Math.cos(Math.PI / Math.max(1, nRows - 1))) / (dx2 + dy2);
+    return 2.0 / (1.0 + Math.sqrt(1.0 - rho * rho));
+  }
+
+  /**
+   * Update the interior points of one color.
+   *
+   * @param omega the relaxation factor, or 0 to measure the residual
+   *     without changing the field
+   * @param color 0 for points where row + column is even, 1 for odd
+   * @return the sum of the squared residuals of the points
+   */
+  private static double sweep(double[] temperature, int nRows, int nCols,
+      double dx2, double dy2, double omega, int color) {
+    double weight = 1.0 / (2.0 * (dx2 + dy2));
+    double sumOfSquares = 0.0;
+    for (int i = 1; i < nRows - 1; i++) {
+      int row = i * nCols;
+      for (int j = 1 + ((i + 1 + color) & 1); j < nCols - 1; j += 2) {
+        int k = row + j;
+        double rowOp = dx2 * (temperature[k - 1] + temperature[k + 1]);
+        double colOp =
+            dy2 * (temperature[k - nCols] + temperature[k + nCols]);
+        double change = (rowOp + colOp) * weight - temperature[k];
+        temperature[k] += omega * change;
+        sumOfSquares += change * change;
+      }
+    }
+    return sumOfSquares;
+  }
+}
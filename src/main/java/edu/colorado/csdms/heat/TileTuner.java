@@ -0,0 +1,254 @@
+package edu.colorado.csdms.heat;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Chooses the tile shape of a {@link TiledSolve2D} for a grid size by
+ * timing a few candidates, and remembers the choice in a file.
+ * <p>
+ * The calibration times single steps with each candidate shape, and with
+ * whole-row sweeps, on a band of rows as wide as the grid, taking the
+ * fastest of several runs. A tile shape is chosen only if it beats
+ * whole-row sweeps by at least {@value #MIN_SPEEDUP_PERCENT}%; otherwise
+ * the grid is left untiled. Grids with rows shorter than
+ * {@value #MIN_TUNED_COLUMNS} columns are never tiled, since three of
+ * their rows fit in the smallest cache.
+ * <p>
+ * Choices are kept in a properties file, one per grid size, so each size
+ * is calibrated once per machine. The file is given by the system property
+ * {@value #CACHE_PROPERTY}, and is <code>.csdms/heat-tiles.properties</code>
+ * in the user's home directory by default. If the file can't be read or
+ * written, the tuner calibrates each time.
+ */
+public class TileTuner {
+
+  /**
+   * The name of the system property that, when set to "false", turns off
+   * tuning at initialization, so grids are swept by whole rows.
+   */
+  public static final String TILING_PROPERTY =
+      "edu.colorado.csdms.heat.tiling";
+
+  /** The name of the system property that gives the cache file. */
+  public static final String CACHE_PROPERTY =
+      "edu.colorado.csdms.heat.tileCache";
+
+  /** The shortest rows for which tiling is tried. */
+  public static final int MIN_TUNED_COLUMNS = 1024;
+
+  /** How much faster than whole-row sweeps a tile shape must be. */
+  public static final int MIN_SPEEDUP_PERCENT = 5;
+
+  private static final int[] CANDIDATE_ROWS = {8, 32, 128};
+  private static final int[] CANDIDATE_COLS = {256, 1024, 4096};
+
+  /** The number of values in the calibration band, about 16 MB. */
+  private static final int CALIBRATION_SIZE = 1 << 21;
+
+  private static final int CALIBRATION_ROUNDS = 5;
+
+  private static final String UNTILED = "none";
+
+  private final File cacheFile;
+
+  /**
+   * Makes a tuner that uses the default cache file.
+   */
+  public TileTuner() {
+    this(getDefaultCacheFile());
+  }
+
+  /**
+   * Makes a tuner.
+   *
+   * @param cacheFile the file that holds tile shapes, or null to calibrate
+   *     each time
+   */
+  public TileTuner(File cacheFile) {
+    this.cacheFile = cacheFile;
+  }
+
+  /**
+   * Gets the file given by {@value #CACHE_PROPERTY}, or the default.
+   *
+   * @return the cache file
+   */
+  public static File getDefaultCacheFile() {
+    String fileName = System.getProperty(CACHE_PROPERTY);
+    if (fileName != null) {
+      return new File(fileName);
+    }
+    return new File(new File(System.getProperty("user.home"), ".csdms"),
+        "heat-tiles.properties");
+  }
+
+  /**
+   * Tells whether tuning at initialization is turned on, as it is unless
+   * the system property {@value #TILING_PROPERTY} is "false".
+   *
+   * @return true if models are tuned when initialized
+   */
+  public static boolean isEnabled() {
+    return !"false".equalsIgnoreCase(System.getProperty(TILING_PROPERTY));
+  }
+
+  /**
+   * Gets the cache file.
+   *
+   * @return the cache file, or null if there is none
+   */
+  public File getCacheFile() {
+    return cacheFile;
+  }
+
+  /**
+   * Gets the best tile shape for a grid, from the cache file if it's
+   * there, or by calibrating and saving the result if not.
+   *
+   * @param nRows the number of rows in the grid
+   * @param nCols the number of columns in the grid
+   * @return a solver with the best tile shape, or null if whole-row sweeps
+   *     are as fast
+   */
+  public TiledSolve2D tune(int nRows, int nCols) {
+    if (nCols < MIN_TUNED_COLUMNS || nRows < 3) {
+      return null;
+    }
+    String key = key(nRows, nCols);
+    Properties cache = load();
+    String shape = cache.getProperty(key);
+    if (UNTILED.equals(shape)) {
+      return null;
+    }
+    TiledSolve2D solver = shape == null ? null : parse(shape);
+    if (solver == null) {
+      solver = calibrate(nRows, nCols);
+      cache.setProperty(key, solver == null ? UNTILED : solver.toString());
+      save(cache);
+    }
+    return solver;
+  }
+
+  /**
+   * Times each candidate shape on a band of the grid.
+   *
+   * @param nRows the number of rows in the grid
+   * @param nCols the number of columns in the grid
+   * @return a solver with the fastest shape, or null for whole-row sweeps
+   */
+  TiledSolve2D calibrate(int nRows, int nCols) {
+    int bandRows = Math.max(3, Math.min(nRows, CALIBRATION_SIZE / nCols));
+    double[] field = new double[bandRows * nCols];
+    double[] newField = new double[field.length];
+    Arrays.fill(field, 1.0);
+
+    int nCandidates = 0;
+    TiledSolve2D[] candidates =
+        new TiledSolve2D[CANDIDATE_ROWS.length * CANDIDATE_COLS.length + 1];
+    candidates[nCandidates++] = null;
+    for (int tileRows : CANDIDATE_ROWS) {
+      for (int tileCols : CANDIDATE_COLS) {
+        if (tileRows < bandRows - 2 && tileCols < nCols - 2) {
+          candidates[nCandidates++] = new TiledSolve2D(tileRows, tileCols);
+        }
+      }
+    }
+
+    // The first round warms up the compiler and isn't counted.
+    long[] fastest = new long[nCandidates];
+    Arrays.fill(fastest, Long.MAX_VALUE);
+    for (int round = 0; round <= CALIBRATION_ROUNDS; round++) {
+      for (int i = 0; i < nCandidates; i++) {
+        long start = System.nanoTime();
+        if (candidates[i] == null) {
+          Solve2D.solve(field, newField, bandRows, nCols, 1.0, 1.0, 1.0,
+              0.25);
+        } else {
+          candidates[i].solve(field, newField, bandRows, nCols, 1.0, 1.0,
+              1.0, 0.25);
+        }
+        long elapsed = System.nanoTime() - start;
+        if (round > 0) {
+          fastest[i] = Math.min(fastest[i], elapsed);
+        }
+      }
+    }
+
+    int best = 0;
+    for (int i = 1; i < nCandidates; i++) {
+      if (fastest[i] < fastest[best]) {
+        best = i;
+      }
+    }
+    if (fastest[best] * (100 + MIN_SPEEDUP_PERCENT) > fastest[0] * 100) {
+      return null;
+    }
+    return candidates[best];
+  }
+
+  private static String key(int nRows, int nCols) {
+    return nRows + "x" + nCols + (Solve2D.isVectorized() ? ".vector" : "");
+  }
+
+  private static TiledSolve2D parse(String shape) {
+    String[] sizes = shape.split(",");
+    try {
+      if (sizes.length == 2) {
+        return new TiledSolve2D(Integer.parseInt(sizes[0].trim()),
+            Integer.parseInt(sizes[1].trim()));
+      }
+    } catch (IllegalArgumentException e) {
+      // Not a valid shape; calibrate again.
+    }
+    return null;
+  }
+
+  private Properties load() {
+    Properties cache = new Properties();
+    if (cacheFile != null && cacheFile.isFile()) {
+      try (InputStream in = new FileInputStream(cacheFile)) {
+        cache.load(in);
+      } catch (IOException | IllegalArgumentException e) {
+        return new Properties();
+      }
+    }
+    return cache;
+  }
+
+  /**
+   * Writes the cache to a temporary file and moves it into place, so that
+   * other processes never read a partly written file.
+   */
+  private void save(Properties cache) {
+    if (cacheFile == null) {
+      return;
+    }
+    File directory = cacheFile.getAbsoluteFile().getParentFile();
+    File temporary = null;
+    try {
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        return;
+      }
+      temporary = File.createTempFile("heat-tiles", ".tmp", directory);
+      try (OutputStream out = new FileOutputStream(temporary)) {
+        cache.store(out, "Tile shapes chosen by "
+            + TileTuner.class.getName() + ", by rows x columns");
+      }
+      Files.move(temporary.toPath(), cacheFile.toPath(),
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException | SecurityException e) {
+      if (temporary != null) {
+        temporary.delete();
+      }
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package edu.colorado.csdms.heat;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A stencil kernel for the 2D heat equation that uses the Java Vector API
+ * to update several columns at a time.
+ * <p>
+ * This class is compiled only on JDK 17 or later, and is loaded by
+ * {@link Solve2D} when the jdk.incubator.vector module is available. Each
+ * lane performs the same operations, in the same order, as the scalar
+ * kernel, so the results are identical. Columns left over after the last
+ * full vector are updated by the scalar kernel.
+ */
+class VectorSolve2D implements StencilKernel {
+
+  private static final VectorSpecies<Double> SPECIES =
+      DoubleVector.SPECIES_PREFERRED;
+
+  @Override
+  public void solveBlock(double[] temperature, double[] newTemperature,
+      int nCols, int firstRow, int endRow, int firstCol, int endCol,
+      double dx, double dy, double alpha, double timeStep) {
+
+    double dx2 = Math.pow(dx, 2.0);
+    double dy2 = Math.pow(dy, 2.0);
+    double c = alpha * timeStep / (dx2 + dy2);
+    double twoSum = 2.0 * (dx2 + dy2);
+    int lanes = SPECIES.length();
+    int vectorEndCol = firstCol + (endCol - firstCol) / lanes * lanes;
+
+    for (int i = firstRow; i < endRow; i++) {
+      int row = i * nCols;
+      for (int j = firstCol; j < vectorEndCol; j += lanes) {
+        int k = row + j;
+        DoubleVector center = DoubleVector.fromArray(SPECIES, temperature, k);
+        DoubleVector west =
+            DoubleVector.fromArray(SPECIES, temperature, k - 1);
+        DoubleVector east =
+            DoubleVector.fromArray(SPECIES, temperature, k + 1);
+        DoubleVector south =
+            DoubleVector.fromArray(SPECIES, temperature, k - nCols);
+        DoubleVector north =
+            DoubleVector.fromArray(SPECIES, temperature, k + nCols);
+        DoubleVector rowOp = west.add(east).mul(dx2);
+        DoubleVector colOp = south.add(north).mul(dy2);
+        rowOp.add(colOp).sub(center.mul(twoSum)).mul(c).add(center)
+            .intoArray(newTemperature, k);
+      }
+    }
+
+    if (vectorEndCol < endCol) {
+      Solve2D.solveBlockScalar(temperature, newTemperature, nCols, firstRow,
+          endRow, vectorEndCol, endCol, dx, dy, alpha, timeStep);
+    }
+  }
+}
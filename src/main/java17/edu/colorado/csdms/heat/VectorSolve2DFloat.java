@@ -0,0 +1,62 @@
+package edu.colorado.csdms.heat;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A stencil kernel for temperatures stored as float that uses the Java
+ * Vector API to update several columns at a time.
+ * <p>
+ * This class is compiled only on JDK 17 or later, and is loaded by
+ * {@link Solve2DFloat} when the jdk.incubator.vector module is available.
+ * A vector holds twice as many floats as doubles, so it updates twice the
+ * columns of {@link VectorSolve2D}. Each lane performs the same operations,
+ * in the same order, as the scalar kernel, including setting subnormal
+ * results to zero, so the results are identical. Columns left over after
+ * the last full vector are updated by the scalar kernel.
+ */
+class VectorSolve2DFloat implements FloatStencilKernel {
+
+  private static final VectorSpecies<Float> SPECIES =
+      FloatVector.SPECIES_PREFERRED;
+
+  @Override
+  public void solveBlock(float[] temperature, float[] newTemperature,
+      int nCols, int firstRow, int endRow, int firstCol, int endCol,
+      double dx, double dy, double alpha, double timeStep) {
+
+    double dx2 = Math.pow(dx, 2.0);
+    double dy2 = Math.pow(dy, 2.0);
+    float fdx2 = (float) dx2;
+    float fdy2 = (float) dy2;
+    float c = (float) (alpha * timeStep / (dx2 + dy2));
+    float twoSum = (float) (2.0 * (dx2 + dy2));
+    int lanes = SPECIES.length();
+    int vectorEndCol = firstCol + (endCol - firstCol) / lanes * lanes;
+
+    for (int i = firstRow; i < endRow; i++) {
+      int row = i * nCols;
+      for (int j = firstCol; j < vectorEndCol; j += lanes) {
+        int k = row + j;
+        FloatVector center = FloatVector.fromArray(SPECIES, temperature, k);
+        FloatVector west = FloatVector.fromArray(SPECIES, temperature, k - 1);
+        FloatVector east = FloatVector.fromArray(SPECIES, temperature, k + 1);
+        FloatVector south =
+            FloatVector.fromArray(SPECIES, temperature, k - nCols);
+        FloatVector north =
+            FloatVector.fromArray(SPECIES, temperature, k + nCols);
+        FloatVector rowOp = west.add(east).mul(fdx2);
+        FloatVector colOp = south.add(north).mul(fdy2);
+        FloatVector value =
+            rowOp.add(colOp).sub(center.mul(twoSum)).mul(c).add(center);
+        value.blend(0.0f, value.abs().lt(Float.MIN_NORMAL))
+            .intoArray(newTemperature, k);
+      }
+    }
+
+    if (vectorEndCol < endCol) {
+      Solve2DFloat.solveBlockScalar(temperature, newTemperature, nCols,
+          firstRow, endRow, vectorEndCol, endCol, dx, dy, alpha, timeStep);
+    }
+  }
+}
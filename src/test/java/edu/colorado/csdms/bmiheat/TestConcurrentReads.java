@@ -0,0 +1,126 @@
+package edu.colorado.csdms.bmiheat;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for concurrent reads of {@link BmiHeat} values.
+ */
+public class TestConcurrentReads {
+
+  private String varName = "plate_surface__temperature";
+  private BmiHeat component;
+
+  @Before
+  public void setUp() throws Exception {
+    component = new BmiHeat();
+    component.initialize();
+  }
+
+  @Test
+  public final void testReadsPublishedValues() {
+    double[] temp0 = new double[48];
+    temp0[20] = 100.0;
+    component.setValue(varName, temp0);
+    assertFalse(component.isConcurrentReads());
+    component.setConcurrentReads(true);
+    assertTrue(component.isConcurrentReads());
+
+    double[] actual = new double[48];
+    component.getValue(varName, actual);
+    assertArrayEquals(temp0, actual, 0);
+
+    component.update();
+    component.updateUntil(5.5);
+    double[] live = component.getValuePtr(varName);
+    component.getValue(varName, actual);
+    assertArrayEquals(live, actual, 0);
+
+    double[] some = new double[3];
+    component.getValueAtIndices(varName, some, new int[] {19, 20, 21});
+    assertArrayEquals(new double[] {live[19], live[20], live[21]}, some, 0);
+  }
+
+  @Test
+  public final void testPinnedSnapshotIsKept() {
+    double[] field = new double[10];
+    Arrays.fill(field, 1.0);
+    FieldSnapshots snapshots = new FieldSnapshots(0.0, 1L, field);
+    FieldSnapshots.Buffer pinned = snapshots.acquire();
+
+    for (int i = 2; i < 10; i++) {
+      Arrays.fill(field, i);
+      snapshots.publish(i, (long) i, field);
+      double[] expected = new double[10];
+      Arrays.fill(expected, 1.0);
+      assertArrayEquals(expected, pinned.values, 0);
+    }
+    snapshots.release(pinned);
+
+    FieldSnapshots.Buffer latest = snapshots.acquire();
+    assertEquals(9.0, latest.time, 0);
+    assertEquals(9.0, latest.values[0], 0);
+    snapshots.release(latest);
+    assertEquals(3, snapshots.getBufferCount());
+  }
+
+  @Test
+  public final void testPoolGrowsWhenAllPinned() {
+    double[] field = new double[4];
+    FieldSnapshots snapshots = new FieldSnapshots(0.0, 1L, field);
+    FieldSnapshots.Buffer first = snapshots.acquire();
+    snapshots.publish(1.0, 2L, field);
+    FieldSnapshots.Buffer second = snapshots.acquire();
+    snapshots.publish(2.0, 3L, field);
+    FieldSnapshots.Buffer third = snapshots.acquire();
+    snapshots.publish(3.0, 4L, field);
+    assertEquals(4, snapshots.getBufferCount());
+    assertEquals(0.0, first.time, 0);
+    assertEquals(1.0, second.time, 0);
+    assertEquals(2.0, third.time, 0);
+  }
+
+  @Test
+  public final void testReaderNeverSeesPartialField() throws Exception {
+    component.setConcurrentReads(true);
+    final AtomicBoolean done = new AtomicBoolean();
+    final AtomicInteger torn = new AtomicInteger();
+    final AtomicInteger reads = new AtomicInteger();
+
+    Thread reader = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        double[] values = new double[48];
+        while (!done.get()) {
+          component.getValue(varName, values);
+          for (double value : values) {
+            if (value != values[0]) {
+              torn.incrementAndGet();
+              break;
+            }
+          }
+          reads.incrementAndGet();
+        }
+      }
+    });
+    reader.start();
+
+    double[] src = new double[48];
+    for (int i = 0; i < 20000 || reads.get() < 1000; i++) {
+      Arrays.fill(src, i);
+      component.setValue(varName, src);
+    }
+    done.set(true);
+    reader.join();
+    assertEquals(0, torn.get());
+  }
+}
@@ -0,0 +1,207 @@
+package edu.colorado.csdms.bmiheat;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for publishing fields from {@link BmiHeat} with
+ * {@link CouplingChannel} and reading them with {@link CouplingReader}.
+ */
+public class TestCouplingChannel {
+
+  private String varName;
+  private Integer gridSize;
+  private File file;
+
+  @Before
+  public void setUp() throws Exception {
+    varName = "plate_surface__temperature";
+    gridSize = 48;
+    file = File.createTempFile("heat", ".cpl");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    file.delete();
+  }
+
+  private double[] constantField(int nValues, double value) {
+    double[] field = new double[nValues];
+    Arrays.fill(field, value);
+    return field;
+  }
+
+  @Test
+  public final void testRoundTrip() throws IOException {
+    try (CouplingChannel channel = new CouplingChannel(file.getPath(), 8, 6);
+        CouplingReader reader = new CouplingReader(file.getPath())) {
+      assertEquals(8, reader.getRowCount());
+      assertEquals(6, reader.getColumnCount());
+      assertEquals(CouplingChannel.DEFAULT_SLOT_COUNT, reader.getSlotCount());
+      assertEquals(0, reader.getSequence());
+      assertNull(reader.latest());
+      assertEquals(0, reader.read(new double[gridSize]));
+
+      double[] field = new double[gridSize];
+      for (int k = 0; k < gridSize; k++) {
+        field[k] = k * 0.5;
+      }
+      assertEquals(1, channel.publish(2.5, field));
+      assertEquals(1, channel.getSequence());
+      assertEquals(1, reader.getSequence());
+
+      CouplingReader.Frame frame = reader.latest();
+      assertEquals(1, frame.getSequence());
+      assertEquals(2.5, frame.getTime(), 0);
+      assertEquals(gridSize.intValue(), frame.getValues().remaining());
+      assertEquals(field[17], frame.getValues().get(17), 0);
+      assertTrue(frame.isValid());
+
+      double[] dest = new double[gridSize];
+      assertEquals(1, reader.read(dest));
+      assertArrayEquals(field, dest, 0);
+    }
+  }
+
+  @Test
+  public final void testLappedFrame() throws IOException {
+    try (CouplingChannel channel =
+          new CouplingChannel(file.getPath(), 8, 6, 2);
+        CouplingReader reader = new CouplingReader(file.getPath())) {
+      channel.publish(1.0, constantField(gridSize, 1.0));
+      CouplingReader.Frame frame = reader.latest();
+      channel.publish(2.0, constantField(gridSize, 2.0));
+      assertTrue(frame.isValid());
+      assertNotNull(reader.get(1));
+
+      channel.publish(3.0, constantField(gridSize, 3.0));
+      assertFalse(frame.isValid());
+      assertFalse(frame.copyTo(new double[gridSize]));
+      assertNull(reader.get(1));
+      assertEquals(2.0, reader.get(2).getTime(), 0);
+      assertNull(reader.get(4));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void testWrongFieldSize() throws IOException {
+    try (CouplingChannel channel = new CouplingChannel(file.getPath(), 8, 6)) {
+      channel.publish(0.0, new double[gridSize - 1]);
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public final void testNotCouplingFile() throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.write(new byte[CouplingChannel.HEADER_SIZE]);
+    }
+    new CouplingReader(file.getPath()).close();
+  }
+
+  @Test
+  public final void testBmiHeatPublishes() throws IOException {
+    BmiHeat component = new BmiHeat();
+    component.initialize();
+    try (CouplingChannel channel = new CouplingChannel(file.getPath(), 8, 6);
+        CouplingReader reader = new CouplingReader(file.getPath())) {
+      component.setCouplingChannel(channel);
+      assertSame(channel, component.getCouplingChannel());
+      assertEquals(1, reader.getSequence());
+
+      double[] temp0 = new double[gridSize];
+      temp0[20] = 100.0;
+      component.setValue(varName, temp0);
+      double[] dest = new double[gridSize];
+      assertEquals(2, reader.read(dest));
+      assertArrayEquals(temp0, dest, 0);
+
+      component.update();
+      double[] expected = new double[gridSize];
+      component.getValue(varName, expected);
+      assertEquals(3, reader.read(dest));
+      assertArrayEquals(expected, dest, 0);
+      assertEquals(component.getCurrentTime(), reader.latest().getTime(), 0);
+
+      component.setCouplingChannel(null);
+      component.update();
+      assertEquals(3, reader.getSequence());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void testWrongGrid() throws IOException {
+    BmiHeat component = new BmiHeat();
+    component.initialize();
+    try (CouplingChannel channel = new CouplingChannel(file.getPath(), 6, 8)) {
+      component.setCouplingChannel(channel);
+    }
+  }
+
+  @Test
+  public final void testAwaitTimesOut() throws Exception {
+    try (CouplingChannel channel = new CouplingChannel(file.getPath(), 8, 6);
+        CouplingReader reader = new CouplingReader(file.getPath())) {
+      channel.publish(0.0, new double[gridSize]);
+      assertEquals(1, reader.await(1, 1, TimeUnit.SECONDS));
+      long start = System.nanoTime();
+      assertEquals(1, reader.await(2, 20, TimeUnit.MILLISECONDS));
+      assertTrue(System.nanoTime() - start >= 20000000L);
+    }
+  }
+
+  /**
+   * Test that a reader racing the writer never returns a field mixed from
+   * two publishes. Publish k fills the field with k at time k.
+   */
+  @Test
+  public final void testNoTornReads() throws Exception {
+    final int nPublishes = 2000;
+    final CouplingChannel channel =
+        new CouplingChannel(file.getPath(), 64, 64, 2);
+    final AtomicReference<Throwable> failure =
+        new AtomicReference<Throwable>();
+    Thread writer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          for (int k = 1; k <= nPublishes; k++) {
+            channel.publish(k, constantField(64 * 64, k));
+          }
+        } catch (Throwable e) {
+          failure.set(e);
+        }
+      }
+    };
+    try (CouplingReader reader = new CouplingReader(file.getPath())) {
+      writer.start();
+      double[] dest = new double[64 * 64];
+      long last = 0;
+      while (last < nPublishes) {
+        long sequence = reader.read(dest);
+        if (sequence == 0) {
+          Thread.yield();
+          continue;
+        }
+        assertTrue(sequence >= last);
+        for (double value : dest) {
+          assertEquals(sequence, value, 0);
+        }
+        last = sequence;
+      }
+      writer.join();
+    } finally {
+      channel.close();
+    }
+    assertNull(failure.get());
+  }
+}
@@ -0,0 +1,244 @@
+package edu.colorado.csdms.bmiheat;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.colorado.csdms.heat.Heat;
+import edu.colorado.csdms.heat.HeatEnsemble;
+
+/**
+ * JUnit tests for the derived output variables of the {@link BmiHeat}
+ * class.
+ */
+public class TestDerivedVars {
+
+  private String varName;
+  private String xGradientName;
+  private String yGradientName;
+  private String fluxName;
+  private String integralName;
+  private int nRows;
+  private int nCols;
+  private double alpha;
+  private double[] linear;
+
+  @Before
+  public void setUp() throws Exception {
+    varName = "plate_surface__temperature";
+    xGradientName = "plate_surface__x_derivative_of_temperature";
+    yGradientName = "plate_surface__y_derivative_of_temperature";
+    fluxName = "plate_surface__magnitude_of_heat_diffusion_flux";
+    integralName = "plate_surface__area_integral_of_temperature";
+    nRows = 8;
+    nCols = 6;
+    alpha = 0.5;
+    linear = new double[nRows * nCols];
+    for (int i = 0; i < nRows; i++) {
+      for (int j = 0; j < nCols; j++) {
+        linear[i * nCols + j] = 2.0 * j + 3.0 * i;
+      }
+    }
+  }
+
+  @After
+  public void tearDown() throws Exception {
+  }
+
+  private BmiHeat newComponent() {
+    return new BmiHeat(new Heat(nRows, nCols, 1.0, 1.0, 0.0, 0.0, alpha));
+  }
+
+  private double[] constantField(double value) {
+    double[] field = new double[nRows * nCols];
+    Arrays.fill(field, value);
+    return field;
+  }
+
+  @Test
+  public final void testVarInfo() {
+    BmiHeat component = newComponent();
+    assertEquals(5, component.getOutputItemCount());
+    assertEquals(0, component.getVarGrid(xGradientName));
+    assertEquals(0, component.getVarGrid(fluxName));
+    assertEquals(1, component.getVarGrid(integralName));
+    assertEquals("K m-1", component.getVarUnits(yGradientName));
+    assertEquals("K m s-1", component.getVarUnits(fluxName));
+    assertEquals("K m2", component.getVarUnits(integralName));
+    assertEquals("double", component.getVarType(xGradientName));
+    assertEquals(8 * nRows * nCols, component.getVarNbytes(fluxName));
+    assertEquals(8, component.getVarNbytes(integralName));
+  }
+
+  @Test
+  public final void testScalarGrid() {
+    BmiHeat component = newComponent();
+    int gridId = component.getVarGrid(integralName);
+    assertEquals("scalar", component.getGridType(gridId));
+    assertEquals(0, component.getGridRank(gridId));
+    assertEquals(1, component.getGridSize(gridId));
+  }
+
+  @Test
+  public final void testGradientOfLinearField() {
+    BmiHeat component = newComponent();
+    component.setValue(varName, linear);
+
+    double[] dTdx = new double[nRows * nCols];
+    double[] dTdy = new double[nRows * nCols];
+    double[] flux = new double[nRows * nCols];
+    component.getValue(xGradientName, dTdx);
+    component.getValue(yGradientName, dTdy);
+    component.getValue(fluxName, flux);
+    for (int k = 0; k < nRows * nCols; k++) {
+      assertEquals(2.0, dTdx[k], 1e-12);
+      assertEquals(3.0, dTdy[k], 1e-12);
+      assertEquals(alpha * Math.sqrt(13.0), flux[k], 1e-12);
+    }
+  }
+
+  @Test
+  public final void testIntegralOfConstantField() {
+    BmiHeat component = newComponent();
+    component.setValue(varName, constantField(4.0));
+
+    double[] integral = new double[1];
+    component.getValue(integralName, integral);
+    assertEquals(4.0 * (nCols - 1) * (nRows - 1), integral[0], 1e-12);
+  }
+
+  @Test
+  public final void testGetValueAtIndices() {
+    BmiHeat component = newComponent();
+    component.setValue(varName, linear);
+
+    int[] indices = new int[] {0, 7, 47};
+    double[] dTdy = new double[indices.length];
+    component.getValueAtIndices(yGradientName, dTdy, indices);
+    assertArrayEquals(new double[] {3.0, 3.0, 3.0}, dTdy, 1e-12);
+
+    float[] dTdx = new float[indices.length];
+    component.getValueAtIndices(xGradientName, dTdx, indices);
+    assertArrayEquals(new float[] {2.0f, 2.0f, 2.0f}, dTdx, 0.0f);
+  }
+
+  @Test
+  public final void testComputedOnlyWhenFieldChanges() {
+    BmiHeat component = newComponent();
+    component.setValue(varName, linear);
+    assertEquals(0, component.getDerivedComputeCount());
+
+    double[] dTdx = new double[nRows * nCols];
+    double[] dTdy = new double[nRows * nCols];
+    component.getValue(xGradientName, dTdx);
+    component.getValue(yGradientName, dTdy);
+    component.getValue(xGradientName, dTdx);
+    assertEquals(1, component.getDerivedComputeCount());
+
+    component.update();
+    component.getValue(xGradientName, dTdx);
+    assertEquals(2, component.getDerivedComputeCount());
+    assertEquals(0.0, dTdx[0], 0.0);
+
+    component.setValue(varName, linear);
+    component.getValue(yGradientName, dTdy);
+    assertEquals(3, component.getDerivedComputeCount());
+    assertEquals(3.0, dTdy[nCols + 1], 1e-12);
+  }
+
+  /**
+   * Asserts that a component's flux and area integral match those of a new
+   * component wrapping the same model, which has nothing remembered.
+   */
+  private void assertCurrent(BmiHeat component, Heat heat) {
+    BmiHeat fresh = new BmiHeat(heat);
+    double[] flux = new double[nRows * nCols];
+    double[] expectedFlux = new double[nRows * nCols];
+    component.getValue(fluxName, flux);
+    fresh.getValue(fluxName, expectedFlux);
+    assertArrayEquals(expectedFlux, flux, 0.0);
+
+    double[] integral = new double[1];
+    double[] expectedIntegral = new double[1];
+    component.getValue(integralName, integral);
+    fresh.getValue(integralName, expectedIntegral);
+    assertArrayEquals(expectedIntegral, integral, 0.0);
+  }
+
+  @Test
+  public final void testWrappedModelSteppedDirectly() {
+    Heat heat = new Heat(nRows, nCols, 1.0, 1.0, 0.0, 0.0, alpha);
+    heat.getTemperatureField()[4 * nCols + 3] = 100.0;
+    heat.temperatureChanged();
+    BmiHeat component = new BmiHeat(heat);
+    double[] before = new double[1];
+    component.getValue(integralName, before);
+
+    heat.advanceInTime();
+    assertCurrent(component, heat);
+    heat.advanceInTime(3);
+    assertCurrent(component, heat);
+
+    double[] after = new double[1];
+    component.getValue(integralName, after);
+    assertTrue(after[0] < before[0]);
+  }
+
+  @Test
+  public final void testEnsembleMember() {
+    HeatEnsemble ensemble = new HeatEnsemble();
+    Heat heat = new Heat(nRows, nCols, 1.0, 1.0, 0.0, 0.0, alpha);
+    heat.getTemperatureField()[4 * nCols + 3] = 100.0;
+    heat.temperatureChanged();
+    ensemble.add(heat);
+    BmiHeat component = new BmiHeat(heat);
+    assertCurrent(component, heat);
+
+    try {
+      ensemble.advanceInTime(2);
+    } finally {
+      ensemble.shutdown();
+    }
+    assertCurrent(component, heat);
+  }
+
+  @Test
+  public final void testOutputOnly() {
+    BmiHeat component = newComponent();
+    component.setValue(varName, linear);
+    component.setValue(xGradientName, constantField(1.0));
+
+    double[] dTdx = new double[nRows * nCols];
+    component.getValue(xGradientName, dTdx);
+    assertEquals(2.0, dTdx[nCols + 1], 1e-12);
+  }
+
+  @Test
+  public final void testConcurrentReads() {
+    BmiHeat component = newComponent();
+    component.setConcurrentReads(true);
+    component.setValue(varName, constantField(4.0));
+
+    double[] integral = new double[1];
+    component.getValue(integralName, integral);
+    assertEquals(4.0 * (nCols - 1) * (nRows - 1), integral[0], 1e-12);
+
+    component.update();
+    double[] field = new double[nRows * nCols];
+    component.getValue(varName, field);
+    double expected = 0.0;
+    for (int i = 0; i < nRows; i++) {
+      for (int j = 0; j < nCols; j++) {
+        double weight = (i == 0 || i == nRows - 1 ? 0.5 : 1.0)
+            * (j == 0 || j == nCols - 1 ? 0.5 : 1.0);
+        expected += weight * field[i * nCols + j];
+      }
+    }
+    component.getValue(integralName, integral);
+    assertEquals(expected, integral[0], 1e-12);
+  }
+}
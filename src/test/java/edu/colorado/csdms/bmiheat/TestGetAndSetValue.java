@@ -3,12 +3,15 @@ package edu.colorado.csdms.bmiheat;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import java.util.Arrays;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import edu.colorado.csdms.heat.Heat;
+
 /**
  * JUnit tests for the getter and setter methods of the {@link BmiHeat} class.
  */
@@ -48,12 +51,55 @@ public class TestGetAndSetValue {
 
   @Test
   public final void testGetValuePtr() {
-    return; // Not implemented
+    BmiHeat component = new BmiHeat();
+    component.initialize();
+
+    double[] varPtr = component.getValuePtr(varName);
+    double[] varCpy = new double[gridSize];
+    component.getValue(varName, varCpy);
+    assertEquals(gridSize.intValue(), varPtr.length);
+    assertArrayEquals(varCpy, varPtr, delta);
+
+    // Changes made through the reference are seen by the model.
+    varPtr[20] = 10.0;
+    component.getValue(varName, varCpy);
+    assertEquals(10.0, varCpy[20], delta);
+
+    // After an update, the reference must be fetched again.
+    component.update();
+    double[] varPtrNext = component.getValuePtr(varName);
+    component.getValue(varName, varCpy);
+    assertArrayEquals(varCpy, varPtrNext, delta);
+  }
+
+  @Test
+  public final void testGetValuePtrUnknownVar() {
+    BmiHeat component = new BmiHeat();
+    component.initialize();
+
+    double[] varPtr = component.getValuePtr("land_surface__elevation");
+    assertNull(varPtr);
   }
 
   @Test
   public final void testGetValueAtIndices() {
-    return; // Not implemented
+    BmiHeat component = new BmiHeat();
+    component.initialize();
+
+    double[] varNew = new double[gridSize];
+    for (int i = 0; i < gridSize; i++) {
+      varNew[i] = i;
+    }
+    component.setValue(varName, varNew);
+
+    // A row, a column, and some scattered points.
+    int[] indices = {6, 7, 8, 9, 10, 11, 5, 11, 17, 23, 29, 35, 41, 47, 3, 3,
+        40, 2};
+    double[] varAtIndices = new double[indices.length];
+    component.getValueAtIndices(varName, varAtIndices, indices);
+    for (int i = 0; i < indices.length; i++) {
+      assertEquals(indices[i], varAtIndices[i], delta);
+    }
   }
 
   /**
@@ -92,6 +138,75 @@ public class TestGetAndSetValue {
 
   @Test
   public final void testSetValueAtIndices() {
-    return; // Not implemented
+    BmiHeat component = new BmiHeat();
+    component.initialize();
+
+    // The left column, the bottom row, and a point.
+    int[] indices = {0, 6, 12, 18, 24, 30, 36, 42, 43, 44, 45, 46, 47, 20};
+    double[] src = new double[indices.length];
+    for (int i = 0; i < indices.length; i++) {
+      src[i] = i + 1.0;
+    }
+    component.setValueAtIndices(varName, indices, src);
+
+    double[] varCpy = new double[gridSize];
+    component.getValue(varName, varCpy);
+    double[] expected = new double[gridSize];
+    for (int i = 0; i < indices.length; i++) {
+      expected[indices[i]] = src[i];
+    }
+    assertArrayEquals(expected, varCpy, delta);
+  }
+
+  @Test
+  public final void testFloatValues() {
+    BmiHeat component = new BmiHeat();
+    component.initialize();
+    component.setPrecision(Heat.Precision.SINGLE);
+
+    float[] src = new float[gridSize];
+    src[20] = 100.0f;
+    component.setValue(varName, src);
+    float[] ptr = component.getValuePtr(varName);
+    assertArrayEquals(src, ptr, 0.0f);
+
+    component.update();
+    float[] floats = new float[gridSize];
+    component.getValue(varName, floats);
+    double[] doubles = new double[gridSize];
+    component.getValue(varName, doubles);
+    for (int k = 0; k < gridSize; k++) {
+      assertEquals(floats[k], doubles[k], 0.0);
+    }
+    assertEquals(50.0f, floats[20], 1e-5f);
+
+    int[] indices = {14, 20, 26, 32, 38};
+    float[] column = new float[indices.length];
+    component.getValueAtIndices(varName, column, indices);
+    assertEquals(floats[26], column[2], 0.0f);
+
+    component.setValueAtIndices(varName, indices, new float[] {1, 2, 3, 4, 5});
+    component.getValue(varName, floats);
+    assertEquals(3.0f, floats[26], 0.0f);
+    double[] point = new double[1];
+    component.getValueAtIndices(varName, point, new int[] {38});
+    assertEquals(5.0, point[0], 0.0);
+  }
+
+  @Test
+  public final void testFloatValuesStoredAsDouble() {
+    BmiHeat component = new BmiHeat();
+    component.initialize();
+
+    float[] src = new float[gridSize];
+    src[20] = 0.1f;
+    component.setValue(varName, src);
+    double[] doubles = new double[gridSize];
+    component.getValue(varName, doubles);
+    assertEquals((double) 0.1f, doubles[20], 0.0);
+
+    float[] floats = new float[gridSize];
+    component.getValue(varName, floats);
+    assertArrayEquals(src, floats, 0.0f);
   }
 }
@@ -3,11 +3,19 @@ package edu.colorado.csdms.bmiheat;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import edu.colorado.csdms.heat.AdaptiveStepper;
+import edu.colorado.csdms.heat.Heat;
+import edu.colorado.csdms.heat.SteadyState2D;
+
 /**
  * JUnit tests for the IRF methods of the {@link BmiHeat} class.
  */
@@ -23,7 +31,11 @@ public class TestIRF {
     name = "Heat";
     delta = 0.1;
     inputVarNames = new String[] {"plate_surface__temperature"};
-    outputVarNames = new String[] {"plate_surface__temperature"};
+    outputVarNames = new String[] {"plate_surface__temperature",
+        "plate_surface__x_derivative_of_temperature",
+        "plate_surface__y_derivative_of_temperature",
+        "plate_surface__magnitude_of_heat_diffusion_flux",
+        "plate_surface__area_integral_of_temperature"};
   }
 
   @After
@@ -71,6 +83,80 @@ public class TestIRF {
     assertEquals(10.1, component.getCurrentTime(), delta);
   }
 
+  @Test
+  public final void testCheckpointRestart() throws IOException {
+    BmiHeat component = new BmiHeat();
+    component.initialize();
+    double[] temp0 = new double[48];
+    temp0[20] = 100.0;
+    component.setValue("plate_surface__temperature", temp0);
+    component.update();
+
+    File file = File.createTempFile("heat", ".chk");
+    try {
+      component.checkpoint(file.getPath());
+      BmiHeat restarted = new BmiHeat();
+      restarted.restart(file.getPath());
+
+      assertEquals(component.getCurrentTime(), restarted.getCurrentTime(),
+          0);
+      double[] expected = new double[48];
+      double[] actual = new double[48];
+      component.getValue("plate_surface__temperature", expected);
+      restarted.getValue("plate_surface__temperature", actual);
+      assertArrayEquals(expected, actual, 0);
+      assertEquals("K", restarted.getVarUnits("plate_surface__temperature"));
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public final void testWrapModel() {
+    Heat model = new Heat();
+    BmiHeat component = new BmiHeat(model);
+    assertEquals(0.0, component.getCurrentTime(), 0);
+
+    model.advanceInTime(3);
+    assertEquals(model.getTimeValue(), component.getCurrentTime(), 0);
+    component.update();
+    assertEquals(model.getTimeValue(), component.getCurrentTime(), 0);
+    assertEquals("K", component.getVarUnits("plate_surface__temperature"));
+  }
+
+  @Test
+  public final void testSolveSteadyState() {
+    BmiHeat component = new BmiHeat();
+    component.initialize();
+    double[] temp0 = new double[48];
+    temp0[20] = 100.0;
+    component.setValue("plate_surface__temperature", temp0);
+
+    SteadyState2D solver = new SteadyState2D();
+    int nIterations = component.solveSteadyState(solver);
+    assertEquals(solver.getIterationCount(), nIterations);
+    assertTrue(solver.isConverged());
+    double[] actual = new double[48];
+    component.getValue("plate_surface__temperature", actual);
+    assertArrayEquals(new double[48], actual, 1e-6);
+    assertEquals(0.0, component.getCurrentTime(), 0);
+  }
+
+  @Test
+  public final void testAdaptiveUpdateUntil() {
+    BmiHeat component = new BmiHeat();
+    component.initialize();
+    double[] temp0 = new double[48];
+    temp0[20] = 100.0;
+    component.setValue("plate_surface__temperature", temp0);
+
+    AdaptiveStepper stepper = new AdaptiveStepper();
+    component.setAdaptiveStepper(stepper);
+    component.updateUntil(10.3);
+    assertEquals(10.3, component.getCurrentTime(), 0);
+    assertTrue(stepper.getAcceptedStepCount() > 0);
+  }
+
   @Test
   public final void testFinalize() {
     return; // Nothing to test
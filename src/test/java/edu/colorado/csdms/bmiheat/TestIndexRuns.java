@@ -0,0 +1,115 @@
+package edu.colorado.csdms.bmiheat;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the {@link IndexRuns} helper used by the BmiHeat
+ * getValueAtIndices and setValueAtIndices methods.
+ */
+public class TestIndexRuns {
+
+  private double[] field;
+
+  @Before
+  public void setUp() throws Exception {
+    field = new double[1000];
+    for (int i = 0; i < field.length; i++) {
+      field[i] = i * 0.5;
+    }
+  }
+
+  @After
+  public void tearDown() throws Exception {
+  }
+
+  @Test
+  public final void testRunLength() {
+    int[] indices = {4, 5, 6, 7, 20, 30, 40, 40, 41};
+    assertEquals(4, IndexRuns.runLength(indices, 0));
+    assertEquals(2, IndexRuns.runLength(indices, 3));
+    assertEquals(3, IndexRuns.runLength(indices, 4));
+    assertEquals(1, IndexRuns.runLength(indices, 6));
+    assertEquals(2, IndexRuns.runLength(indices, 7));
+    assertEquals(1, IndexRuns.runLength(indices, 8));
+  }
+
+  /**
+   * Test gather and scatter on random mixtures of runs and single points.
+   */
+  @Test
+  public final void testGatherScatterRandom() {
+    Random random = new Random(3);
+    for (int trial = 0; trial < 50; trial++) {
+      int[] indices = new int[random.nextInt(60) + 1];
+      int i = 0;
+      while (i < indices.length) {
+        int stride = random.nextInt(5) - 2;
+        int start = random.nextInt(field.length / 4) + 100;
+        int length = Math.min(indices.length - i, random.nextInt(12) + 1);
+        for (int k = 0; k < length; k++) {
+          indices[i++] = start + k * stride;
+        }
+      }
+
+      double[] gathered = new double[indices.length];
+      IndexRuns.gather(field, gathered, indices);
+      double[] expected = new double[indices.length];
+      for (int k = 0; k < indices.length; k++) {
+        expected[k] = field[indices[k]];
+      }
+      assertArrayEquals(expected, gathered, 0);
+
+      double[] scattered = new double[field.length];
+      double[] reference = new double[field.length];
+      IndexRuns.scatter(expected, scattered, indices);
+      for (int k = 0; k < indices.length; k++) {
+        reference[indices[k]] = expected[k];
+      }
+      assertArrayEquals(reference, scattered, 0);
+
+      float[] floatField = new float[field.length];
+      for (int k = 0; k < field.length; k++) {
+        floatField[k] = (float) field[k];
+      }
+      float[] floatGathered = new float[indices.length];
+      IndexRuns.gather(floatField, floatGathered, indices);
+      float[] floatScattered = new float[field.length];
+      IndexRuns.scatter(floatGathered, floatScattered, indices);
+      for (int k = 0; k < indices.length; k++) {
+        assertEquals(expected[k], floatGathered[k], 0);
+      }
+      for (int k = 0; k < field.length; k++) {
+        assertEquals(reference[k], floatScattered[k], 0);
+      }
+    }
+  }
+
+  /**
+   * Test that forEachRun passes runs and single indices in order.
+   */
+  @Test
+  public final void testForEachRun() {
+    int[] indices = {4, 5, 6, 7, 20, 30, 40, 50, 60, 9};
+    final StringBuilder calls = new StringBuilder();
+    IndexRuns.forEachRun(indices, new IndexRuns.RunCopy() {
+      @Override
+      void copy(int position, int index) {
+        calls.append(position).append(':').append(index).append(' ');
+      }
+
+      @Override
+      void copyRun(int position, int start, int stride, int length) {
+        calls.append(position).append(':').append(start).append('+')
+            .append(stride).append('x').append(length).append(' ');
+      }
+    });
+    assertEquals("0:4+1x4 4:20+10x5 9:9 ", calls.toString());
+  }
+}
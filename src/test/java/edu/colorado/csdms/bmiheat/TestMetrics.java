@@ -0,0 +1,157 @@
+package edu.colorado.csdms.bmiheat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.colorado.csdms.bmiheat.BmiHeatMetrics.Operation;
+
+/**
+ * JUnit tests for {@link BmiHeatMetrics} and {@link LatencyHistogram}.
+ */
+public class TestMetrics {
+
+  private String varName = "plate_surface__temperature";
+  private BmiHeat component;
+  private BmiHeatMetrics metrics;
+
+  @Before
+  public void setUp() throws Exception {
+    component = new BmiHeat();
+    component.initialize();
+    metrics = new BmiHeatMetrics();
+  }
+
+  @Test
+  public final void testDisabledByDefault() {
+    assertNull(component.getMetrics());
+    component.update();
+    component.setMetrics(metrics);
+    assertSame(metrics, component.getMetrics());
+    component.setMetrics(null);
+    component.update();
+    assertEquals(0, metrics.getCallCount(Operation.UPDATE));
+  }
+
+  @Test
+  public final void testRecordsCalls() {
+    component.setMetrics(metrics);
+    double[] temp = new double[48];
+    component.getValue(varName, temp);
+    component.setValue(varName, temp);
+    component.getValueAtIndices(varName, new double[3], new int[] {1, 2, 3});
+    component.setValueAtIndices(varName, new int[] {4, 5},
+        new double[] {1.0, 2.0});
+    component.update();
+    component.updateUntil(2.0);
+
+    assertEquals(1, metrics.getCallCount(Operation.GET_VALUE));
+    assertEquals(1, metrics.getCallCount(Operation.SET_VALUE));
+    assertEquals(1, metrics.getCallCount(Operation.UPDATE));
+    assertEquals(1, metrics.getCallCount(Operation.UPDATE_UNTIL));
+    assertEquals(384, metrics.getBytesMoved(Operation.GET_VALUE));
+    assertEquals(384, metrics.getBytesMoved(Operation.SET_VALUE));
+    assertEquals(24, metrics.getBytesMoved(Operation.GET_VALUE_AT_INDICES));
+    assertEquals(16, metrics.getBytesMoved(Operation.SET_VALUE_AT_INDICES));
+
+    // One step from update and seven whole steps to 2.0.
+    assertEquals(8, metrics.getStepCount());
+    assertTrue(metrics.getLatencies(Operation.UPDATE_UNTIL).getMaxNanos()
+        > 0);
+
+    metrics.reset();
+    assertEquals(0, metrics.getStepCount());
+    assertEquals(0, metrics.getCallCount(Operation.GET_VALUE));
+  }
+
+  @Test
+  public final void testRegister() throws Exception {
+    component.setMetrics(metrics);
+    component.update();
+    ObjectName name = metrics.register("testRegister");
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      assertEquals(1L, server.getAttribute(name, "StepCount"));
+      CompositeData[] stats =
+          (CompositeData[]) server.getAttribute(name, "OperationStats");
+      assertEquals(Operation.values().length, stats.length);
+      assertEquals("update", stats[0].get("operation"));
+      assertEquals(1L, stats[0].get("count"));
+      server.invoke(name, "reset", null, null);
+      assertEquals(0L, server.getAttribute(name, "StepCount"));
+    } finally {
+      metrics.unregister();
+    }
+    assertTrue(!ManagementFactory.getPlatformMBeanServer()
+        .isRegistered(name));
+  }
+
+  @Test
+  public final void testReporting() throws Exception {
+    final CountDownLatch reports = new CountDownLatch(2);
+    metrics.startReporting(new BmiHeatMetrics.Reporter() {
+      @Override
+      public void report(BmiHeatMetrics reported) {
+        reports.countDown();
+      }
+    }, 10, TimeUnit.MILLISECONDS);
+    try {
+      assertTrue(reports.await(10, TimeUnit.SECONDS));
+    } finally {
+      metrics.stopReporting();
+    }
+  }
+
+  @Test
+  public final void testToString() {
+    component.setMetrics(metrics);
+    component.update();
+    String text = metrics.toString();
+    assertTrue(text.startsWith("steps=1 "));
+    assertTrue(text.contains("\nupdate: count=1 "));
+    assertTrue(!text.contains("get_value"));
+  }
+
+  @Test
+  public final void testHistogramPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getPercentileNanos(50.0));
+    for (long i = 1; i <= 10000; i++) {
+      histogram.record(i * 1000);
+    }
+    assertEquals(10000, histogram.getCount());
+    assertEquals(10000000, histogram.getMaxNanos());
+    assertEquals(5000500.0, histogram.getMeanNanos(), 0.0);
+    long p50 = histogram.getPercentileNanos(50.0);
+    long p99 = histogram.getPercentileNanos(99.0);
+    assertTrue(p50 >= 5000000 && p50 <= 5000000 * 1.04);
+    assertTrue(p99 >= 9900000 && p99 <= 9900000 * 1.04);
+    assertEquals(10000000, histogram.getPercentileNanos(100.0));
+  }
+
+  @Test
+  public final void testHistogramBuckets() {
+    long previousEdge = -1;
+    for (int bucket = 0; bucket < 200; bucket++) {
+      long edge = LatencyHistogram.upperEdgeOf(bucket);
+      assertTrue(edge > previousEdge);
+      assertEquals(bucket, LatencyHistogram.bucketOf(edge));
+      assertEquals(bucket, LatencyHistogram.bucketOf(previousEdge + 1));
+      previousEdge = edge;
+    }
+    assertEquals(Long.MAX_VALUE, LatencyHistogram.upperEdgeOf(
+        LatencyHistogram.bucketOf(Long.MAX_VALUE)));
+  }
+}
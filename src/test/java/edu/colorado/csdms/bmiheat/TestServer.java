@@ -0,0 +1,162 @@
+package edu.colorado.csdms.bmiheat;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the {@link BmiHeatServer} and {@link BmiHeatClient}
+ * classes.
+ */
+public class TestServer {
+
+  private String varName = "plate_surface__temperature";
+  private BmiHeatServer server;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new BmiHeatServer(0, 2);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.close();
+  }
+
+  @Test
+  public final void testBatchMatchesLocalModel() throws IOException {
+    BmiHeat local = new BmiHeat();
+    local.initialize();
+    local.setValueAtIndices(varName, new int[] {20}, new double[] {100.0});
+    local.updateUntil(10.5);
+    double[] expected = new double[48];
+    local.getValue(varName, expected);
+
+    try (BmiHeatClient client = new BmiHeatClient(server.getPort())) {
+      List<String> replies = client.send("initialize",
+          "set_value_at_indices " + varName + " 1 20 100.0",
+          "update_until 10.5", "get_current_time", "get_value " + varName);
+      assertEquals(5, replies.size());
+      assertEquals("ok", replies.get(0));
+      assertEquals(local.getCurrentTime(),
+          BmiHeatClient.parseValues(replies.get(3))[0], 0);
+      assertArrayEquals(expected,
+          BmiHeatClient.parseValues(replies.get(4)), 0);
+    }
+  }
+
+  @Test
+  public final void testGridAndVarCalls() throws IOException {
+    try (BmiHeatClient client = new BmiHeatClient(server.getPort())) {
+      List<String> replies = client.send("initialize",
+          "get_component_name", "get_var_units " + varName,
+          "get_grid_shape 0", "get_value_at_indices " + varName + " 0 1");
+      assertEquals("ok Heat", replies.get(1));
+      assertEquals("ok K", replies.get(2));
+      assertEquals("ok 8 6", replies.get(3));
+      assertArrayEquals(new double[] {0.0, 0.0},
+          BmiHeatClient.parseValues(replies.get(4)), 0);
+    }
+  }
+
+  @Test
+  public final void testErrors() throws IOException {
+    try (BmiHeatClient client = new BmiHeatClient(server.getPort())) {
+      List<String> replies = client.send("update", "no_such_call",
+          "initialize no-such-file.xml", "initialize", "update_until soon",
+          "get_current_time");
+      assertTrue(replies.get(0).startsWith("error "));
+      assertTrue(replies.get(1).startsWith("error "));
+      assertTrue(replies.get(2).startsWith("error "));
+      assertEquals("ok", replies.get(3));
+      assertTrue(replies.get(4).startsWith("error "));
+      assertEquals("ok 0.0", replies.get(5));
+    }
+  }
+
+  @Test
+  public final void testSessionsAreIndependent() throws IOException {
+    try (BmiHeatClient first = new BmiHeatClient(server.getPort());
+        BmiHeatClient second = new BmiHeatClient(server.getPort())) {
+      first.send("initialize", "update_until 5.0");
+      second.send("initialize");
+      assertEquals("ok 0.0", second.send("get_current_time").get(0));
+      assertEquals(5.0, BmiHeatClient.parseValues(
+          first.send("get_current_time").get(0))[0], 0.5);
+      assertEquals(2, server.getSessionCount());
+    }
+  }
+
+  @Test
+  public final void testNullResults() throws IOException {
+    try (BmiHeatClient client = new BmiHeatClient(server.getPort())) {
+      List<String> replies = client.send("initialize", "get_time_units",
+          "get_var_units no_such_variable", "get_current_time");
+      assertEquals("ok", replies.get(1));
+      assertEquals("ok", replies.get(2));
+      assertEquals("ok 0.0", replies.get(3));
+    }
+  }
+
+  /**
+   * Counts the live threads of ForkJoin pools, like the pool of a model
+   * configured with "nThreads".
+   */
+  private static int countPoolThreads() {
+    int count = 0;
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.isAlive() && thread.getName().startsWith("ForkJoinPool-")) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Test
+  public final void testDisconnectFinalizesModel() throws Exception {
+    File config = File.createTempFile("heat", ".xml");
+    try {
+      try (PrintWriter out = new PrintWriter(config, "UTF-8")) {
+        out.println("<model>");
+        out.println("  <parameter name=\"nRows\" value=\"400\" />");
+        out.println("  <parameter name=\"nCols\" value=\"400\" />");
+        out.println("  <parameter name=\"dx\" value=\"1.0\" />");
+        out.println("  <parameter name=\"dy\" value=\"1.0\" />");
+        out.println("  <parameter name=\"xStart\" value=\"0.0\" />");
+        out.println("  <parameter name=\"yStart\" value=\"0.0\" />");
+        out.println("  <parameter name=\"alpha\" value=\"1.0\" />");
+        out.println("  <parameter name=\"nThreads\" value=\"2\" />");
+        out.println("</model>");
+      }
+      int before = countPoolThreads();
+      try (BmiHeatClient client = new BmiHeatClient(server.getPort())) {
+        List<String> replies = client.send("initialize " + config.getPath(),
+            "update");
+        assertEquals("ok", replies.get(1));
+        assertTrue(countPoolThreads() > before);
+      }
+      long deadline = System.currentTimeMillis() + 10000;
+      while (countPoolThreads() > before
+          && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(before, countPoolThreads());
+    } finally {
+      config.delete();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public final void testParseError() {
+    BmiHeatClient.parseValues("error Unknown call");
+  }
+}
@@ -0,0 +1,159 @@
+package edu.colorado.csdms.bmiheat;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for streaming snapshots from {@link BmiHeat} with
+ * {@link SnapshotWriter} and reading them with {@link SnapshotReader}.
+ */
+public class TestSnapshots {
+
+  private String varName;
+  private Integer gridSize;
+  private File file;
+
+  @Before
+  public void setUp() throws Exception {
+    varName = "plate_surface__temperature";
+    gridSize = 48;
+    file = File.createTempFile("heat", ".snap");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    file.delete();
+  }
+
+  private BmiHeat makeComponent() {
+    BmiHeat component = new BmiHeat();
+    component.initialize();
+    double[] temp0 = new double[gridSize];
+    temp0[20] = 100.0;
+    component.setValue(varName, temp0);
+    return component;
+  }
+
+  @Test
+  public final void testSnapshotsByStep() throws IOException {
+    BmiHeat component = makeComponent();
+    SnapshotWriter writer = new SnapshotWriter(file.getPath(), 8, 6);
+    writer.setStepInterval(2);
+    component.setSnapshotWriter(writer);
+
+    List<double[]> expected = new ArrayList<double[]>();
+    List<Double> expectedTimes = new ArrayList<Double>();
+    for (int i = 1; i <= 10; i++) {
+      component.update();
+      if (i % 2 == 0) {
+        double[] temp = new double[gridSize];
+        component.getValue(varName, temp);
+        expected.add(temp);
+        expectedTimes.add(component.getCurrentTime());
+      }
+    }
+    writer.close();
+    assertEquals(5, writer.getSnapshotCount());
+
+    try (SnapshotReader reader = new SnapshotReader(file.getPath())) {
+      assertEquals(8, reader.getRowCount());
+      assertEquals(6, reader.getColumnCount());
+      assertEquals(5, reader.getSnapshotCount());
+
+      // Read out of order.
+      double[] temp = new double[gridSize];
+      for (int i = 4; i >= 0; i--) {
+        double time = reader.read(i, temp);
+        assertEquals(expectedTimes.get(i), time, 0);
+        assertEquals(expectedTimes.get(i), reader.getTime(i), 0);
+        assertArrayEquals(expected.get(i), temp, 0);
+      }
+    }
+  }
+
+  @Test
+  public final void testSnapshotsByStepWithFractionalSteps()
+      throws IOException {
+    BmiHeat component = makeComponent();
+    SnapshotWriter writer = new SnapshotWriter(file.getPath(), 8, 6);
+    writer.setStepInterval(4);
+    component.setSnapshotWriter(writer);
+
+    // Time steps are 0.25, so each call takes one whole step and a half
+    // step, and the fourth whole step ends at 1.375.
+    for (int i = 1; i <= 4; i++) {
+      component.updateUntil(i * 0.375);
+    }
+    // Four whole steps, with no fractional step, to 2.5.
+    component.updateUntil(2.5);
+    writer.close();
+
+    try (SnapshotReader reader = new SnapshotReader(file.getPath())) {
+      assertEquals(2, reader.getSnapshotCount());
+      assertEquals(1.375, reader.getTime(0), 0);
+      assertEquals(2.5, reader.getTime(1), 0);
+    }
+  }
+
+  @Test
+  public final void testSnapshotsByTime() throws IOException {
+    BmiHeat component = makeComponent();
+    SnapshotWriter writer = new SnapshotWriter(file.getPath(), 8, 6);
+    writer.setTimeInterval(1.0);
+    component.setSnapshotWriter(writer);
+
+    // Time steps are 0.25, so snapshots fall at 1.0, 2.0 and 3.0.
+    component.updateUntil(3.1);
+    writer.close();
+
+    BmiHeat reference = makeComponent();
+    double[] expected = new double[gridSize];
+    double[] actual = new double[gridSize];
+    try (SnapshotReader reader = new SnapshotReader(file.getPath())) {
+      assertEquals(3, reader.getSnapshotCount());
+      for (int i = 0; i < 3; i++) {
+        reference.updateUntil(i + 1.0);
+        reference.getValue(varName, expected);
+        assertEquals(i + 1.0, reader.read(i, actual), 1e-12);
+        assertArrayEquals(expected, actual, 0);
+      }
+    }
+  }
+
+  @Test
+  public final void testDropWhenFull() throws IOException {
+    SnapshotWriter writer = new SnapshotWriter(file.getPath(), 8, 6, 1,
+        SnapshotWriter.Overflow.DROP);
+    double[] field = new double[gridSize];
+    for (int i = 0; i < 100; i++) {
+      writer.write(i, field);
+    }
+    writer.close();
+    assertEquals(100, writer.getSnapshotCount() + writer.getDroppedCount());
+
+    try (SnapshotReader reader = new SnapshotReader(file.getPath())) {
+      assertEquals(writer.getSnapshotCount(), reader.getSnapshotCount());
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public final void testWriteAfterClose() throws IOException {
+    SnapshotWriter writer = new SnapshotWriter(file.getPath(), 8, 6);
+    writer.close();
+    writer.write(0.0, new double[gridSize]);
+  }
+
+  @Test(expected = IOException.class)
+  public final void testNotASnapshotFile() throws IOException {
+    new SnapshotReader("src/test/resources/data/heat.xml");
+  }
+}
@@ -5,12 +5,15 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import edu.colorado.csdms.heat.Heat;
+
 /**
  * JUnit tests for the getter and setter methods of the {@link BmiHeat} class.
  */
 public class TestVarMethods {
 
   private static final int SIZEOF_DOUBLE = 8;
+  private static final int SIZEOF_FLOAT = 4;
 
   private int gridId;
   private String varName;
@@ -91,6 +94,23 @@ public class TestVarMethods {
     assertEquals(SIZEOF_DOUBLE * varCpy.length, component.getVarNbytes(varName));
   }
 
+  /**
+   * Test the type, item size and bytes of a field stored as float.
+   */
+  @Test
+  public final void testFloatStorage() {
+    BmiHeat component = new BmiHeat();
+    component.initialize();
+    component.setPrecision(Heat.Precision.SINGLE);
+
+    assertEquals("float", component.getVarType(varName));
+    assertEquals(SIZEOF_FLOAT, component.getVarItemsize(varName));
+    assertEquals(SIZEOF_FLOAT * gridSize, component.getVarNbytes(varName));
+
+    component.setPrecision(Heat.Precision.DOUBLE);
+    assertEquals(varType, component.getVarType(varName));
+  }
+
   @Test
   public final void testGetVarLocation() {
     BmiHeat component = new BmiHeat();
@@ -0,0 +1,110 @@
+package edu.colorado.csdms.heat;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the ActiveTileSolve2D class.
+ */
+public class ActiveTileSolve2DTest {
+
+  private int nRows;
+  private int nCols;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @Before
+  public void setUp() throws Exception {
+    nRows = 130;
+    nCols = 100;
+  }
+
+  /**
+   * Makes a model with a few point sources.
+   */
+  private Heat makeModel() {
+    Heat heat = new Heat(nRows, nCols, 1.0, 1.5, 0.0, 0.0, 0.7);
+    double[] field = heat.getTemperatureField();
+    field[20 * nCols + 30] = 100.0;
+    field[90 * nCols + 70] = 50.0;
+    return heat;
+  }
+
+  /**
+   * Test that with a zero threshold the results are identical to updating
+   * every point, and that only part of the grid is updated.
+   */
+  @Test
+  public final void testMatchesFullSolve() {
+    Heat expected = makeModel();
+    Heat heat = makeModel();
+    ActiveTileSolve2D solver = new ActiveTileSolve2D(16, 0.0);
+    heat.setActiveTileSolver(solver);
+    assertSame(solver, heat.getActiveTileSolver());
+
+    heat.advanceInTime();
+    assertEquals(63, solver.getTileCount());
+    assertEquals(18, solver.getUpdatedTileCount());
+    for (int step = 0; step < 40; step++) {
+      heat.advanceInTime();
+      expected.advanceInTime();
+    }
+    expected.advanceInTime();
+    assertArrayEquals(expected.getTemperatureField(),
+        heat.getTemperatureField(), 0);
+    assertTrue(solver.getUpdatedTileCount() < solver.getTileCount());
+  }
+
+  /**
+   * Test that heat added between steps is found.
+   */
+  @Test
+  public final void testFieldChangedBetweenSteps() {
+    Heat expected = makeModel();
+    Heat heat = makeModel();
+    heat.setActiveTileSolver(new ActiveTileSolve2D(16, 0.0));
+    heat.advanceInTime(5);
+    expected.advanceInTime(5);
+
+    heat.getTemperatureField()[110 * nCols + 10] = 20.0;
+    heat.temperatureChanged();
+    expected.getTemperatureField()[110 * nCols + 10] = 20.0;
+    heat.advanceInTime(10);
+    expected.advanceInTime(10);
+    assertArrayEquals(expected.getTemperatureField(),
+        heat.getTemperatureField(), 0);
+  }
+
+  /**
+   * Test that a positive threshold updates fewer tiles and stays close.
+   */
+  @Test
+  public final void testThreshold() {
+    Heat expected = makeModel();
+    Heat heat = makeModel();
+    ActiveTileSolve2D exact = new ActiveTileSolve2D(16, 0.0);
+    ActiveTileSolve2D solver = new ActiveTileSolve2D(16, 1e-6);
+    expected.setActiveTileSolver(exact);
+    heat.setActiveTileSolver(solver);
+    expected.advanceInTime(60);
+    heat.advanceInTime(60);
+
+    assertTrue(solver.getUpdatedTileCount() < exact.getUpdatedTileCount());
+    double[] a = expected.getTemperatureField();
+    double[] b = heat.getTemperatureField();
+    for (int i = 0; i < a.length; i++) {
+      assertEquals(a[i], b[i], 1e-4);
+    }
+  }
+
+  /**
+   * Test that bad settings are rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public final void testBadThreshold() {
+    new ActiveTileSolve2D(16, -1.0);
+  }
+}
@@ -0,0 +1,118 @@
+package edu.colorado.csdms.heat;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the AdaptiveStepper class.
+ */
+public class AdaptiveStepperTest {
+
+  private int nRows;
+  private int nCols;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @Before
+  public void setUp() throws Exception {
+    nRows = 41;
+    nCols = 41;
+  }
+
+  /**
+   * Makes a model with a point source in the middle.
+   */
+  private Heat makeModel() {
+    Heat heat = new Heat(nRows, nCols, 1.0, 1.0, 0.0, 0.0, 1.0);
+    heat.getTemperatureField()[nRows / 2 * nCols + nCols / 2] = 1000.0;
+    return heat;
+  }
+
+  private static double relativeError(double[] expected, double[] actual) {
+    double maxDifference = 0.0;
+    double maxValue = 0.0;
+    for (int i = 0; i < expected.length; i++) {
+      maxDifference =
+          Math.max(maxDifference, Math.abs(expected[i] - actual[i]));
+      maxValue = Math.max(maxValue, Math.abs(expected[i]));
+    }
+    return maxDifference / maxValue;
+  }
+
+  /**
+   * Test that the stepper lands exactly on the requested time.
+   */
+  @Test
+  public final void testLandsOnTime() {
+    Heat heat = makeModel();
+    AdaptiveStepper stepper = new AdaptiveStepper();
+    stepper.advance(heat, 7.3);
+    assertEquals(7.3, heat.getTimeValue(), 0);
+    stepper.advance(heat, 12.0);
+    assertEquals(12.0, heat.getTimeValue(), 0);
+    assertEquals(0, stepper.advance(heat, 12.0));
+  }
+
+  /**
+   * Test that an implicit integrator takes far fewer steps than fixed
+   * stepping and stays close to a fine explicit solution.
+   */
+  @Test
+  public final void testFewerStepsWithinTolerance() {
+    Heat reference = makeModel();
+    reference.setTimeStep(0.01);
+    reference.advanceInTime(20000);
+
+    Heat heat = makeModel();
+    heat.setIntegrator(Heat.Integrator.CRANK_NICOLSON);
+    AdaptiveStepper stepper = new AdaptiveStepper(1e-4, 0.0, 1000.0);
+    long nSteps = stepper.advance(heat, 200.0);
+
+    long nFixedSteps = Math.round(200.0 / makeModel().getTimeStepValue());
+    assertTrue(nSteps * 10 < nFixedSteps);
+    assertEquals(nSteps, stepper.getAcceptedStepCount());
+    assertTrue(stepper.getStep() > makeModel().getTimeStepValue());
+    assertTrue(relativeError(reference.getTemperatureField(),
+        heat.getTemperatureField()) < 1e-2);
+  }
+
+  /**
+   * Test that explicit steps stay within the stability limit.
+   */
+  @Test
+  public final void testExplicitStaysStable() {
+    Heat heat = makeModel();
+    AdaptiveStepper stepper = new AdaptiveStepper(1.0, 0.0, 100.0);
+    stepper.advance(heat, 100.0);
+    assertTrue(stepper.getStep() <= 0.5);
+    for (double value : heat.getTemperatureField()) {
+      assertTrue(value >= 0.0 && value <= 1000.0);
+    }
+  }
+
+  /**
+   * Test that a tight tolerance rejects steps and shortens them.
+   */
+  @Test
+  public final void testRejectsLongSteps() {
+    Heat heat = makeModel();
+    heat.setIntegrator(Heat.Integrator.BACKWARD_EULER);
+    heat.setTimeStep(50.0);
+    AdaptiveStepper stepper = new AdaptiveStepper(1e-6, 0.0, 1000.0);
+    stepper.advance(heat, 1.0);
+    assertTrue(stepper.getRejectedStepCount() > 0);
+    assertEquals(1.0, heat.getTimeValue(), 0);
+    assertEquals(50.0, heat.getTimeStepValue(), 0);
+  }
+
+  /**
+   * Test that bad settings are rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public final void testBadTolerance() {
+    new AdaptiveStepper(0.0, 0.0, 1.0);
+  }
+}
@@ -0,0 +1,115 @@
+package edu.colorado.csdms.heat;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the BlockedSolve2D class.
+ */
+public class BlockedSolve2DTest {
+
+  private int nRows;
+  private int nCols;
+  private double[] temperature;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @Before
+  public void setUp() throws Exception {
+    nRows = 53;
+    nCols = 71;
+    temperature = new double[nRows * nCols];
+    Random random = new Random(7);
+    for (int i = 0; i < temperature.length; i++) {
+      temperature[i] = 100.0 * random.nextDouble();
+    }
+  }
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @After
+  public void tearDown() throws Exception {
+  }
+
+  /**
+   * Take steps one at a time with the serial solver.
+   */
+  private double[] stepSerially(long nSteps) {
+    double[] field = temperature.clone();
+    double[] next = new double[field.length];
+    for (long i = 0; i < nSteps; i++) {
+      Solve2D.solve(field, next, nRows, nCols, 1.0, 0.8, 1.2, 0.15);
+      double[] swap = field;
+      field = next;
+      next = swap;
+    }
+    return field;
+  }
+
+  /**
+   * Take steps with a blocked solver.
+   */
+  private double[] stepBlocked(BlockedSolve2D solver, long nSteps) {
+    return solver.solve(temperature.clone(), new double[temperature.length],
+        nRows, nCols, 1.0, 0.8, 1.2, 0.15, nSteps);
+  }
+
+  /**
+   * Test that blocked steps match single steps exactly, for tiles that
+   * don't divide the grid evenly and step counts that don't divide the
+   * block evenly.
+   */
+  @Test
+  public final void testSolveMatchesSerial() {
+    int[][] tiles = {{8, 8}, {5, 13}, {16, 71}, {53, 7}, {100, 100}};
+    long[] stepCounts = {1, 3, 4, 11};
+    for (int[] tile : tiles) {
+      BlockedSolve2D solver = new BlockedSolve2D(tile[0], tile[1], 4);
+      for (long nSteps : stepCounts) {
+        assertArrayEquals("tile " + tile[0] + "x" + tile[1] + ", steps "
+            + nSteps, stepSerially(nSteps), stepBlocked(solver, nSteps), 0);
+      }
+    }
+  }
+
+  /**
+   * Test method for {@link edu.colorado.csdms.heat.BlockedSolve2D#isBlocked(int, int)}.
+   */
+  @Test
+  public final void testIsBlocked() {
+    BlockedSolve2D solver = new BlockedSolve2D(16, 32, 4);
+    assertFalse(solver.isBlocked(16, 32));
+    assertTrue(solver.isBlocked(17, 32));
+    assertTrue(solver.isBlocked(16, 33));
+  }
+
+  /**
+   * Test that a Heat model gives the same results, and time, when taking
+   * several steps at once.
+   */
+  @Test
+  public final void testHeatAdvanceInTimeSteps() {
+    int size = BlockedSolve2D.DEFAULT_TILE_COLS + 30;
+    Heat single = new Heat(size, size, 1.0, 1.0, 0.0, 0.0, 1.0);
+    Heat blocked = new Heat(size, size, 1.0, 1.0, 0.0, 0.0, 1.0);
+    single.getTemperatureField()[(size / 2) * size + size / 2] = 100.0;
+    blocked.getTemperatureField()[(size / 2) * size + size / 2] = 100.0;
+
+    long nSteps = 2 * BlockedSolve2D.DEFAULT_STEPS_PER_BLOCK + 3;
+    for (long i = 0; i < nSteps; i++) {
+      single.advanceInTime();
+    }
+    blocked.advanceInTime(nSteps);
+
+    assertEquals(single.getTime(), blocked.getTime());
+    assertArrayEquals(single.getTemperatureField(),
+        blocked.getTemperatureField(), 0);
+  }
+}
@@ -0,0 +1,182 @@
+package edu.colorado.csdms.heat;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.colorado.csdms.bmiheat.BmiHeat;
+
+/**
+ * JUnit tests for the DistributedSolve2D class, which start worker
+ * processes.
+ */
+public class DistributedSolve2DTest {
+
+  private int nRows;
+  private int nCols;
+  private DistributedSolve2D solver;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @Before
+  public void setUp() throws Exception {
+    nRows = 41;
+    nCols = 29;
+    solver = new DistributedSolve2D(3);
+  }
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @After
+  public void tearDown() throws Exception {
+    solver.close();
+  }
+
+  /**
+   * Makes a model with an uneven field.
+   */
+  private Heat makeModel() {
+    Heat heat = new Heat(nRows, nCols, 1.0, 1.5, 0.0, 0.0, 0.7);
+    double[] field = heat.getTemperatureField();
+    for (int k = 0; k < field.length; k++) {
+      field[k] = (k * 37) % 101;
+    }
+    return heat;
+  }
+
+  /**
+   * Test that the bands cover the grid.
+   */
+  @Test
+  public final void testBands() {
+    assertEquals(3, solver.getProcessCount());
+    assertEquals(0, DistributedSolve2D.firstRow(0, 3, nRows));
+    assertEquals(13, DistributedSolve2D.firstRow(1, 3, nRows));
+    assertEquals(27, DistributedSolve2D.firstRow(2, 3, nRows));
+    assertEquals(nRows, DistributedSolve2D.firstRow(3, 3, nRows));
+  }
+
+  /**
+   * Test that single steps and blocks of steps give results identical to
+   * the single-process solver, including after the field is changed.
+   */
+  @Test
+  public final void testMatchesSolve2D() {
+    Heat expected = makeModel();
+    Heat heat = makeModel();
+    heat.setDistributedSolver(solver);
+    assertEquals(3, heat.getProcessCount());
+
+    expected.advanceInTime();
+    heat.advanceInTime();
+    assertArrayEquals(expected.getTemperatureField(),
+        heat.getTemperatureField(), 0.0);
+
+    for (int step = 0; step < 25; step++) {
+      expected.advanceInTime();
+    }
+    heat.advanceInTime(25);
+    assertArrayEquals(expected.getTemperatureField(),
+        heat.getTemperatureField(), 0.0);
+    assertEquals(expected.getTimeValue(), heat.getTimeValue(), 0.0);
+
+    expected.getTemperatureField()[20 * nCols + 10] = 500.0;
+    heat.getTemperatureField()[20 * nCols + 10] = 500.0;
+    heat.temperatureChanged();
+    expected.setAlpha(0.3);
+    heat.setAlpha(0.3);
+    for (int step = 0; step < 10; step++) {
+      expected.advanceInTime();
+    }
+    heat.advanceInTime(10);
+    assertArrayEquals(expected.getTemperatureField(),
+        heat.getTemperatureField(), 0.0);
+  }
+
+  /**
+   * Test that a grid with too few rows is solved in this process.
+   */
+  @Test
+  public final void testSmallGrid() {
+    nRows = 5;
+    Heat expected = makeModel();
+    Heat heat = makeModel();
+    heat.setDistributedSolver(solver);
+    expected.advanceInTime(4);
+    heat.advanceInTime(4);
+    assertArrayEquals(expected.getTemperatureField(),
+        heat.getTemperatureField(), 0.0);
+  }
+
+  /**
+   * Test that BmiHeat presents the split grid as one.
+   */
+  @Test
+  public final void testBmiHeat() {
+    String varName = "plate_surface__temperature";
+    BmiHeat expected = new BmiHeat(makeModel());
+    Heat model = makeModel();
+    model.setDistributedSolver(solver);
+    BmiHeat component = new BmiHeat(model);
+
+    double[] impulse = new double[nRows * nCols];
+    Arrays.fill(impulse, 1.0);
+    impulse[30 * nCols + 20] = 100.0;
+    expected.setValue(varName, impulse);
+    component.setValue(varName, impulse);
+    expected.updateUntil(7.3);
+    component.updateUntil(7.3);
+
+    double[] expectedValues = new double[nRows * nCols];
+    double[] values = new double[nRows * nCols];
+    expected.getValue(varName, expectedValues);
+    component.getValue(varName, values);
+    assertArrayEquals(expectedValues, values, 0.0);
+    assertEquals(7.3, component.getCurrentTime(), 1e-12);
+  }
+
+  /**
+   * Test that closing a model stops its worker processes and leaves it
+   * stepping in this process.
+   */
+  @Test
+  public final void testHeatClose() {
+    Heat expected = makeModel();
+    Heat heat = makeModel();
+    heat.setDistributedSolver(solver);
+    expected.advanceInTime(3);
+    heat.advanceInTime(3);
+
+    heat.close();
+    assertNull(heat.getDistributedSolver());
+    assertEquals(1, heat.getProcessCount());
+    expected.advanceInTime(2);
+    heat.advanceInTime(2);
+    assertArrayEquals(expected.getTemperatureField(),
+        heat.getTemperatureField(), 0.0);
+    try {
+      solver.solve(heat.getTemperatureField(), new double[nRows * nCols],
+          nRows, nCols, 1.0, 1.5, 0.7, 0.1, 1);
+      fail("The workers weren't closed");
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+  }
+
+  /**
+   * Test that a closed solver can't be used.
+   */
+  @Test(expected = IllegalStateException.class)
+  public final void testClosed() {
+    solver.close();
+    Heat heat = makeModel();
+    heat.setDistributedSolver(solver);
+    heat.advanceInTime();
+  }
+}
@@ -0,0 +1,164 @@
+package edu.colorado.csdms.heat;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the HeatCheckpoint class.
+ */
+public class HeatCheckpointTest {
+
+  private File file;
+  private Heat heat;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @Before
+  public void setUp() throws Exception {
+    file = File.createTempFile("heat", ".chk");
+    heat = new Heat(9, 7, 2.0, 0.5, 10.0, -5.0, 0.3);
+    heat.getTemperatureField()[4 * 7 + 3] = 100.0;
+    heat.advanceInTime();
+    heat.advanceInTime();
+  }
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @After
+  public void tearDown() throws Exception {
+    file.delete();
+  }
+
+  /**
+   * Test that a restarted model is in the saved state.
+   */
+  @Test
+  public final void testWriteRead() throws IOException {
+    heat.checkpoint(file.getPath());
+    Heat restarted = Heat.restart(file.getPath());
+
+    assertEquals(heat.getShape(), restarted.getShape());
+    assertEquals(heat.getSpacing(), restarted.getSpacing());
+    assertEquals(heat.getOrigin(), restarted.getOrigin());
+    assertEquals(heat.getAlpha(), restarted.getAlpha());
+    assertEquals(heat.getTime(), restarted.getTime());
+    assertEquals(heat.getTimeStep(), restarted.getTimeStep());
+    assertArrayEquals(heat.getTemperatureField(),
+        restarted.getTemperatureField(), 0);
+    assertEquals(HeatCheckpoint.HEADER_SIZE + 8 * 9 * 7, file.length());
+  }
+
+  /**
+   * Test that a restarted model continues as the original would.
+   */
+  @Test
+  public final void testRestartContinues() throws IOException {
+    heat.checkpoint(file.getPath());
+    Heat restarted = Heat.restart(file.getPath());
+    heat.advanceInTime();
+    restarted.advanceInTime();
+    assertEquals(heat.getTime(), restarted.getTime());
+    assertArrayEquals(heat.getTemperatureField(),
+        restarted.getTemperatureField(), 0);
+  }
+
+  /**
+   * Test that a model with an implicit integrator and a long time step is
+   * restarted with the same integrator.
+   */
+  @Test
+  public final void testImplicitIntegrator() throws IOException {
+    heat.setIntegrator(Heat.Integrator.CRANK_NICOLSON);
+    heat.setTimeStep(5.0);
+    heat.checkpoint(file.getPath());
+    Heat restarted = Heat.restart(file.getPath());
+    assertEquals(Heat.Integrator.CRANK_NICOLSON, restarted.getIntegrator());
+    assertEquals(heat.getTimeStep(), restarted.getTimeStep());
+
+    heat.advanceInTime(10);
+    restarted.advanceInTime(10);
+    assertArrayEquals(heat.getTemperatureField(),
+        restarted.getTemperatureField(), 0);
+  }
+
+  /**
+   * Test that a model with its field stored as float is restarted with the
+   * same precision.
+   */
+  @Test
+  public final void testPrecision() throws IOException {
+    heat.setPrecision(Heat.Precision.MIXED);
+    heat.checkpoint(file.getPath());
+    Heat restarted = Heat.restart(file.getPath());
+    assertEquals(Heat.Precision.MIXED, restarted.getPrecision());
+    assertArrayEquals(heat.getFloatTemperatureField(),
+        restarted.getFloatTemperatureField(), 0.0f);
+
+    heat.advanceInTime(10);
+    restarted.advanceInTime(10);
+    assertArrayEquals(heat.getFloatTemperatureField(),
+        restarted.getFloatTemperatureField(), 0.0f);
+  }
+
+  /**
+   * Test a field longer than one chunk of the copy buffer, and that the
+   * checkpoint can be replaced right after it's read.
+   */
+  @Test
+  public final void testLargeField() throws IOException {
+    Heat large = new Heat(401, 403, 1.0, 1.0, 0.0, 0.0, 1.0);
+    double[] field = large.getTemperatureField();
+    for (int k = 0; k < field.length; k++) {
+      field[k] = k * 0.25;
+    }
+    large.checkpoint(file.getPath());
+    Heat restarted = Heat.restart(file.getPath());
+    assertArrayEquals(field, restarted.getTemperatureField(), 0);
+
+    restarted.advanceInTime();
+    restarted.checkpoint(file.getPath());
+    assertEquals(restarted.getTime(), Heat.restart(file.getPath()).getTime());
+  }
+
+  /**
+   * Test that a damaged field fails the checksum.
+   */
+  @Test(expected = IOException.class)
+  public final void testCorruptField() throws IOException {
+    heat.checkpoint(file.getPath());
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.seek(HeatCheckpoint.HEADER_SIZE + 8 * 30);
+      raf.write(0x7f);
+    }
+    Heat.restart(file.getPath());
+  }
+
+  /**
+   * Test that a file that isn't a checkpoint is rejected.
+   */
+  @Test(expected = IOException.class)
+  public final void testNotACheckpoint() throws IOException {
+    Heat.restart("src/test/resources/data/heat.xml");
+  }
+
+  /**
+   * Test that a truncated file is rejected.
+   */
+  @Test(expected = IOException.class)
+  public final void testTruncated() throws IOException {
+    heat.checkpoint(file.getPath());
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(file.length() - 8);
+    }
+    Heat.restart(file.getPath());
+  }
+}
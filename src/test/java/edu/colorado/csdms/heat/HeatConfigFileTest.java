@@ -0,0 +1,137 @@
+package edu.colorado.csdms.heat;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the HeatConfigFile class.
+ */
+public class HeatConfigFileTest {
+
+  private String fileName;
+  private File tempFile;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @Before
+  public void setUp() throws Exception {
+    fileName = "src/test/resources/data/heat.xml";
+    tempFile = File.createTempFile("heat", ".xml");
+  }
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @After
+  public void tearDown() throws Exception {
+    tempFile.delete();
+  }
+
+  private void writeTempFile(String... parameters)
+      throws FileNotFoundException {
+    try (PrintWriter out = new PrintWriter(tempFile)) {
+      out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+      out.println("<model>");
+      for (String parameter : parameters) {
+        out.println("   " + parameter);
+      }
+      out.println("</model>");
+    }
+  }
+
+  /**
+   * Test method for {@link edu.colorado.csdms.heat.HeatConfigFile#load()}.
+   */
+  @Test
+  public final void testLoad() {
+    HashMap<String, Double> parameters = new HeatConfigFile(fileName).load();
+    assertEquals(7, parameters.size());
+    assertEquals(8.0, parameters.get("nRows"), 0);
+    assertEquals(6.0, parameters.get("nCols"), 0);
+    assertEquals(1.0, parameters.get("alpha"), 0);
+  }
+
+  /**
+   * Test that a file is parsed once and its parameters are cached.
+   */
+  @Test
+  public final void testParametersCached() {
+    Map<String, Double> first = HeatConfigFile.parameters(fileName);
+    Map<String, Double> second = HeatConfigFile.parameters(fileName);
+    assertSame(first, second);
+  }
+
+  /**
+   * Test that cached parameters can't be changed.
+   */
+  @Test(expected = UnsupportedOperationException.class)
+  public final void testParametersUnmodifiable() {
+    HeatConfigFile.parameters(fileName).put("alpha", 2.0);
+  }
+
+  /**
+   * Test that a changed file is parsed again.
+   */
+  @Test
+  public final void testParametersReloaded() throws FileNotFoundException {
+    writeTempFile("<parameter name=\"alpha\" value=\"1.0\" />");
+    assertEquals(1.0, HeatConfigFile.parameters(tempFile.getPath())
+        .get("alpha"), 0);
+
+    writeTempFile("<parameter name=\"alpha\" value=\"0.25\" />");
+    assertEquals(0.25, HeatConfigFile.parameters(tempFile.getPath())
+        .get("alpha"), 0);
+  }
+
+  /**
+   * Test that a value that isn't a number is reported with its line.
+   */
+  @Test
+  public final void testBadValue() throws FileNotFoundException {
+    writeTempFile("<parameter name=\"nRows\" value=\"8\" />",
+        "<parameter name=\"alpha\" value=\"one\" />");
+    try {
+      HeatConfigFile.parameters(tempFile.getPath());
+      fail("Expected an IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage().contains("line 4"));
+      assertTrue(e.getMessage().contains("alpha"));
+    }
+  }
+
+  /**
+   * Test that malformed XML is reported.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public final void testMalformedFile() throws FileNotFoundException {
+    writeTempFile("<parameter name=\"alpha\" value=\"1.0\"");
+    HeatConfigFile.parameters(tempFile.getPath());
+  }
+
+  /**
+   * Test that a missing file is reported.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public final void testMissingFile() {
+    HeatConfigFile.parameters("src/test/resources/data/no-such-file.xml");
+  }
+
+  /**
+   * Test that a model can't be made from a file missing a parameter.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public final void testMissingParameter() throws FileNotFoundException {
+    writeTempFile("<parameter name=\"nRows\" value=\"8\" />");
+    new Heat(tempFile.getPath());
+  }
+}
@@ -0,0 +1,187 @@
+package edu.colorado.csdms.heat;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the HeatEnsemble class.
+ */
+public class HeatEnsembleTest {
+
+  private HeatEnsemble ensemble;
+  private Random random;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @Before
+  public void setUp() throws Exception {
+    ensemble = new HeatEnsemble(4, HeatEnsemble.DEFAULT_PACKING_CUTOFF, 3);
+    random = new Random(42);
+  }
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @After
+  public void tearDown() throws Exception {
+    ensemble.shutdown();
+  }
+
+  /**
+   * Makes a model with random parameters and temperatures.
+   */
+  private Heat makeModel(int nRows, int nCols) {
+    Heat heat = new Heat(nRows, nCols, 0.5 + random.nextDouble(),
+        0.5 + random.nextDouble(), 0.0, 0.0, 0.5 + random.nextDouble());
+    double[] field = new double[nRows * nCols];
+    for (int i = 0; i < field.length; i++) {
+      field[i] = 100.0 * random.nextDouble();
+    }
+    heat.setTemperatureField(field);
+    return heat;
+  }
+
+  /**
+   * Makes a copy of a model to step on its own.
+   */
+  private static Heat copy(Heat heat) {
+    Heat copy = new Heat(heat.getRowCount(), heat.getColumnCount(),
+        heat.getDx(), heat.getDy(), heat.getXStart(), heat.getYStart(),
+        heat.getAlphaValue());
+    copy.setTime(heat.getTimeValue());
+    copy.setIntegrator(heat.getIntegrator());
+    copy.setTimeStep(heat.getTimeStepValue());
+    copy.setTemperatureField(heat.getTemperatureField().clone());
+    return copy;
+  }
+
+  /**
+   * Test that packed members match members stepped one at a time.
+   */
+  @Test
+  public final void testPackedMatchesSerial() {
+    Heat[] expected = new Heat[10];
+    for (int m = 0; m < expected.length; m++) {
+      Heat member = makeModel(12, 17);
+      expected[m] = copy(member);
+      ensemble.add(member);
+    }
+
+    ensemble.advanceInTime(25);
+    ensemble.advanceInTime(1);
+    for (int m = 0; m < expected.length; m++) {
+      expected[m].advanceInTime(26);
+      assertArrayEquals(expected[m].getTemperatureField(),
+          ensemble.getMember(m).getTemperatureField(), 0);
+      assertEquals(expected[m].getTimeValue(),
+          ensemble.getMember(m).getTimeValue(), 0);
+    }
+  }
+
+  /**
+   * Test members of different shapes, some too large to pack.
+   */
+  @Test
+  public final void testMixedShapes() {
+    HeatEnsemble mixed = new HeatEnsemble(2, 500, 4);
+    try {
+      int[][] shapes = {{10, 10}, {20, 30}, {10, 10}, {8, 12}, {20, 30}};
+      Heat[] expected = new Heat[shapes.length];
+      for (int m = 0; m < shapes.length; m++) {
+        Heat member = makeModel(shapes[m][0], shapes[m][1]);
+        expected[m] = copy(member);
+        mixed.add(member);
+      }
+
+      mixed.advanceInTime(13);
+      for (int m = 0; m < shapes.length; m++) {
+        expected[m].advanceInTime(13);
+        assertArrayEquals(expected[m].getTemperatureField(),
+            mixed.getMember(m).getTemperatureField(), 0);
+      }
+    } finally {
+      mixed.shutdown();
+    }
+  }
+
+  /**
+   * Test that members with implicit integrators, taking steps far beyond
+   * the explicit limit, match the same models stepped on their own.
+   */
+  @Test
+  public final void testImplicitMembers() {
+    Heat.Integrator[] integrators = {Heat.Integrator.BACKWARD_EULER,
+        Heat.Integrator.CRANK_NICOLSON, Heat.Integrator.EXPLICIT,
+        Heat.Integrator.CRANK_NICOLSON};
+    Heat[] expected = new Heat[integrators.length];
+    for (int m = 0; m < integrators.length; m++) {
+      Heat member = makeModel(20, 20);
+      member.setIntegrator(integrators[m]);
+      if (integrators[m] != Heat.Integrator.EXPLICIT) {
+        member.setTimeStep(5.0);
+      }
+      expected[m] = copy(member);
+      ensemble.add(member);
+    }
+
+    ensemble.advanceInTime(10);
+    for (int m = 0; m < integrators.length; m++) {
+      expected[m].advanceInTime(10);
+      assertArrayEquals(expected[m].getTemperatureField(),
+          ensemble.getMember(m).getTemperatureField(), 0);
+      assertEquals(expected[m].getTimeValue(),
+          ensemble.getMember(m).getTimeValue(), 0);
+    }
+    assertTrue(ensemble.getMember(1).getTemperatureField()[210] < 100.0);
+  }
+
+  /**
+   * Test that a member changed between calls is advanced from its new
+   * state.
+   */
+  @Test
+  public final void testMemberChangedBetweenCalls() {
+    Heat member = makeModel(9, 9);
+    ensemble.add(member);
+    ensemble.advanceInTime(5);
+
+    member.setAlpha(0.25);
+    member.getTemperatureField()[40] = 500.0;
+    Heat expected = copy(member);
+    ensemble.advanceInTime(5);
+    expected.advanceInTime(5);
+    assertArrayEquals(expected.getTemperatureField(),
+        member.getTemperatureField(), 0);
+  }
+
+  /**
+   * Test the count and rate of member-steps.
+   */
+  @Test
+  public final void testThroughput() {
+    assertEquals(0.0, ensemble.getMemberStepsPerSecond(), 0);
+    for (int m = 0; m < 6; m++) {
+      ensemble.add(makeModel(10, 10));
+    }
+    ensemble.advanceInTime(20);
+    ensemble.advanceInTime(10);
+    assertEquals(180, ensemble.getMemberStepCount());
+    assertTrue(ensemble.getMemberStepsPerSecond() > 0);
+  }
+
+  /**
+   * Test that a model can't be added twice.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public final void testAddTwice() {
+    Heat member = makeModel(5, 5);
+    ensemble.add(member);
+    ensemble.add(member);
+  }
+}
@@ -2,6 +2,8 @@ package edu.colorado.csdms.heat;
 
 import static org.junit.Assert.*;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -203,6 +205,19 @@ public class HeatTest {
     assertEquals(newTimeStep, heat.getTimeStep());
   }
 
+  /**
+   * Test the getters that return primitive values.
+   */
+  @Test
+  public final void testGetValues() {
+    heat.setAlpha(0.2);
+    heat.setTime(42.0);
+    heat.setTimeStep(5.0);
+    assertEquals(0.2, heat.getAlphaValue(), 0);
+    assertEquals(42.0, heat.getTimeValue(), 0);
+    assertEquals(5.0, heat.getTimeStepValue(), 0);
+  }
+
   /**
    * Test method for {@link edu.colorado.csdms.heat.Heat#getTemperature()}.
    */
@@ -232,6 +247,30 @@ public class HeatTest {
     assertArrayEquals(expected, actual, 0);
   }
 
+  /**
+   * Test method for {@link edu.colorado.csdms.heat.Heat#getTemperatureField()}.
+   */
+  @Test
+  public final void testGetTemperatureField() {
+    double[] field = heat.getTemperatureField();
+    assertEquals(shape.get(0) * shape.get(1), field.length);
+
+    // The field is stored by rows.
+    field[3 * shape.get(1) + 2] = 100.0;
+    assertEquals(100.0, heat.getTemperature()[3][2], 0);
+  }
+
+  /**
+   * Test method for {@link edu.colorado.csdms.heat.Heat#setTemperatureField(double[])}.
+   */
+  @Test
+  public final void testSetTemperatureField() {
+    double[] newField = new double[shape.get(0) * shape.get(1)];
+    newField[5] = 1.0;
+    heat.setTemperatureField(newField);
+    assertSame(newField, heat.getTemperatureField());
+  }
+
   /**
    * Test method for {@link edu.colorado.csdms.heat.Heat#advanceInTime()}.
    */
@@ -242,4 +281,94 @@ public class HeatTest {
     assertEquals(finalTime, heat.getTime());
   }
 
+  /**
+   * Test that an impulse diffuses to its neighbors after one time step.
+   */
+  @Test
+  public final void testAdvanceInTimeImpulse() {
+    int nCols = shape.get(1);
+    heat.getTemperatureField()[3 * nCols + 2] = 100.0;
+    heat.advanceInTime();
+
+    double[] field = heat.getTemperatureField();
+    assertEquals(50.0, field[3 * nCols + 2], 1e-12);
+    assertEquals(12.5, field[2 * nCols + 2], 1e-12);
+    assertEquals(12.5, field[4 * nCols + 2], 1e-12);
+    assertEquals(12.5, field[3 * nCols + 1], 1e-12);
+    assertEquals(12.5, field[3 * nCols + 3], 1e-12);
+  }
+
+  /**
+   * Test that time steps alternate between two preallocated arrays.
+   */
+  @Test
+  public final void testAdvanceInTimeReusesFields() {
+    double[] first = heat.getTemperatureField();
+    heat.advanceInTime();
+    double[] second = heat.getTemperatureField();
+    assertNotSame(first, second);
+    heat.advanceInTime();
+    assertSame(first, heat.getTemperatureField());
+    heat.advanceInTime();
+    for (int i = 0; i < 10; i++) {
+      heat.advanceInTime();
+      heat.advanceInTime();
+      assertSame(second, heat.getTemperatureField());
+    }
+  }
+
+  /**
+   * Test that the edges of the plate are held at zero.
+   */
+  @Test
+  public final void testAdvanceInTimeBoundaries() {
+    double[] field = heat.getTemperatureField();
+    Arrays.fill(field, 1.0);
+    heat.advanceInTime();
+    heat.advanceInTime();
+
+    int nRows = shape.get(0);
+    int nCols = shape.get(1);
+    field = heat.getTemperatureField();
+    for (int j = 0; j < nCols; j++) {
+      assertEquals(0.0, field[j], 0);
+      assertEquals(0.0, field[(nRows - 1) * nCols + j], 0);
+    }
+    for (int i = 0; i < nRows; i++) {
+      assertEquals(0.0, field[i * nCols], 0);
+      assertEquals(0.0, field[i * nCols + nCols - 1], 0);
+    }
+  }
+
+  /**
+   * Test that time steps don't allocate memory, where the JVM can measure
+   * allocation per thread.
+   */
+  @Test
+  public final void testAdvanceInTimeAllocation() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+      return;
+    }
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) bean;
+    if (!threads.isThreadAllocatedMemorySupported()
+        || !threads.isThreadAllocatedMemoryEnabled()) {
+      return;
+    }
+    long threadId = Thread.currentThread().getId();
+
+    for (int i = 0; i < 20000; i++) {
+      heat.advanceInTime();
+    }
+    long before = threads.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < 10000; i++) {
+      heat.advanceInTime();
+    }
+    long after = threads.getThreadAllocatedBytes(threadId);
+
+    // Allow for the measurement itself, but not for anything per step.
+    assertTrue(after - before < 1000);
+  }
+
 }
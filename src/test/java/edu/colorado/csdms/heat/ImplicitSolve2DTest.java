@@ -0,0 +1,150 @@
+package edu.colorado.csdms.heat;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the ImplicitSolve2D class.
+ */
+public class ImplicitSolve2DTest {
+
+  private int nRows;
+  private int nCols;
+  private double dx;
+  private double dy;
+  private double alpha;
+  private double[] temperature;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @Before
+  public void setUp() throws Exception {
+    nRows = 31;
+    nCols = 23;
+    dx = 1.5;
+    dy = 0.5;
+    alpha = 0.8;
+    temperature = new double[nRows * nCols];
+    Random random = new Random(42);
+    for (int i = 1; i < nRows - 1; i++) {
+      for (int j = 1; j < nCols - 1; j++) {
+        temperature[i * nCols + j] = 100.0 * random.nextDouble();
+      }
+    }
+  }
+
+  /**
+   * Advance a field by a number of steps with a solver.
+   */
+  private double[] advance(ImplicitSolve2D solver, double timeStep,
+      int nSteps) {
+    double[] t = temperature.clone();
+    double[] next = new double[t.length];
+    for (int step = 0; step < nSteps; step++) {
+      solver.solve(t, next, nRows, nCols, dx, dy, alpha, timeStep);
+      double[] swap = t;
+      t = next;
+      next = swap;
+    }
+    return t;
+  }
+
+  /**
+   * Advance a field by a number of steps with the explicit solver.
+   */
+  private double[] advanceExplicit(double timeStep, int nSteps) {
+    double[] t = temperature.clone();
+    double[] next = new double[t.length];
+    for (int step = 0; step < nSteps; step++) {
+      Solve2D.solve(t, next, nRows, nCols, dx, dy, alpha, timeStep);
+      double[] swap = t;
+      t = next;
+      next = swap;
+    }
+    return t;
+  }
+
+  private static double maxDifference(double[] a, double[] b) {
+    double max = 0.0;
+    for (int i = 0; i < a.length; i++) {
+      max = Math.max(max, Math.abs(a[i] - b[i]));
+    }
+    return max;
+  }
+
+  /**
+   * Test that both schemes approach the explicit solution as the step
+   * gets shorter, with Crank-Nicolson closer than backward Euler.
+   */
+  @Test
+  public final void testMatchesExplicitForShortSteps() {
+    double[] reference = advanceExplicit(0.001, 2000);
+    double[] euler = advance(new ImplicitSolve2D(false), 0.02, 100);
+    double[] crank = advance(new ImplicitSolve2D(true), 0.02, 100);
+    double eulerError = maxDifference(reference, euler);
+    double crankError = maxDifference(reference, crank);
+    assertTrue(eulerError < 0.5);
+    assertTrue(crankError < eulerError / 5.0);
+  }
+
+  /**
+   * Test that long steps, far past the explicit limit, stay bounded and
+   * decay.
+   */
+  @Test
+  public final void testStableForLongSteps() {
+    double[] euler = advance(new ImplicitSolve2D(false), 50.0, 20);
+    double[] crank = advance(new ImplicitSolve2D(true), 50.0, 20);
+    for (int i = 0; i < temperature.length; i++) {
+      assertTrue(euler[i] >= 0.0 && euler[i] < 1.0);
+      assertTrue(Math.abs(crank[i]) <= 100.0);
+    }
+  }
+
+  /**
+   * Test that the edges are zero after a step and the input is unchanged.
+   */
+  @Test
+  public final void testBoundaries() {
+    for (int j = 0; j < nCols; j++) {
+      temperature[j] = 10.0;
+    }
+    double[] input = temperature.clone();
+    double[] next = new double[temperature.length];
+    new ImplicitSolve2D(true).solve(temperature, next, nRows, nCols, dx, dy,
+        alpha, 1.0);
+    assertArrayEquals(input, temperature, 0);
+    for (int j = 0; j < nCols; j++) {
+      assertEquals(0.0, next[j], 0);
+      assertEquals(0.0, next[(nRows - 1) * nCols + j], 0);
+    }
+    for (int i = 0; i < nRows; i++) {
+      assertEquals(0.0, next[i * nCols], 0);
+      assertEquals(0.0, next[i * nCols + nCols - 1], 0);
+    }
+  }
+
+  /**
+   * Test the integrator through the Heat model.
+   */
+  @Test
+  public final void testHeatIntegrator() {
+    Heat heat = new Heat(nRows, nCols, dx, dy, 0.0, 0.0, alpha);
+    assertEquals(Heat.Integrator.EXPLICIT, heat.getIntegrator());
+    heat.setTemperatureField(temperature.clone());
+    heat.setIntegrator(Heat.Integrator.BACKWARD_EULER);
+    heat.setTimeStep(2.0);
+    heat.advanceInTime(5);
+    assertEquals(10.0, heat.getTimeValue(), 1e-12);
+    assertArrayEquals(advance(new ImplicitSolve2D(false), 2.0, 5),
+        heat.getTemperatureField(), 0);
+
+    heat.setIntegrator(Heat.Integrator.EXPLICIT);
+    assertEquals(Heat.Integrator.EXPLICIT, heat.getIntegrator());
+  }
+}
@@ -0,0 +1,119 @@
+package edu.colorado.csdms.heat;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the ParallelSolve2D class.
+ */
+public class ParallelSolve2DTest {
+
+  private int nRows;
+  private int nCols;
+  private double[] temperature;
+  private ParallelSolve2D solver;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @Before
+  public void setUp() throws Exception {
+    nRows = 203;
+    nCols = 151;
+    temperature = new double[nRows * nCols];
+    Random random = new Random(42);
+    for (int i = 0; i < temperature.length; i++) {
+      temperature[i] = 100.0 * random.nextDouble();
+    }
+    solver = new ParallelSolve2D(4, 1000);
+  }
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @After
+  public void tearDown() throws Exception {
+    solver.shutdown();
+  }
+
+  /**
+   * Test that the parallel solver matches the serial solver exactly.
+   */
+  @Test
+  public final void testSolveMatchesSerial() {
+    double[] expected = Solve2D.solve(temperature, nRows, nCols, 1.5, 0.5,
+        0.8, 0.04);
+    double[] actual = new double[nRows * nCols];
+    solver.solve(temperature, actual, nRows, nCols, 1.5, 0.5, 0.8, 0.04);
+    assertArrayEquals(expected, actual, 0);
+  }
+
+  /**
+   * Test a grid that is below the sequential cutoff.
+   */
+  @Test
+  public final void testSolveSmallGrid() {
+    double[] small = new double[8 * 6];
+    small[3 * 6 + 2] = 100.0;
+    double[] expected = Solve2D.solve(small, 8, 6, 1.0, 1.0, 1.0, 0.25);
+    double[] actual = new double[8 * 6];
+    solver.solve(small, actual, 8, 6, 1.0, 1.0, 1.0, 0.25);
+    assertArrayEquals(expected, actual, 0);
+  }
+
+  /**
+   * Test method for {@link edu.colorado.csdms.heat.ParallelSolve2D#getThreadCount()}.
+   */
+  @Test
+  public final void testGetThreadCount() {
+    assertEquals(4, solver.getThreadCount());
+  }
+
+  /**
+   * Test that a Heat model gives the same results with several threads.
+   */
+  @Test
+  public final void testHeatThreadCount() {
+    Heat serial = new Heat(nRows, nCols, 1.0, 1.0, 0.0, 0.0, 1.0);
+    Heat parallel = new Heat(nRows, nCols, 1.0, 1.0, 0.0, 0.0, 1.0);
+    parallel.setThreadCount(3);
+    assertEquals(3, parallel.getThreadCount());
+
+    serial.setTemperatureField(temperature.clone());
+    parallel.setTemperatureField(temperature.clone());
+    for (int i = 0; i < 5; i++) {
+      serial.advanceInTime();
+      parallel.advanceInTime();
+    }
+    assertArrayEquals(serial.getTemperatureField(),
+        parallel.getTemperatureField(), 0);
+    parallel.setThreadCount(1);
+  }
+
+  /**
+   * Test that closing a Heat model stops its solver threads and leaves it
+   * stepping on the calling thread.
+   */
+  @Test
+  public final void testHeatClose() {
+    Heat heat = new Heat(nRows, nCols, 1.0, 1.0, 0.0, 0.0, 1.0);
+    heat.setThreadCount(3);
+    heat.close();
+    assertEquals(1, heat.getThreadCount());
+    heat.advanceInTime();
+    assertEquals(heat.getTimeStepValue(), heat.getTimeValue(), 0);
+  }
+
+  /**
+   * Test that the thread count must be positive.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public final void testBadThreadCount() {
+    new ParallelSolve2D(0, 1000);
+  }
+}
@@ -0,0 +1,219 @@
+package edu.colorado.csdms.heat;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the Solve2DFloat class and for Heat models that store
+ * the field as float.
+ */
+public class Solve2DFloatTest {
+
+  private int nRows;
+  private int nCols;
+  private double[] temperature;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @Before
+  public void setUp() throws Exception {
+    nRows = 19;
+    nCols = 37;
+    temperature = new double[nRows * nCols];
+    Random random = new Random(11);
+    for (int i = 0; i < temperature.length; i++) {
+      temperature[i] = 100.0 * random.nextDouble();
+    }
+  }
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @After
+  public void tearDown() throws Exception {
+  }
+
+  private float[] toFloat(double[] field) {
+    float[] floats = new float[field.length];
+    for (int k = 0; k < field.length; k++) {
+      floats[k] = (float) field[k];
+    }
+    return floats;
+  }
+
+  /**
+   * Test that one step in float, and in double rounded to float, is
+   * within float rounding of the double solver.
+   */
+  @Test
+  public final void testMatchesSolve2D() {
+    double[] expected = Solve2D.solve(temperature, nRows, nCols, 2.0, 1.0,
+        0.5, 0.3);
+    float[] field = toFloat(temperature);
+    float[] single = new float[field.length];
+    float[] mixed = new float[field.length];
+    Solve2DFloat.solve(field, single, nRows, nCols, 2.0, 1.0, 0.5, 0.3);
+    Solve2DFloat.solveMixed(field, mixed, nRows, nCols, 2.0, 1.0, 0.5, 0.3);
+
+    for (int k = 0; k < expected.length; k++) {
+      assertEquals(expected[k], single[k], 1e-4);
+      assertEquals(expected[k], mixed[k], 1e-4);
+    }
+    assertEquals(0.0f, single[0], 0.0f);
+    assertEquals(0.0f, mixed[nRows * nCols - 1], 0.0f);
+  }
+
+  /**
+   * Test that the float kernel in use, vectorized or not, matches the
+   * scalar kernel exactly, including the columns left over after the last
+   * full vector.
+   */
+  @Test
+  public final void testSolveBlockMatchesScalar() {
+    float[] field = toFloat(temperature);
+    field[3 * nCols + 4] = 1e-37f;
+    for (int endCol = 2; endCol < nCols; endCol++) {
+      float[] expected = new float[nRows * nCols];
+      float[] actual = new float[nRows * nCols];
+      Solve2DFloat.solveBlockScalar(field, expected, nCols, 1, nRows - 1, 1,
+          endCol, 1.0, 0.7, 1.1, 0.2);
+      Solve2DFloat.solveBlock(field, actual, nCols, 1, nRows - 1, 1, endCol,
+          1.0, 0.7, 1.1, 0.2);
+      assertArrayEquals(expected, actual, 0.0f);
+    }
+  }
+
+  /**
+   * Test that new temperatures too small to be normal floats are set to
+   * zero.
+   */
+  @Test
+  public final void testSubnormalsFlushed() {
+    float[] field = new float[nRows * nCols];
+    field[5 * nCols + 5] = 4 * Float.MIN_NORMAL;
+    float[] single = new float[field.length];
+    float[] mixed = new float[field.length];
+    Solve2DFloat.solve(field, single, nRows, nCols, 1.0, 1.0, 1.0, 0.25);
+    Solve2DFloat.solveMixed(field, mixed, nRows, nCols, 1.0, 1.0, 1.0, 0.25);
+    for (int k = 0; k < field.length; k++) {
+      assertTrue(single[k] == 0.0f || single[k] >= Float.MIN_NORMAL);
+      assertTrue(mixed[k] == 0.0f || mixed[k] >= Float.MIN_NORMAL);
+    }
+    assertEquals(2 * Float.MIN_NORMAL, single[5 * nCols + 5], 0.0f);
+    assertEquals(0.0f, single[5 * nCols + 6], 0.0f);
+    assertEquals(0.0f, mixed[5 * nCols + 6], 0.0f);
+  }
+
+  /**
+   * Test that a model stored as float tracks a model stored as double.
+   */
+  @Test
+  public final void testHeatPrecision() {
+    Heat expected = new Heat(nRows, nCols, 1.0, 1.0, 0.0, 0.0, 1.0);
+    Heat single = new Heat(nRows, nCols, 1.0, 1.0, 0.0, 0.0, 1.0);
+    Heat mixed = new Heat(nRows, nCols, 1.0, 1.0, 0.0, 0.0, 1.0);
+    expected.setTemperatureField(temperature.clone());
+    single.setTemperatureField(temperature.clone());
+    mixed.setTemperatureField(temperature.clone());
+    single.setPrecision(Heat.Precision.SINGLE);
+    mixed.setPrecision(Heat.Precision.MIXED);
+    assertEquals(Heat.Precision.MIXED, mixed.getPrecision());
+    assertEquals(temperature.length,
+        single.getFloatTemperatureField().length);
+    assertNull(expected.getFloatTemperatureField());
+
+    expected.advanceInTime(50);
+    single.advanceInTime(50);
+    mixed.advanceInTime(50);
+    assertEquals(expected.getTimeValue(), single.getTimeValue(), 0.0);
+    assertArrayEquals(expected.getTemperatureField(),
+        single.getTemperatureField(), 1e-3);
+    assertArrayEquals(expected.getTemperatureField(),
+        mixed.getTemperatureField(), 1e-4);
+
+    single.setPrecision(Heat.Precision.DOUBLE);
+    assertNull(single.getFloatTemperatureField());
+    assertArrayEquals(expected.getTemperatureField(),
+        single.getTemperatureField(), 1e-3);
+  }
+
+  /**
+   * Test that changes made through the widened copy or the float array
+   * reach the model.
+   */
+  @Test
+  public final void testChangesReachFloatField() {
+    Heat heat = new Heat(nRows, nCols, 1.0, 1.0, 0.0, 0.0, 1.0);
+    heat.setPrecision(Heat.Precision.SINGLE);
+
+    heat.getTemperatureField()[5 * nCols + 5] = 100.0;
+    heat.temperatureChanged();
+    assertEquals(100.0f, heat.getFloatTemperatureField()[5 * nCols + 5],
+        0.0f);
+
+    heat.getFloatTemperatureField()[6 * nCols + 6] = 50.0f;
+    heat.temperatureChanged();
+    assertEquals(50.0, heat.getTemperatureField()[6 * nCols + 6], 0.0);
+    assertEquals(100.0, heat.getTemperatureField()[5 * nCols + 5], 0.0);
+
+    heat.advanceInTime();
+    assertEquals(heat.getFloatTemperatureField()[5 * nCols + 6],
+        heat.getTemperatureField()[5 * nCols + 6], 0.0);
+    assertTrue(heat.getTemperatureField()[5 * nCols + 6] > 0.0);
+  }
+
+  /**
+   * Test that after a change through the widened copy, the copy holds the
+   * same rounded values as the float array.
+   */
+  @Test
+  public final void testWidenedCopyRounded() {
+    Heat heat = new Heat(nRows, nCols, 1.0, 1.0, 0.0, 0.0, 1.0);
+    heat.setPrecision(Heat.Precision.SINGLE);
+    double[] field = heat.getTemperatureField();
+    field[5 * nCols + 5] = 1.0 / 3.0;
+    heat.temperatureChanged();
+
+    assertEquals((float) (1.0 / 3.0), field[5 * nCols + 5], 0.0);
+    assertSame(field, heat.getTemperatureField());
+    float[] floats = heat.getFloatTemperatureField();
+    for (int k = 0; k < floats.length; k++) {
+      assertEquals(floats[k], field[k], 0.0);
+    }
+  }
+
+  /**
+   * Test that reading the float array keeps a pending change made through
+   * the widened copy.
+   */
+  @Test
+  public final void testReadKeepsWidenedCopy() {
+    Heat heat = new Heat(nRows, nCols, 1.0, 1.0, 0.0, 0.0, 1.0);
+    heat.setPrecision(Heat.Precision.SINGLE);
+    double[] field = heat.getTemperatureField();
+    field[5 * nCols + 5] = 100.0;
+
+    assertEquals(0.0f, heat.readFloatTemperatureField()[5 * nCols + 5],
+        0.0f);
+    assertSame(field, heat.getTemperatureField());
+    heat.temperatureChanged();
+    assertEquals(100.0f, heat.readFloatTemperatureField()[5 * nCols + 5],
+        0.0f);
+  }
+
+  /**
+   * Test that an implicit integrator can't be used with float storage.
+   */
+  @Test(expected = IllegalStateException.class)
+  public final void testImplicitIntegrator() {
+    Heat heat = new Heat(nRows, nCols, 1.0, 1.0, 0.0, 0.0, 1.0);
+    heat.setPrecision(Heat.Precision.SINGLE);
+    heat.setIntegrator(Heat.Integrator.BACKWARD_EULER);
+  }
+}
@@ -0,0 +1,92 @@
+package edu.colorado.csdms.heat;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the Solve2D class.
+ */
+public class Solve2DTest {
+
+  private int nRows;
+  private int nCols;
+  private double[] temperature;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @Before
+  public void setUp() throws Exception {
+    nRows = 19;
+    nCols = 37;
+    temperature = new double[nRows * nCols];
+    Random random = new Random(11);
+    for (int i = 0; i < temperature.length; i++) {
+      temperature[i] = 100.0 * random.nextDouble();
+    }
+  }
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @After
+  public void tearDown() throws Exception {
+  }
+
+  /**
+   * Test that the allocating and preallocated solvers agree.
+   */
+  @Test
+  public final void testSolveIntoArray() {
+    double[] expected = Solve2D.solve(temperature, nRows, nCols, 2.0, 1.0,
+        0.5, 0.3);
+    double[] actual = new double[nRows * nCols];
+    Solve2D.solve(temperature, actual, nRows, nCols, 2.0, 1.0, 0.5, 0.3);
+    assertArrayEquals(expected, actual, 0);
+  }
+
+  /**
+   * Test that the deprecated 2D solver agrees with the flat solver.
+   */
+  @Test
+  @SuppressWarnings("deprecation")
+  public final void testSolve2DArray() {
+    double[][] field = new double[nRows][nCols];
+    for (int i = 0; i < nRows; i++) {
+      System.arraycopy(temperature, i * nCols, field[i], 0, nCols);
+    }
+    double[][] result = Solve2D.solve(field, new Heat(nRows, nCols, 2.0, 1.0,
+        0.0, 0.0, 0.5).getShape(), java.util.Arrays.asList(1.0, 2.0), 0.5,
+        0.3);
+    double[] expected = Solve2D.solve(temperature, nRows, nCols, 2.0, 1.0,
+        0.5, 0.3);
+    for (int i = 0; i < nRows; i++) {
+      for (int j = 0; j < nCols; j++) {
+        assertEquals(expected[i * nCols + j], result[i][j], 0);
+      }
+    }
+  }
+
+  /**
+   * Test that the kernel in use, vectorized or not, matches the scalar
+   * kernel exactly, including the columns left over after the last full
+   * vector.
+   */
+  @Test
+  public final void testSolveBlockMatchesScalar() {
+    for (int endCol = 2; endCol < nCols; endCol++) {
+      double[] expected = new double[nRows * nCols];
+      double[] actual = new double[nRows * nCols];
+      Solve2D.solveBlockScalar(temperature, expected, nCols, 1, nRows - 1, 1,
+          endCol, 1.0, 0.7, 1.1, 0.2);
+      Solve2D.solveBlock(temperature, actual, nCols, 1, nRows - 1, 1, endCol,
+          1.0, 0.7, 1.1, 0.2);
+      assertArrayEquals(expected, actual, 0);
+    }
+  }
+}
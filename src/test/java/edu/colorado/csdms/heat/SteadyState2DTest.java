@@ -0,0 +1,124 @@
+package edu.colorado.csdms.heat;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the SteadyState2D class.
+ */
+public class SteadyState2DTest {
+
+  private int nRows;
+  private int nCols;
+  private double[] temperature;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @Before
+  public void setUp() throws Exception {
+    nRows = 41;
+    nCols = 57;
+    temperature = new double[nRows * nCols];
+    Random random = new Random(42);
+    for (int i = 1; i < nRows - 1; i++) {
+      for (int j = 1; j < nCols - 1; j++) {
+        temperature[i * nCols + j] = 100.0 * random.nextDouble();
+      }
+    }
+  }
+
+  /**
+   * Test that the steady state with zero edges is zero.
+   */
+  @Test
+  public final void testZeroBoundaries() {
+    SteadyState2D solver = new SteadyState2D();
+    int nIterations = solver.solve(temperature, nRows, nCols, 1.0, 1.0);
+    assertTrue(solver.isConverged());
+    assertEquals(nIterations, solver.getIterationCount());
+    assertTrue(nIterations > 0);
+    for (double value : temperature) {
+      assertEquals(0.0, value, 1e-6);
+    }
+  }
+
+  /**
+   * Test that the steady state with a hot edge is left unchanged by a time
+   * step.
+   */
+  @Test
+  public final void testFixedPointOfTimeStep() {
+    double dx = 1.5;
+    double dy = 0.5;
+    for (int j = 0; j < nCols; j++) {
+      temperature[j] = 10.0;
+    }
+    SteadyState2D solver = new SteadyState2D(1e-12, 100000);
+    solver.solve(temperature, nRows, nCols, dx, dy);
+    assertTrue(solver.isConverged());
+    assertEquals(10.0, temperature[nCols / 2], 0);
+
+    double[] next = new double[temperature.length];
+    Solve2D.solveRows(temperature, next, nCols, 1, nRows - 1, dx, dy, 1.0,
+        0.1);
+    for (int i = 1; i < nRows - 1; i++) {
+      for (int j = 1; j < nCols - 1; j++) {
+        int k = i * nCols + j;
+        assertEquals(temperature[k], next[k], 1e-9);
+      }
+    }
+  }
+
+  /**
+   * Test that the solve stops at the largest number of iterations.
+   */
+  @Test
+  public final void testMaxIterations() {
+    SteadyState2D solver = new SteadyState2D(1e-12, 5);
+    assertEquals(5, solver.solve(temperature, nRows, nCols, 1.0, 1.0));
+    assertFalse(solver.isConverged());
+    assertTrue(solver.getResidual() > 0.0);
+  }
+
+  /**
+   * Test the relaxation factor.
+   */
+  @Test
+  public final void testRelaxationFactor() {
+    double omega = SteadyState2D.getRelaxationFactor(nRows, nCols, 1.0, 1.0);
+    assertTrue(omega > 1.0 && omega < 2.0);
+    assertTrue(SteadyState2D.getRelaxationFactor(401, 401, 1.0, 1.0)
+        > omega);
+  }
+
+  /**
+   * Test that a field already at steady state takes no iterations.
+   */
+  @Test
+  public final void testAlreadySteady() {
+    double[] zeros = new double[nRows * nCols];
+    SteadyState2D solver = new SteadyState2D();
+    assertEquals(0, solver.solve(zeros, nRows, nCols, 1.0, 1.0));
+    assertTrue(solver.isConverged());
+  }
+
+  /**
+   * Test the steady state through the Heat model.
+   */
+  @Test
+  public final void testHeatSolveSteadyState() {
+    Heat heat = new Heat(nRows, nCols, 1.0, 1.0, 0.0, 0.0, 1.0);
+    heat.setTemperatureField(temperature);
+    heat.getTemperatureField()[5] = 3.0;
+    int nIterations = heat.solveSteadyState();
+    assertTrue(nIterations > 0);
+    assertEquals(0.0, heat.getTimeValue(), 0);
+    assertEquals(3.0, heat.getTemperatureField()[5], 0);
+    assertTrue(heat.getTemperatureField()[nCols + 5] > 0.0);
+  }
+}
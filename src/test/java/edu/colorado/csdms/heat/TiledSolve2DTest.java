@@ -0,0 +1,120 @@
+package edu.colorado.csdms.heat;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit tests for the TiledSolve2D and TileTuner classes.
+ */
+public class TiledSolve2DTest {
+
+  private File cacheFile;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @Before
+  public void setUp() throws Exception {
+    cacheFile = File.createTempFile("heat-tiles", ".properties");
+    cacheFile.delete();
+  }
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @After
+  public void tearDown() throws Exception {
+    cacheFile.delete();
+  }
+
+  /**
+   * Makes a model with a smooth field and a point source.
+   */
+  private Heat makeModel(int nRows, int nCols) {
+    Heat heat = new Heat(nRows, nCols, 1.5, 1.0, 0.0, 0.0, 0.3);
+    double[] field = heat.getTemperatureField();
+    for (int k = 0; k < field.length; k++) {
+      field[k] = Math.sin(0.01 * k);
+    }
+    field[nRows / 2 * nCols + nCols / 3] = 100.0;
+    return heat;
+  }
+
+  /**
+   * Test that tiles that don't divide the grid give results identical to
+   * sweeping whole rows.
+   */
+  @Test
+  public final void testMatchesSolve2D() {
+    int[][] shapes = {{1, 1}, {3, 7}, {16, 64}, {1000, 1000}};
+    for (int[] shape : shapes) {
+      Heat expected = makeModel(37, 53);
+      Heat heat = makeModel(37, 53);
+      heat.setTiledSolver(new TiledSolve2D(shape[0], shape[1]));
+      for (int step = 0; step < 5; step++) {
+        expected.advanceInTime();
+        heat.advanceInTime();
+      }
+      assertArrayEquals(expected.getTemperatureField(),
+          heat.getTemperatureField(), 0.0);
+    }
+  }
+
+  /**
+   * Test that grids with short rows aren't tuned or cached.
+   */
+  @Test
+  public final void testShortRowsAreNotTuned() {
+    TileTuner tuner = new TileTuner(cacheFile);
+    assertNull(tuner.tune(4000, TileTuner.MIN_TUNED_COLUMNS - 1));
+    assertFalse(cacheFile.exists());
+  }
+
+  /**
+   * Test that a calibration is saved, and that a saved shape is used
+   * without calibrating.
+   */
+  @Test
+  public final void testCache() throws Exception {
+    TileTuner tuner = new TileTuner(cacheFile);
+    TiledSolve2D tuned = tuner.tune(40, 2000);
+    assertTrue(cacheFile.isFile());
+    Properties cache = new Properties();
+    try (InputStream in = new FileInputStream(cacheFile)) {
+      cache.load(in);
+    }
+    String key = "40x2000" + (Solve2D.isVectorized() ? ".vector" : "");
+    assertEquals(tuned == null ? "none" : tuned.toString(),
+        cache.getProperty(key));
+
+    cache.setProperty(key, "8, 256");
+    try (OutputStream out = new FileOutputStream(cacheFile)) {
+      cache.store(out, null);
+    }
+    TiledSolve2D cached = tuner.tune(40, 2000);
+    assertEquals(8, cached.getTileRows());
+    assertEquals(256, cached.getTileCols());
+  }
+
+  /**
+   * Test that calibrating without a cache file chooses a valid shape.
+   */
+  @Test
+  public final void testCalibrateWithoutCache() {
+    TiledSolve2D tuned = new TileTuner(null).tune(20, 1500);
+    if (tuned != null) {
+      assertTrue(tuned.getTileRows() < 18);
+      assertTrue(tuned.getTileCols() < 1498);
+    }
+  }
+}